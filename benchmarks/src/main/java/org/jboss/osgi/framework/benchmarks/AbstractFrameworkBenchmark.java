@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.msc.service.ServiceController.Mode;
+import org.jboss.osgi.framework.spi.FrameworkBuilder;
+import org.jboss.osgi.framework.spi.FrameworkBuilderFactory;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.launch.Framework;
+
+/**
+ * The base of the framework benchmarks, which boots an embedded framework for each trial.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+public abstract class AbstractFrameworkBenchmark {
+
+    protected Framework framework;
+    protected BundleContext context;
+
+    @Setup(Level.Trial)
+    public void setUpFramework() throws Exception {
+        File storage = new File("target/benchmark-store/" + getClass().getSimpleName());
+        Map<String, String> props = new HashMap<String, String>();
+        props.put(Constants.FRAMEWORK_STORAGE, storage.getAbsolutePath());
+        props.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        configureFramework(props);
+
+        FrameworkBuilder builder = FrameworkBuilderFactory.create(props, Mode.ACTIVE);
+        framework = builder.createFramework();
+        framework.start();
+        context = framework.getBundleContext();
+        setUpBundles();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownFramework() throws Exception {
+        if (framework != null) {
+            framework.stop();
+            framework.waitForStop(10000);
+            framework = null;
+            context = null;
+        }
+    }
+
+    /**
+     * Add benchmark specific framework properties.
+     */
+    protected void configureFramework(Map<String, String> props) {
+    }
+
+    /**
+     * Install the bundles that are used by the benchmark.
+     */
+    protected void setUpBundles() throws Exception {
+    }
+
+    protected Bundle installBundle(String location, InputStream input) throws BundleException, IOException {
+        try {
+            return context.installBundle(location, input);
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.FrameworkWiring;
+
+/**
+ * Measures install, resolve and start of a given number of bundles that import a common api bundle.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BundleLifecycleBenchmark extends AbstractFrameworkBenchmark {
+
+    @Param({ "10", "100" })
+    public int bundleCount;
+
+    private final List<byte[]> archives = new ArrayList<byte[]>();
+    private final List<Bundle> bundles = new ArrayList<Bundle>();
+
+    @Override
+    protected void setUpBundles() throws Exception {
+        installBundle("api", SyntheticBundles.toInputStream(SyntheticBundles.getApiBundle("api")));
+        for (int i = 0; i < bundleCount; i++) {
+            archives.add(SyntheticBundles.getConsumerBundle("consumer" + i));
+        }
+    }
+
+    @Benchmark
+    public void installResolveStart() throws Exception {
+        for (int i = 0; i < bundleCount; i++) {
+            bundles.add(installBundle("consumer" + i, SyntheticBundles.toInputStream(archives.get(i))));
+        }
+        FrameworkWiring frameworkWiring = framework.adapt(FrameworkWiring.class);
+        frameworkWiring.resolveBundles(new ArrayList<Bundle>(bundles));
+        for (Bundle bundle : bundles) {
+            bundle.start();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void uninstallBundles() throws Exception {
+        for (Bundle bundle : bundles) {
+            bundle.uninstall();
+        }
+        bundles.clear();
+    }
+}
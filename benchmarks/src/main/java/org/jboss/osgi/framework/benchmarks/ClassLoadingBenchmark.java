@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.osgi.framework.benchmarks.bundles.api.ApiService;
+import org.jboss.osgi.framework.benchmarks.bundles.consumer.ConsumerActivator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Bundle;
+
+/**
+ * Measures class loading through the bundle class loader.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassLoadingBenchmark extends AbstractFrameworkBenchmark {
+
+    private static final String MISSING_CLASS = ApiService.class.getPackage().getName() + ".MissingService";
+
+    private Bundle consumer;
+    private Bundle dynamic;
+
+    @Override
+    protected void setUpBundles() throws Exception {
+        installBundle("api", SyntheticBundles.toInputStream(SyntheticBundles.getApiBundle("api")));
+        consumer = installBundle("consumer", SyntheticBundles.toInputStream(SyntheticBundles.getConsumerBundle("consumer")));
+        dynamic = installBundle("dynamic", SyntheticBundles.toInputStream(SyntheticBundles.getDynamicBundle("dynamic")));
+        consumer.start();
+        dynamic.loadClass(ApiService.class.getName());
+    }
+
+    @Benchmark
+    public Class<?> loadOwnClass() throws Exception {
+        return consumer.loadClass(ConsumerActivator.class.getName());
+    }
+
+    @Benchmark
+    public Class<?> loadImportedClass() throws Exception {
+        return consumer.loadClass(ApiService.class.getName());
+    }
+
+    @Benchmark
+    public Class<?> loadDynamicImport() throws Exception {
+        return dynamic.loadClass(ApiService.class.getName());
+    }
+
+    @Benchmark
+    public Class<?> loadDynamicImportMissing() {
+        try {
+            return dynamic.loadClass(MISSING_CLASS);
+        } catch (ClassNotFoundException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.benchmarks;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.osgi.framework.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.wiring.FrameworkWiring;
+
+/**
+ * Measures a refresh of an api bundle that a given number of active consumer bundles depend on.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RefreshBenchmark extends AbstractFrameworkBenchmark {
+
+    @Param({ "10", "100" })
+    public int consumerCount;
+
+    @Param({ "1", "4" })
+    public int refreshParallelism;
+
+    private Bundle api;
+
+    @Override
+    protected void configureFramework(Map<String, String> props) {
+        props.put(Constants.PROPERTY_REFRESH_PARALLELISM, String.valueOf(refreshParallelism));
+    }
+
+    @Override
+    protected void setUpBundles() throws Exception {
+        api = installBundle("api", SyntheticBundles.toInputStream(SyntheticBundles.getApiBundle("api")));
+        for (int i = 0; i < consumerCount; i++) {
+            Bundle bundle = installBundle("consumer" + i, SyntheticBundles.toInputStream(SyntheticBundles.getConsumerBundle("consumer" + i)));
+            bundle.start();
+        }
+    }
+
+    @Benchmark
+    public void refreshBundles() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        FrameworkListener listener = new FrameworkListener() {
+            @Override
+            public void frameworkEvent(FrameworkEvent event) {
+                if (event.getType() == FrameworkEvent.PACKAGES_REFRESHED) {
+                    latch.countDown();
+                }
+            }
+        };
+        FrameworkWiring frameworkWiring = framework.adapt(FrameworkWiring.class);
+        frameworkWiring.refreshBundles(Collections.singleton(api), listener);
+        if (!latch.await(60, TimeUnit.SECONDS))
+            throw new IllegalStateException("Refresh did not complete");
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.osgi.framework.benchmarks.bundles.api.ApiService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Measures the synchronous fan-out of service events to a given number of service listeners.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceEventBenchmark extends AbstractFrameworkBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int listenerCount;
+
+    private final AtomicLong eventCount = new AtomicLong();
+
+    @Override
+    protected void setUpBundles() throws Exception {
+        String filter = "(" + Constants.OBJECTCLASS + "=" + ApiService.class.getName() + ")";
+        for (int i = 0; i < listenerCount; i++) {
+            ServiceListener listener = new ServiceListener() {
+                @Override
+                public void serviceChanged(ServiceEvent event) {
+                    eventCount.incrementAndGet();
+                }
+            };
+            if (i % 2 == 0) {
+                context.addServiceListener(listener, filter);
+            } else {
+                context.addServiceListener(listener);
+            }
+        }
+    }
+
+    @Benchmark
+    public long registerAndUnregister() {
+        ServiceRegistration<ApiService> sreg = context.registerService(ApiService.class, ServiceRegistryBenchmark.SERVICE, null);
+        sreg.unregister();
+        return eventCount.get();
+    }
+}
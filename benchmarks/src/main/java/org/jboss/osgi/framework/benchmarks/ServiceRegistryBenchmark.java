@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.benchmarks;
+
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.osgi.framework.benchmarks.bundles.api.ApiService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Measures service registration and service lookups against a registry that holds a given number of services.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceRegistryBenchmark extends AbstractFrameworkBenchmark {
+
+    static final ApiService SERVICE = new ApiService() {
+        @Override
+        public String getName() {
+            return "benchmark";
+        }
+    };
+
+    @Param({ "100", "1000" })
+    public int serviceCount;
+
+    @Override
+    protected void setUpBundles() throws Exception {
+        for (int i = 0; i < serviceCount; i++) {
+            context.registerService(ApiService.class, SERVICE, getServiceProperties(i));
+        }
+    }
+
+    @Benchmark
+    public void registerService() {
+        ServiceRegistration<ApiService> sreg = context.registerService(ApiService.class, SERVICE, getServiceProperties(serviceCount));
+        sreg.unregister();
+    }
+
+    @Benchmark
+    public Collection<ServiceReference<ApiService>> getServiceReferences() throws Exception {
+        return context.getServiceReferences(ApiService.class, null);
+    }
+
+    @Benchmark
+    public Collection<ServiceReference<ApiService>> getServiceReferencesFiltered() throws Exception {
+        return context.getServiceReferences(ApiService.class, "(&(group=3)(index>=50))");
+    }
+
+    @Benchmark
+    public ServiceReference<ApiService> getServiceReference() {
+        return context.getServiceReference(ApiService.class);
+    }
+
+    static Dictionary<String, Object> getServiceProperties(int index) {
+        Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put("index", index);
+        props.put("group", index % 10);
+        return props;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import org.jboss.osgi.framework.benchmarks.bundles.api.ApiService;
+import org.jboss.osgi.framework.benchmarks.bundles.consumer.ConsumerActivator;
+import org.jboss.osgi.metadata.OSGiManifestBuilder;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.osgi.framework.BundleActivator;
+
+/**
+ * Builds the synthetic bundles that the benchmarks install.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+public final class SyntheticBundles {
+
+    private SyntheticBundles() {
+    }
+
+    public static byte[] getApiBundle(final String symbolicName) {
+        final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, symbolicName);
+        archive.addClasses(ApiService.class);
+        archive.setManifest(new Asset() {
+            @Override
+            public InputStream openStream() {
+                OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+                builder.addBundleManifestVersion(2);
+                builder.addBundleSymbolicName(symbolicName);
+                builder.addBundleVersion("1.0.0");
+                builder.addExportPackages(ApiService.class);
+                return builder.openStream();
+            }
+        });
+        return toByteArray(archive);
+    }
+
+    public static byte[] getConsumerBundle(final String symbolicName) {
+        final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, symbolicName);
+        archive.addClasses(ConsumerActivator.class);
+        archive.setManifest(new Asset() {
+            @Override
+            public InputStream openStream() {
+                OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+                builder.addBundleManifestVersion(2);
+                builder.addBundleSymbolicName(symbolicName);
+                builder.addBundleVersion("1.0.0");
+                builder.addBundleActivator(ConsumerActivator.class);
+                builder.addImportPackages(BundleActivator.class, ApiService.class);
+                return builder.openStream();
+            }
+        });
+        return toByteArray(archive);
+    }
+
+    public static byte[] getDynamicBundle(final String symbolicName) {
+        final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, symbolicName);
+        archive.setManifest(new Asset() {
+            @Override
+            public InputStream openStream() {
+                OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+                builder.addBundleManifestVersion(2);
+                builder.addBundleSymbolicName(symbolicName);
+                builder.addBundleVersion("1.0.0");
+                builder.addDynamicImportPackages("*");
+                return builder.openStream();
+            }
+        });
+        return toByteArray(archive);
+    }
+
+    public static InputStream toInputStream(byte[] bytes) {
+        return new ByteArrayInputStream(bytes);
+    }
+
+    private static byte[] toByteArray(JavaArchive archive) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        archive.as(ZipExporter.class).exportTo(baos);
+        return baos.toByteArray();
+    }
+}
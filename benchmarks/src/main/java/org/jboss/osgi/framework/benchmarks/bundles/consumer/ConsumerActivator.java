@@ -0,0 +1,44 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.benchmarks.bundles.consumer;
+
+import org.jboss.osgi.framework.benchmarks.bundles.api.ApiService;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+
+/**
+ * The activator of the consumer bundles, it loads the imported api type on start.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+public class ConsumerActivator implements BundleActivator {
+
+    @Override
+    public void start(BundleContext context) throws Exception {
+        context.getBundle().loadClass(ApiService.class.getName());
+    }
+
+    @Override
+    public void stop(BundleContext context) throws Exception {
+    }
+}
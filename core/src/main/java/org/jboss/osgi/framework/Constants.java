@@ -47,4 +47,31 @@ public interface Constants extends org.osgi.framework.Constants {
 
     /** A list of URLs to bundles that get installed and started on framework startup */
     String PROPERTY_AUTO_START_URLS = "org.jboss.osgi.auto.start";
+
+    /** The number of bundles of the same start level that may be started concurrently */
+    String PROPERTY_STARTLEVEL_PARALLELISM = "org.jboss.osgi.framework.startlevel.parallelism";
+
+    /** The number of independent bundle groups that may be stopped and restarted concurrently on refresh */
+    String PROPERTY_REFRESH_PARALLELISM = "org.jboss.osgi.framework.refresh.parallelism";
+
+    /** The number of threads that deliver asynchronous framework and bundle events, defaults to a single thread */
+    String PROPERTY_EVENTS_THREADS = "org.jboss.osgi.framework.events.maxThreads";
+
+    /** The maximum number of asynchronous events that are queued per listener before a warning is logged */
+    String PROPERTY_EVENTS_QUEUE_CAPACITY = "org.jboss.osgi.framework.events.queueCapacity";
+
+    /** The time in milliseconds after which a listener that is still processing an event is reported as slow */
+    String PROPERTY_EVENTS_SLOW_LISTENER_THRESHOLD = "org.jboss.osgi.framework.events.slowListenerThreshold";
+
+    /** A comma separated list of service properties that are indexed for service lookups */
+    String PROPERTY_SERVICE_INDEXED_PROPERTIES = "org.jboss.osgi.framework.service.indexed";
+
+    /** If true, the persistent bundle state is kept in a single append-only journal in the storage area */
+    String PROPERTY_STORAGE_JOURNAL = "org.jboss.osgi.framework.storage.journal";
+
+    /** The number of threads that restore the persistent bundles on framework startup, more than one requires a thread-safe DeploymentProvider */
+    String PROPERTY_STORAGE_RESTORE_THREADS = "org.jboss.osgi.framework.storage.restoreThreads";
+
+    /** If true, the results of the resolve operations that bootstrap the framework are cached in the storage area for reuse on restart */
+    String PROPERTY_RESOLVER_CACHE = "org.jboss.osgi.framework.resolver.cache";
 }
\ No newline at end of file
@@ -230,4 +230,24 @@ public interface FrameworkLogger extends BasicLogger {
     @LogMessage(level = INFO)
     @Message(id = 11043, value = "Bundle refreshed: %s")
     void infoBundleRefreshed(Bundle bundle);
+
+    @LogMessage(level = WARN)
+    @Message(id = 11044, value = "Slow event listener took %dms to process %s: %s")
+    void warnSlowEventListener(long duration, String typeName, Object listener);
+
+    @LogMessage(level = WARN)
+    @Message(id = 11045, value = "Event queue full for listener, delivering beyond capacity %d: %s")
+    void warnEventQueueFull(int capacity, Object listener);
+
+    @LogMessage(level = WARN)
+    @Message(id = 11046, value = "Discarding corrupt storage journal records after offset %d: %s")
+    void warnStorageJournalTruncated(long offset, File journalFile);
+
+    @LogMessage(level = INFO)
+    @Message(id = 11047, value = "Restored %d of %d persistent bundles")
+    void infoRestoringPersistentBundles(int count, int total);
+
+    @LogMessage(level = WARN)
+    @Message(id = 11048, value = "Cannot compact storage journal: %s")
+    void warnCannotCompactStorageJournal(@Cause Throwable cause, File journalFile);
 }
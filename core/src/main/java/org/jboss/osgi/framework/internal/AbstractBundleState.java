@@ -59,6 +59,7 @@ import org.jboss.osgi.framework.spi.StorageState;
 import org.jboss.osgi.metadata.CaseInsensitiveDictionary;
 import org.jboss.osgi.metadata.OSGiMetaData;
 import org.jboss.osgi.resolver.XBundle;
+import org.jboss.osgi.resolver.XEnvironment;
 import org.jboss.osgi.resolver.spi.AbstractElement;
 import org.jboss.osgi.spi.ConstantsHelper;
 import org.osgi.framework.Bundle;
@@ -252,7 +253,14 @@ abstract class AbstractBundleState<R extends BundleStateRevision> extends Abstra
             plugin.handleStateChange(state, this);
         }
 
-        bundleState.set(state);
+        int previousState = bundleState.getAndSet(state);
+
+        // Keep the bundle index up to date
+        XEnvironment env = getFrameworkState().getEnvironment();
+        if (env instanceof IndexedEnvironment) {
+            BundleIndex bundleIndex = ((IndexedEnvironment) env).getBundleIndex();
+            bundleIndex.bundleStateChanged(previousState, state);
+        }
 
         // Fire the bundle event
         if (frameworkActive && eventType != 0) {
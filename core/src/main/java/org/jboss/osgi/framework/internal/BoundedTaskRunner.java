@@ -0,0 +1,99 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs tasks on a shared executor with a bound on the number of tasks that run at the same time.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+final class BoundedTaskRunner<T> {
+
+    private final CompletionService<T> completionService;
+    private final int maxRunning;
+    private final Deque<Callable<T>> queued = new ArrayDeque<Callable<T>>();
+    private int running;
+
+    BoundedTaskRunner(ExecutorService executorService, int maxRunning) {
+        this.completionService = new ExecutorCompletionService<T>(executorService);
+        this.maxRunning = Math.max(1, maxRunning);
+    }
+
+    void submit(Callable<T> task) {
+        queued.add(task);
+        submitQueued();
+    }
+
+    /**
+     * True if there are running or queued tasks.
+     */
+    boolean hasPending() {
+        return running > 0 || !queued.isEmpty();
+    }
+
+    /**
+     * Wait for the next task to complete and return its result.
+     */
+    T take() throws InterruptedException, ExecutionException {
+        Future<T> future = completionService.take();
+        running--;
+        submitQueued();
+        return future.get();
+    }
+
+    /**
+     * Drop the queued tasks and wait for the running tasks to complete. The interrupt status of the
+     * current thread is preserved, waiting is not interruptible.
+     */
+    void cancelAndAwait() {
+        queued.clear();
+        boolean interrupted = false;
+        while (running > 0) {
+            try {
+                completionService.take();
+                running--;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submitQueued() {
+        while (running < maxRunning && !queued.isEmpty()) {
+            completionService.submit(queued.poll());
+            running++;
+        }
+    }
+}
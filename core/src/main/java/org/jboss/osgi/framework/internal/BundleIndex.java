@@ -0,0 +1,275 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.modules.Module;
+import org.jboss.osgi.resolver.XBundle;
+import org.jboss.osgi.resolver.XBundleRevision;
+import org.jboss.osgi.resolver.XCapability;
+import org.jboss.osgi.resolver.XPackageCapability;
+import org.jboss.osgi.resolver.XResource;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Version;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.resource.Capability;
+
+/**
+ * An index of the bundles that have a revision in the environment.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+final class BundleIndex {
+
+    static final int WIRED_STATES = Bundle.RESOLVED | Bundle.STARTING | Bundle.ACTIVE | Bundle.STOPPING;
+
+    private static final Comparator<XBundleRevision> VERSION_ORDER = new Comparator<XBundleRevision>() {
+        @Override
+        public int compare(XBundleRevision r1, XBundleRevision r2) {
+            return getVersion(r2).compareTo(getVersion(r1));
+        }
+    };
+
+    private static final Comparator<XPackageCapability> PACKAGE_VERSION_ORDER = new Comparator<XPackageCapability>() {
+        @Override
+        public int compare(XPackageCapability c1, XPackageCapability c2) {
+            return getVersion(c2).compareTo(getVersion(c1));
+        }
+    };
+
+    private final Map<XBundle, Integer> revisionCounts = new HashMap<XBundle, Integer>();
+    private final ConcurrentMap<String, List<XBundle>> locationIndex = new ConcurrentHashMap<String, List<XBundle>>();
+    private final ConcurrentMap<String, List<XBundleRevision>> symbolicNameIndex = new ConcurrentHashMap<String, List<XBundleRevision>>();
+    private final ConcurrentMap<String, List<XPackageCapability>> packageIndex = new ConcurrentHashMap<String, List<XPackageCapability>>();
+    private final Map<Module, WeakReference<XBundleRevision>> moduleIndex = new WeakHashMap<Module, WeakReference<XBundleRevision>>();
+    private final Map<XBundle, String> locations = new HashMap<XBundle, String>();
+    private volatile Set<XBundle> bundles = Collections.emptySet();
+    private final AtomicLong generation = new AtomicLong();
+
+    void addResource(XResource res) {
+        if (!(res instanceof XBundleRevision))
+            return;
+
+        XBundleRevision brev = (XBundleRevision) res;
+        XBundle bundle = brev.getBundle();
+        if (bundle == null)
+            return;
+
+        synchronized (this) {
+            generation.incrementAndGet();
+            Integer count = revisionCounts.get(bundle);
+            revisionCounts.put(bundle, count != null ? count + 1 : 1);
+            if (count == null) {
+                // The revision may not yet be associated with the bundle
+                String location = brev instanceof BundleStateRevision ? ((BundleStateRevision) brev).getLocation() : bundle.getLocation();
+                if (location != null) {
+                    locations.put(bundle, location);
+                    locationIndex.put(location, copyAdd(locationIndex.get(location), bundle, null));
+                }
+                publish();
+            }
+            String symbolicName = brev.getSymbolicName();
+            if (symbolicName != null) {
+                symbolicNameIndex.put(symbolicName, copyAdd(symbolicNameIndex.get(symbolicName), brev, VERSION_ORDER));
+            }
+            Module module = brev.getAttachment(InternalConstants.MODULE_KEY);
+            if (module != null) {
+                moduleIndex.put(module, new WeakReference<XBundleRevision>(brev));
+            }
+            for (XPackageCapability cap : getPackageCapabilities(brev)) {
+                String packageName = cap.getPackageName();
+                packageIndex.put(packageName, copyAdd(packageIndex.get(packageName), cap, PACKAGE_VERSION_ORDER));
+            }
+        }
+    }
+
+    void removeResource(XResource res) {
+        if (!(res instanceof XBundleRevision))
+            return;
+
+        XBundleRevision brev = (XBundleRevision) res;
+        XBundle bundle = brev.getBundle();
+        if (bundle == null)
+            return;
+
+        synchronized (this) {
+            generation.incrementAndGet();
+            String symbolicName = brev.getSymbolicName();
+            if (symbolicName != null) {
+                putOrRemove(symbolicNameIndex, symbolicName, copyRemove(symbolicNameIndex.get(symbolicName), brev));
+            }
+            Module module = brev.getAttachment(InternalConstants.MODULE_KEY);
+            if (module != null) {
+                WeakReference<XBundleRevision> ref = moduleIndex.get(module);
+                if (ref != null && ref.get() == brev) {
+                    moduleIndex.remove(module);
+                }
+            }
+            for (XPackageCapability cap : getPackageCapabilities(brev)) {
+                String packageName = cap.getPackageName();
+                putOrRemove(packageIndex, packageName, copyRemove(packageIndex.get(packageName), cap));
+            }
+            Integer count = revisionCounts.get(bundle);
+            if (count == null)
+                return;
+            if (count > 1) {
+                revisionCounts.put(bundle, count - 1);
+            } else {
+                revisionCounts.remove(bundle);
+                String location = locations.remove(bundle);
+                if (location != null) {
+                    putOrRemove(locationIndex, location, copyRemove(locationIndex.get(location), bundle));
+                }
+                publish();
+            }
+        }
+    }
+
+    /**
+     * Record that the state of a bundle has changed. Starting or stopping a bundle does not change its wiring.
+     */
+    void bundleStateChanged(int previousState, int state) {
+        if (state == Bundle.UNINSTALLED || isWired(previousState) != isWired(state)) {
+            generation.incrementAndGet();
+        }
+    }
+
+    /**
+     * True if a bundle in the given state is resolved, i.e. it is resolved, starting, active or stopping.
+     */
+    static boolean isWired(int state) {
+        return (state & WIRED_STATES) != 0;
+    }
+
+    /**
+     * Get the generation of this index. It changes whenever a bundle revision is installed or uninstalled,
+     * or a bundle is resolved, unresolved or uninstalled.
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Get all bundles that have a revision in the environment, including uninstalled bundles that are still in use.
+     */
+    Set<XBundle> getBundles() {
+        return bundles;
+    }
+
+    /**
+     * Get the bundles with the given location.
+     */
+    List<XBundle> getBundlesByLocation(String location) {
+        List<XBundle> result = locationIndex.get(location);
+        return result != null ? result : Collections.<XBundle> emptyList();
+    }
+
+    /**
+     * Get the revisions with the given symbolic name, highest version first.
+     */
+    List<XBundleRevision> getRevisionsBySymbolicName(String symbolicName) {
+        List<XBundleRevision> result = symbolicNameIndex.get(symbolicName);
+        return result != null ? result : Collections.<XBundleRevision> emptyList();
+    }
+
+    /**
+     * Get the package capabilities with the given package name, highest version first. Capabilities with the same
+     * version are in the order their revisions were installed.
+     */
+    List<XPackageCapability> getPackageCapabilities(String packageName) {
+        List<XPackageCapability> result = packageIndex.get(packageName);
+        return result != null ? result : Collections.<XPackageCapability> emptyList();
+    }
+
+    /**
+     * Get the revision that was installed with the given module attached, or null.
+     */
+    synchronized XBundleRevision getRevisionByModule(Module module) {
+        WeakReference<XBundleRevision> ref = moduleIndex.get(module);
+        return ref != null ? ref.get() : null;
+    }
+
+    // Must be called while holding the monitor
+    private void publish() {
+        bundles = Collections.unmodifiableSet(new LinkedHashSet<XBundle>(revisionCounts.keySet()));
+    }
+
+    private static List<XPackageCapability> getPackageCapabilities(XBundleRevision brev) {
+        List<Capability> caps = brev.getCapabilities(PackageNamespace.PACKAGE_NAMESPACE);
+        List<XPackageCapability> result = new ArrayList<XPackageCapability>(caps.size());
+        for (Capability cap : caps) {
+            result.add(((XCapability) cap).adapt(XPackageCapability.class));
+        }
+        return result;
+    }
+
+    private static Version getVersion(XPackageCapability cap) {
+        Object version = cap.getAttributes().get(PackageNamespace.CAPABILITY_VERSION_ATTRIBUTE);
+        return version instanceof Version ? (Version) version : Version.emptyVersion;
+    }
+
+    private static Version getVersion(XBundleRevision brev) {
+        Version version = brev.getVersion();
+        return version != null ? version : Version.emptyVersion;
+    }
+
+    private static <T> List<T> copyAdd(List<T> list, T item, Comparator<T> comparator) {
+        List<T> result = list != null ? new ArrayList<T>(list) : new ArrayList<T>(1);
+        if (!result.contains(item)) {
+            result.add(item);
+            if (comparator != null) {
+                Collections.sort(result, comparator);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static <T> List<T> copyRemove(List<T> list, T item) {
+        if (list == null)
+            return null;
+        List<T> result = new ArrayList<T>(list);
+        result.remove(item);
+        return result.isEmpty() ? null : Collections.unmodifiableList(result);
+    }
+
+    private static <T> void putOrRemove(ConcurrentMap<String, List<T>> map, String key, List<T> list) {
+        if (list != null) {
+            map.put(key, list);
+        } else {
+            map.remove(key);
+        }
+    }
+}
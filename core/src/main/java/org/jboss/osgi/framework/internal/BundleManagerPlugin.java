@@ -381,8 +381,17 @@ final class BundleManagerPlugin extends AbstractIntegrationService<BundleManager
 
     @Override
     public Set<XBundle> getBundles() {
-        Set<XBundle> result = new HashSet<XBundle>();
         XEnvironment env = injectedEnvironment.getValue();
+        if (env instanceof IndexedEnvironment) {
+            // Check the live state, adapted bundles change their state without notifying the index
+            Set<XBundle> result = new HashSet<XBundle>();
+            for (XBundle bundle : ((IndexedEnvironment) env).getBundleIndex().getBundles()) {
+                if (bundle.getState() != Bundle.UNINSTALLED)
+                    result.add(bundle);
+            }
+            return Collections.unmodifiableSet(result);
+        }
+        Set<XBundle> result = new HashSet<XBundle>();
         Iterator<XResource> itres = env.getResources(null);
         while (itres.hasNext()) {
             XResource res = itres.next();
@@ -397,8 +406,19 @@ final class BundleManagerPlugin extends AbstractIntegrationService<BundleManager
 
     @Override
     public Set<XBundle> getBundles(Integer states) {
-        Set<XBundle> result = new HashSet<XBundle>();
         XEnvironment env = injectedEnvironment.getValue();
+        if (env instanceof IndexedEnvironment) {
+            Set<XBundle> indexed = ((IndexedEnvironment) env).getBundleIndex().getBundles();
+            if (states == null)
+                return indexed;
+            Set<XBundle> result = new HashSet<XBundle>();
+            for (XBundle bundle : indexed) {
+                if ((bundle.getState() & states.intValue()) != 0)
+                    result.add(bundle);
+            }
+            return Collections.unmodifiableSet(result);
+        }
+        Set<XBundle> result = new HashSet<XBundle>();
         Iterator<XResource> itres = env.getResources(null);
         while (itres.hasNext()) {
             XResource res = itres.next();
@@ -427,6 +447,15 @@ final class BundleManagerPlugin extends AbstractIntegrationService<BundleManager
         if (Constants.SYSTEM_BUNDLE_LOCATION.equals(location)) {
             return getSystemBundle();
         }
+        XEnvironment env = injectedEnvironment.getValue();
+        if (env instanceof IndexedEnvironment) {
+            for (XBundle aux : ((IndexedEnvironment) env).getBundleIndex().getBundlesByLocation(location)) {
+                if (aux.getState() != Bundle.UNINSTALLED) {
+                    return aux;
+                }
+            }
+            return null;
+        }
         for (XBundle aux : getBundles()) {
             String auxLocation = aux.getLocation();
             if (location.equals(auxLocation)) {
@@ -439,8 +468,19 @@ final class BundleManagerPlugin extends AbstractIntegrationService<BundleManager
     @Override
     public Set<XBundle> getBundles(String symbolicName, VersionRange versionRange) {
         Set<XBundle> resultSet = new HashSet<XBundle>();
+        XEnvironment env = injectedEnvironment.getValue();
         if (Constants.SYSTEM_BUNDLE_SYMBOLICNAME.equals(symbolicName) && versionRange == null) {
             resultSet.add(getSystemBundle());
+        } else if (symbolicName != null && env instanceof IndexedEnvironment) {
+            // The revisions are indexed by name, the bundle's current name and version are checked
+            for (XBundleRevision brev : ((IndexedEnvironment) env).getBundleIndex().getRevisionsBySymbolicName(symbolicName)) {
+                XBundle aux = brev.getBundle();
+                if (symbolicName.equals(aux.getSymbolicName())) {
+                    if (versionRange == null || versionRange.includes(aux.getVersion())) {
+                        resultSet.add(aux);
+                    }
+                }
+            }
         } else {
             for (XBundle aux : getBundles(null)) {
                 if (symbolicName == null || symbolicName.equals(aux.getSymbolicName())) {
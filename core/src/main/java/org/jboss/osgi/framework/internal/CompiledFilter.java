@@ -0,0 +1,871 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.Version;
+
+/**
+ * An RFC 1960-based filter that is compiled once into a tree of match nodes.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+final class CompiledFilter implements Filter {
+
+    /**
+     * A source of property values for filter matching.
+     */
+    interface PropertySource {
+
+        /**
+         * Get the property value for the given key. The lowercase key is provided for case insensitive sources.
+         */
+        Object getPropertyValue(String key, String lowerCaseKey);
+    }
+
+    private static final int EQUAL = 1;
+    private static final int APPROX = 2;
+    private static final int GREATER = 3;
+    private static final int LESS = 4;
+
+    private final Node root;
+    private final String filterString;
+
+    // The top-level equality terms that can be satisfied by an index lookup
+    private final String[] equalityKeys;
+    private final String[] equalityValues;
+
+    private CompiledFilter(Node root) {
+        this.root = root;
+        StringBuilder builder = new StringBuilder();
+        root.append(builder);
+        this.filterString = builder.toString();
+
+        List<CompareNode> terms = new ArrayList<CompareNode>();
+        if (root instanceof CompareNode) {
+            addEqualityTerm(terms, root);
+        } else if (root instanceof AndNode) {
+            for (Node operand : ((AndNode) root).operands) {
+                addEqualityTerm(terms, operand);
+            }
+        }
+        this.equalityKeys = new String[terms.size()];
+        this.equalityValues = new String[terms.size()];
+        for (int i = 0; i < terms.size(); i++) {
+            equalityKeys[i] = terms.get(i).lowerCaseKey;
+            equalityValues[i] = terms.get(i).operand;
+        }
+    }
+
+    private static void addEqualityTerm(List<CompareNode> terms, Node node) {
+        if (node instanceof CompareNode && ((CompareNode) node).operation == EQUAL) {
+            terms.add((CompareNode) node);
+        }
+    }
+
+    static CompiledFilter compile(String filter) throws InvalidSyntaxException {
+        if (filter == null)
+            throw new InvalidSyntaxException("Null filter", null);
+
+        Node root = new Parser(filter).parse();
+        return new CompiledFilter(root);
+    }
+
+    @Override
+    public boolean match(ServiceReference<?> reference) {
+        if (reference instanceof ServiceStateImpl || reference instanceof ServiceReferenceWrapper)
+            return root.match(ServiceStateImpl.assertServiceState(reference));
+
+        return root.match(new ServiceReferenceSource(reference));
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean match(Dictionary dictionary) {
+        return root.match(new DictionarySource(dictionary, false));
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean matchCase(Dictionary dictionary) {
+        return root.match(new DictionarySource(dictionary, true));
+    }
+
+    @Override
+    public boolean matches(final Map<String, ?> map) {
+        return root.match(new PropertySource() {
+            @Override
+            public Object getPropertyValue(String key, String lowerCaseKey) {
+                return map != null ? map.get(key) : null;
+            }
+        });
+    }
+
+    boolean match(PropertySource source) {
+        return root.match(source);
+    }
+
+    /**
+     * Get the number of top-level equality terms. A service matches the filter only if it matches every equality term.
+     */
+    int getEqualityTermCount() {
+        return equalityKeys.length;
+    }
+
+    /**
+     * Get the lowercase attribute name of the equality term at the given index.
+     */
+    String getEqualityKey(int index) {
+        return equalityKeys[index];
+    }
+
+    /**
+     * Get the operand of the equality term at the given index.
+     */
+    String getEqualityValue(int index) {
+        return equalityValues[index];
+    }
+
+    @Override
+    public int hashCode() {
+        return filterString.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (obj instanceof Filter == false)
+            return false;
+        return filterString.equals(obj.toString());
+    }
+
+    @Override
+    public String toString() {
+        return filterString;
+    }
+
+    static String toLowerCase(String key) {
+        return key.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static void appendEncoded(StringBuilder builder, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '(' || c == ')' || c == '*' || c == '\\')
+                builder.append('\\');
+            builder.append(c);
+        }
+    }
+
+    private abstract static class Node {
+
+        abstract boolean match(PropertySource source);
+
+        abstract void append(StringBuilder builder);
+    }
+
+    private static final class AndNode extends Node {
+
+        private final Node[] operands;
+
+        AndNode(Node[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        boolean match(PropertySource source) {
+            for (int i = 0; i < operands.length; i++) {
+                if (operands[i].match(source) == false)
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        void append(StringBuilder builder) {
+            builder.append("(&");
+            for (Node operand : operands)
+                operand.append(builder);
+            builder.append(')');
+        }
+    }
+
+    private static final class OrNode extends Node {
+
+        private final Node[] operands;
+
+        OrNode(Node[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        boolean match(PropertySource source) {
+            for (int i = 0; i < operands.length; i++) {
+                if (operands[i].match(source))
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        void append(StringBuilder builder) {
+            builder.append("(|");
+            for (Node operand : operands)
+                operand.append(builder);
+            builder.append(')');
+        }
+    }
+
+    private static final class NotNode extends Node {
+
+        private final Node operand;
+
+        NotNode(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        boolean match(PropertySource source) {
+            return operand.match(source) == false;
+        }
+
+        @Override
+        void append(StringBuilder builder) {
+            builder.append("(!");
+            operand.append(builder);
+            builder.append(')');
+        }
+    }
+
+    private abstract static class AttributeNode extends Node {
+
+        final String key;
+        final String lowerCaseKey;
+
+        AttributeNode(String key) {
+            this.key = key;
+            this.lowerCaseKey = toLowerCase(key);
+        }
+
+        @Override
+        boolean match(PropertySource source) {
+            Object value = source.getPropertyValue(key, lowerCaseKey);
+            return value != null && matchValue(value);
+        }
+
+        abstract boolean matchValue(Object value);
+
+        boolean matchMultiValue(Object value) {
+            if (value instanceof Object[]) {
+                Object[] array = (Object[]) value;
+                for (int i = 0; i < array.length; i++) {
+                    if (array[i] != null && matchValue(array[i]))
+                        return true;
+                }
+                return false;
+            }
+            if (value instanceof Collection) {
+                for (Object element : (Collection<?>) value) {
+                    if (element != null && matchValue(element))
+                        return true;
+                }
+                return false;
+            }
+            if (value.getClass().isArray()) {
+                int length = Array.getLength(value);
+                for (int i = 0; i < length; i++) {
+                    if (matchValue(Array.get(value, i)))
+                        return true;
+                }
+                return false;
+            }
+            return false;
+        }
+    }
+
+    private static final class PresentNode extends AttributeNode {
+
+        PresentNode(String key) {
+            super(key);
+        }
+
+        @Override
+        boolean matchValue(Object value) {
+            return true;
+        }
+
+        @Override
+        void append(StringBuilder builder) {
+            builder.append('(').append(key).append("=*)");
+        }
+    }
+
+    private static final class SubstringNode extends AttributeNode {
+
+        // The parsed substring parts, null stands for a wildcard
+        private final String[] parts;
+        private final String initial;
+        private final String[] any;
+        private final String last;
+
+        SubstringNode(String key, String[] parts) {
+            super(key);
+            this.parts = parts;
+            int first = 0;
+            int end = parts.length;
+            this.initial = parts[0];
+            if (initial != null)
+                first++;
+            this.last = parts.length > 1 ? parts[parts.length - 1] : null;
+            if (last != null)
+                end--;
+            List<String> anyList = new ArrayList<String>();
+            for (int i = first; i < end; i++) {
+                if (parts[i] != null)
+                    anyList.add(parts[i]);
+            }
+            this.any = anyList.toArray(new String[anyList.size()]);
+        }
+
+        @Override
+        boolean matchValue(Object value) {
+            if (value instanceof String == false)
+                return matchMultiValue(value);
+
+            String string = (String) value;
+            int pos = 0;
+            if (initial != null) {
+                if (string.startsWith(initial) == false)
+                    return false;
+                pos = initial.length();
+            }
+            for (int i = 0; i < any.length; i++) {
+                int index = string.indexOf(any[i], pos);
+                if (index < 0)
+                    return false;
+                pos = index + any[i].length();
+            }
+            if (last != null) {
+                return string.length() - pos >= last.length() && string.endsWith(last);
+            }
+            return true;
+        }
+
+        @Override
+        void append(StringBuilder builder) {
+            builder.append('(').append(key).append('=');
+            for (String part : parts) {
+                if (part == null) {
+                    builder.append('*');
+                } else {
+                    appendEncoded(builder, part);
+                }
+            }
+            builder.append(')');
+        }
+    }
+
+    private static final class CompareNode extends AttributeNode {
+
+        private final int operation;
+        private final String operand;
+        private final String approxOperand;
+
+        // Operands parsed at compile time
+        private final boolean longValid;
+        private final long longOperand;
+        private final boolean floatValid;
+        private final float floatOperand;
+        private final boolean doubleValid;
+        private final double doubleOperand;
+        private final boolean charValid;
+        private final char charOperand;
+        private final boolean booleanOperand;
+        private final Version versionOperand;
+
+        CompareNode(String key, int operation, String operand) {
+            super(key);
+            this.operation = operation;
+            this.operand = operand;
+            this.approxOperand = removeWhitespace(operand);
+
+            String trimmed = operand.trim();
+            long longValue = 0;
+            boolean valid = true;
+            try {
+                longValue = Long.parseLong(trimmed);
+            } catch (NumberFormatException ex) {
+                valid = false;
+            }
+            this.longValid = valid;
+            this.longOperand = longValue;
+
+            float floatValue = 0;
+            valid = true;
+            try {
+                floatValue = Float.parseFloat(trimmed);
+            } catch (NumberFormatException ex) {
+                valid = false;
+            }
+            this.floatValid = valid;
+            this.floatOperand = floatValue;
+
+            double doubleValue = 0;
+            valid = true;
+            try {
+                doubleValue = Double.parseDouble(trimmed);
+            } catch (NumberFormatException ex) {
+                valid = false;
+            }
+            this.doubleValid = valid;
+            this.doubleOperand = doubleValue;
+
+            this.charValid = trimmed.length() > 0;
+            this.charOperand = charValid ? trimmed.charAt(0) : 0;
+            this.booleanOperand = Boolean.valueOf(trimmed).booleanValue();
+
+            Version version = null;
+            try {
+                version = Version.parseVersion(trimmed);
+            } catch (IllegalArgumentException ex) {
+                // not a version operand
+            }
+            this.versionOperand = version;
+        }
+
+        @Override
+        boolean matchValue(Object value) {
+            if (value instanceof String)
+                return compareString((String) value);
+            if (value instanceof Integer)
+                return compareIntegral(((Integer) value).longValue(), Integer.MIN_VALUE, Integer.MAX_VALUE);
+            if (value instanceof Long)
+                return compareIntegral(((Long) value).longValue(), Long.MIN_VALUE, Long.MAX_VALUE);
+            if (value instanceof Short)
+                return compareIntegral(((Short) value).longValue(), Short.MIN_VALUE, Short.MAX_VALUE);
+            if (value instanceof Byte)
+                return compareIntegral(((Byte) value).longValue(), Byte.MIN_VALUE, Byte.MAX_VALUE);
+            if (value instanceof Float)
+                return floatValid && compareResult(Float.compare(((Float) value).floatValue(), floatOperand));
+            if (value instanceof Double)
+                return doubleValid && compareResult(Double.compare(((Double) value).doubleValue(), doubleOperand));
+            if (value instanceof Character)
+                return compareCharacter(((Character) value).charValue());
+            if (value instanceof Boolean)
+                return ((Boolean) value).booleanValue() == booleanOperand;
+            if (value instanceof Version)
+                return versionOperand != null && compareResult(((Version) value).compareTo(versionOperand));
+            if (value instanceof Object[] || value instanceof Collection || value.getClass().isArray())
+                return matchMultiValue(value);
+            if (value instanceof Comparable)
+                return compareComparable(value);
+
+            return compareUnknown(value);
+        }
+
+        private boolean compareString(String value) {
+            switch (operation) {
+                case EQUAL:
+                    return value.equals(operand);
+                case APPROX:
+                    return approxEquals(value, approxOperand);
+                case GREATER:
+                    return value.compareTo(operand) >= 0;
+                case LESS:
+                    return value.compareTo(operand) <= 0;
+            }
+            return false;
+        }
+
+        private boolean compareIntegral(long value, long min, long max) {
+            if (longValid == false || longOperand < min || longOperand > max)
+                return false;
+            return compareResult(value < longOperand ? -1 : (value == longOperand ? 0 : 1));
+        }
+
+        private boolean compareCharacter(char value) {
+            if (charValid == false)
+                return false;
+            switch (operation) {
+                case EQUAL:
+                    return value == charOperand;
+                case APPROX:
+                    return value == charOperand || Character.toUpperCase(value) == Character.toUpperCase(charOperand)
+                            || Character.toLowerCase(value) == Character.toLowerCase(charOperand);
+                case GREATER:
+                    return value >= charOperand;
+                case LESS:
+                    return value <= charOperand;
+            }
+            return false;
+        }
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        private boolean compareComparable(Object value) {
+            Object other = valueOf(value.getClass(), operand.trim());
+            if (other == null)
+                return false;
+            try {
+                return compareResult(((Comparable) value).compareTo(other));
+            } catch (RuntimeException ex) {
+                return false;
+            }
+        }
+
+        private boolean compareUnknown(Object value) {
+            Object other = valueOf(value.getClass(), operand.trim());
+            return other != null && value.equals(other);
+        }
+
+        private boolean compareResult(int result) {
+            switch (operation) {
+                case EQUAL:
+                case APPROX:
+                    return result == 0;
+                case GREATER:
+                    return result >= 0;
+                case LESS:
+                    return result <= 0;
+            }
+            return false;
+        }
+
+        @Override
+        void append(StringBuilder builder) {
+            builder.append('(').append(key);
+            switch (operation) {
+                case EQUAL:
+                    builder.append('=');
+                    break;
+                case APPROX:
+                    builder.append("~=");
+                    break;
+                case GREATER:
+                    builder.append(">=");
+                    break;
+                case LESS:
+                    builder.append("<=");
+                    break;
+            }
+            appendEncoded(builder, operand);
+            builder.append(')');
+        }
+
+        private static Object valueOf(Class<?> type, String value) {
+            try {
+                Method method = type.getMethod("valueOf", String.class);
+                if (Modifier.isStatic(method.getModifiers()) && type.isAssignableFrom(method.getReturnType())) {
+                    return method.invoke(null, value);
+                }
+            } catch (Exception ex) {
+                // try the constructor
+            }
+            try {
+                Constructor<?> ctor = type.getConstructor(String.class);
+                return ctor.newInstance(value);
+            } catch (Exception ex) {
+                return null;
+            }
+        }
+
+        private static String removeWhitespace(String value) {
+            StringBuilder builder = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (Character.isWhitespace(c) == false)
+                    builder.append(c);
+            }
+            return builder.toString();
+        }
+
+        private static boolean approxEquals(String value, String approxOperand) {
+            int j = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c1 = value.charAt(i);
+                if (Character.isWhitespace(c1))
+                    continue;
+                if (j == approxOperand.length())
+                    return false;
+                char c2 = approxOperand.charAt(j++);
+                if (c1 != c2 && Character.toUpperCase(c1) != Character.toUpperCase(c2) && Character.toLowerCase(c1) != Character.toLowerCase(c2))
+                    return false;
+            }
+            return j == approxOperand.length();
+        }
+    }
+
+    private static final class ServiceReferenceSource implements PropertySource {
+
+        private final ServiceReference<?> reference;
+
+        ServiceReferenceSource(ServiceReference<?> reference) {
+            this.reference = reference;
+        }
+
+        @Override
+        public Object getPropertyValue(String key, String lowerCaseKey) {
+            return reference != null ? reference.getProperty(key) : null;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final class DictionarySource implements PropertySource {
+
+        private final Dictionary dictionary;
+        private final boolean caseSensitive;
+
+        DictionarySource(Dictionary dictionary, boolean caseSensitive) {
+            this.dictionary = dictionary;
+            this.caseSensitive = caseSensitive;
+        }
+
+        @Override
+        public Object getPropertyValue(String key, String lowerCaseKey) {
+            if (dictionary == null)
+                return null;
+
+            Object value = dictionary.get(key);
+            if (value != null || caseSensitive)
+                return value;
+
+            Enumeration keys = dictionary.keys();
+            while (keys.hasMoreElements()) {
+                Object aux = keys.nextElement();
+                if (aux instanceof String && key.equalsIgnoreCase((String) aux))
+                    return dictionary.get(aux);
+            }
+            return null;
+        }
+    }
+
+    private static final class Parser {
+
+        private final String filterString;
+        private final char[] filterChars;
+        private int pos;
+
+        Parser(String filterString) {
+            this.filterString = filterString;
+            this.filterChars = filterString.toCharArray();
+        }
+
+        Node parse() throws InvalidSyntaxException {
+            Node node;
+            try {
+                node = parseFilter();
+            } catch (ArrayIndexOutOfBoundsException ex) {
+                throw new InvalidSyntaxException("Filter ended abruptly", filterString, ex);
+            }
+            if (pos != filterChars.length)
+                throw new InvalidSyntaxException("Extraneous trailing characters: " + filterString.substring(pos), filterString);
+
+            return node;
+        }
+
+        private Node parseFilter() throws InvalidSyntaxException {
+            skipWhiteSpace();
+            if (filterChars[pos] != '(')
+                throw new InvalidSyntaxException("Missing '(': " + filterString.substring(pos), filterString);
+
+            pos++;
+            Node node = parseFilterComp();
+
+            skipWhiteSpace();
+            if (filterChars[pos] != ')')
+                throw new InvalidSyntaxException("Missing ')': " + filterString.substring(pos), filterString);
+
+            pos++;
+            skipWhiteSpace();
+            return node;
+        }
+
+        private Node parseFilterComp() throws InvalidSyntaxException {
+            skipWhiteSpace();
+            char c = filterChars[pos];
+            if (c == '&' || c == '|' || c == '!') {
+                int lookahead = ++pos;
+                skipWhiteSpace();
+                if (filterChars[pos] == '(') {
+                    switch (c) {
+                        case '&':
+                            return new AndNode(parseFilterList());
+                        case '|':
+                            return new OrNode(parseFilterList());
+                        default:
+                            return new NotNode(parseFilter());
+                    }
+                }
+                // An attribute name that starts with an operator character
+                pos = lookahead - 1;
+            }
+            return parseItem();
+        }
+
+        private Node[] parseFilterList() throws InvalidSyntaxException {
+            List<Node> operands = new ArrayList<Node>();
+            while (filterChars[pos] == '(') {
+                operands.add(parseFilter());
+            }
+            return operands.toArray(new Node[operands.size()]);
+        }
+
+        private Node parseItem() throws InvalidSyntaxException {
+            String attr = parseAttr();
+            skipWhiteSpace();
+            switch (filterChars[pos]) {
+                case '~':
+                    if (filterChars[pos + 1] == '=') {
+                        pos += 2;
+                        return new CompareNode(attr, APPROX, parseValue());
+                    }
+                    break;
+                case '>':
+                    if (filterChars[pos + 1] == '=') {
+                        pos += 2;
+                        return new CompareNode(attr, GREATER, parseValue());
+                    }
+                    break;
+                case '<':
+                    if (filterChars[pos + 1] == '=') {
+                        pos += 2;
+                        return new CompareNode(attr, LESS, parseValue());
+                    }
+                    break;
+                case '=':
+                    if (filterChars[pos + 1] == '*') {
+                        int oldpos = pos;
+                        pos += 2;
+                        skipWhiteSpace();
+                        if (filterChars[pos] == ')')
+                            return new PresentNode(attr);
+                        pos = oldpos;
+                    }
+                    pos++;
+                    String[] parts = parseSubstring();
+                    if (parts.length == 1 && parts[0] != null)
+                        return new CompareNode(attr, EQUAL, parts[0]);
+                    return new SubstringNode(attr, parts);
+            }
+            throw new InvalidSyntaxException("Invalid operator: " + filterString.substring(pos), filterString);
+        }
+
+        private String parseAttr() throws InvalidSyntaxException {
+            skipWhiteSpace();
+            int begin = pos;
+            int end = pos;
+            char c = filterChars[pos];
+            while (c != '~' && c != '<' && c != '>' && c != '=' && c != '(' && c != ')') {
+                pos++;
+                if (Character.isWhitespace(c) == false)
+                    end = pos;
+                c = filterChars[pos];
+            }
+            int length = end - begin;
+            if (length == 0)
+                throw new InvalidSyntaxException("Missing attr: " + filterString.substring(pos), filterString);
+
+            return new String(filterChars, begin, length);
+        }
+
+        private String parseValue() throws InvalidSyntaxException {
+            StringBuilder builder = new StringBuilder(filterChars.length - pos);
+            parseloop: while (true) {
+                char c = filterChars[pos];
+                switch (c) {
+                    case ')':
+                        break parseloop;
+                    case '(':
+                        throw new InvalidSyntaxException("Invalid value: " + filterString.substring(pos), filterString);
+                    case '\\':
+                        pos++;
+                        c = filterChars[pos];
+                        // fall through
+                    default:
+                        builder.append(c);
+                        pos++;
+                        break;
+                }
+            }
+            if (builder.length() == 0)
+                throw new InvalidSyntaxException("Missing value: " + filterString.substring(pos), filterString);
+
+            return builder.toString();
+        }
+
+        private String[] parseSubstring() throws InvalidSyntaxException {
+            StringBuilder builder = new StringBuilder(filterChars.length - pos);
+            List<String> parts = new ArrayList<String>();
+            parseloop: while (true) {
+                char c = filterChars[pos];
+                switch (c) {
+                    case ')':
+                        if (builder.length() > 0)
+                            parts.add(builder.toString());
+                        break parseloop;
+                    case '(':
+                        throw new InvalidSyntaxException("Invalid value: " + filterString.substring(pos), filterString);
+                    case '*':
+                        if (builder.length() > 0)
+                            parts.add(builder.toString());
+                        builder.setLength(0);
+                        parts.add(null);
+                        pos++;
+                        break;
+                    case '\\':
+                        pos++;
+                        c = filterChars[pos];
+                        // fall through
+                    default:
+                        builder.append(c);
+                        pos++;
+                        break;
+                }
+            }
+            if (parts.isEmpty())
+                return new String[] { "" };
+
+            return parts.toArray(new String[parts.size()]);
+        }
+
+        private void skipWhiteSpace() {
+            for (int length = filterChars.length; pos < length && Character.isWhitespace(filterChars[pos]);) {
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import static org.jboss.osgi.framework.FrameworkLogger.LOGGER;
+
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Dispatches asynchronous event deliveries onto a shared executor.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+final class EventDispatcher {
+
+    static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    static final long DEFAULT_SLOW_LISTENER_THRESHOLD = 1000;
+
+    private final Executor executor;
+    private final int queueCapacity;
+    private final long slowListenerThreshold;
+    private final ConcurrentMap<Object, ListenerQueue> queues = new ConcurrentHashMap<Object, ListenerQueue>();
+
+    EventDispatcher(Executor executor) {
+        this(executor, DEFAULT_QUEUE_CAPACITY, DEFAULT_SLOW_LISTENER_THRESHOLD);
+    }
+
+    EventDispatcher(Executor executor, int queueCapacity, long slowListenerThreshold) {
+        this.executor = executor;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.slowListenerThreshold = slowListenerThreshold;
+    }
+
+    /**
+     * Dispatch the delivery of an event to the given listener.
+     *
+     * @param listener the listener that identifies the delivery queue
+     * @param typeName the event type name used for logging
+     * @param delivery the delivery to process
+     */
+    void dispatch(Object listener, String typeName, Runnable delivery) {
+        Delivery task = new Delivery(typeName, delivery);
+        while (true) {
+            ListenerQueue queue = queues.get(listener);
+            if (queue == null) {
+                queue = new ListenerQueue(listener);
+                ListenerQueue existing = queues.putIfAbsent(listener, queue);
+                if (existing != null) {
+                    queue = existing;
+                }
+            }
+            if (queue.offer(task)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the number of deliveries that are queued for the given listener.
+     */
+    int getQueueSize(Object listener) {
+        ListenerQueue queue = queues.get(listener);
+        return queue != null ? queue.size() : 0;
+    }
+
+    private static final class Delivery {
+        private final String typeName;
+        private final Runnable runnable;
+
+        Delivery(String typeName, Runnable runnable) {
+            this.typeName = typeName;
+            this.runnable = runnable;
+        }
+    }
+
+    private final class ListenerQueue implements Runnable {
+
+        private final Object listener;
+        private final LinkedList<Delivery> deliveries = new LinkedList<Delivery>();
+        private boolean scheduled;
+        private boolean closed;
+
+        ListenerQueue(Object listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Returns false if this queue has been closed and a new one must be obtained.
+         */
+        synchronized boolean offer(Delivery delivery) {
+            if (closed)
+                return false;
+
+            // Warn once each time the queue grows beyond its capacity
+            if (deliveries.size() == queueCapacity) {
+                LOGGER.warnEventQueueFull(queueCapacity, listener);
+            }
+
+            deliveries.add(delivery);
+            if (!scheduled) {
+                scheduled = true;
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException ex) {
+                    // The executor has been shut down
+                    close();
+                }
+            }
+            return true;
+        }
+
+        synchronized int size() {
+            return deliveries.size();
+        }
+
+        private synchronized Delivery poll() {
+            Delivery delivery = deliveries.poll();
+            if (delivery == null) {
+                close();
+            }
+            return delivery;
+        }
+
+        // Must be called while holding the monitor
+        private void close() {
+            closed = true;
+            scheduled = false;
+            deliveries.clear();
+            queues.remove(listener, this);
+        }
+
+        @Override
+        public void run() {
+            Delivery delivery = poll();
+            while (delivery != null) {
+                long start = System.currentTimeMillis();
+                try {
+                    delivery.runnable.run();
+                } catch (Throwable th) {
+                    LOGGER.debugf(th, "Error while delivering %s to: %s", delivery.typeName, listener);
+                }
+                long duration = System.currentTimeMillis() - start;
+                if (slowListenerThreshold > 0 && duration >= slowListenerThreshold) {
+                    LOGGER.warnSlowEventListener(duration, delivery.typeName, listener);
+                }
+                delivery = poll();
+            }
+        }
+    }
+}
@@ -31,9 +31,12 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
@@ -47,6 +50,7 @@ import org.jboss.osgi.framework.spi.URLResource;
 import org.jboss.osgi.resolver.XBundle;
 import org.jboss.osgi.resolver.XBundleRevision;
 import org.jboss.osgi.resolver.XCapability;
+import org.jboss.osgi.resolver.XEnvironment;
 import org.jboss.osgi.resolver.XPackageCapability;
 import org.jboss.osgi.resolver.XPackageRequirement;
 import org.jboss.osgi.resolver.XRequirement;
@@ -84,6 +88,7 @@ final class FallbackLoader implements LocalLoader {
     private final BundleManager bundleManager;
 
     private List<XPackageRequirement> weavingImports;
+    private volatile DynamicLoadCache dynamicLoadCache = DynamicLoadCache.INVALID;
 
     FallbackLoader(HostBundleRevision hostRev, Set<String> importedPaths) {
         assert hostRev != null : "Null hostRev";
@@ -118,11 +123,32 @@ final class FallbackLoader implements LocalLoader {
             weavingImports = new ArrayList<XPackageRequirement>();
         }
         weavingImports.add(req);
+        dynamicLoadCache = DynamicLoadCache.INVALID;
     }
 
     @Override
     public Class<?> loadClassLocal(String className, boolean resolve) {
         DynamicLoadContext context = new DynamicLoadContext(className.replace('.', '/') + ".class");
+
+        // Try the cached result of a previous dynamic load
+        long generation = getWiringGeneration();
+        DynamicLoadCache cache = getDynamicLoadCache(generation);
+        if (cache != null && fallbackEnabled.get()) {
+            if (cache.isMissing(context.resName)) {
+                LOGGER.tracef("Fallback loader cannot find class [%s] anywhere (cached)", className);
+                return null;
+            }
+            XBundleRevision brev = cache.getProvider(context.resName);
+            if (brev != null && findEntry(brev, context.resName) != null) {
+                try {
+                    LOGGER.tracef("Fallback loader loaded class [%s] from cached module: %s", className, brev);
+                    return brev.getModuleClassLoader().loadClass(className);
+                } catch (ClassNotFoundException ex) {
+                    // fall through to the full dynamic load
+                }
+            }
+        }
+
         try {
             lockFallbackLoader();
 
@@ -135,6 +161,15 @@ final class FallbackLoader implements LocalLoader {
             unlockFallbackLoader();
         }
 
+        // Cache the result if the wiring did not change meanwhile
+        if (cache != null && context.searched && generation == getWiringGeneration()) {
+            if (context.targetRevision != null) {
+                cache.putProvider(context.resName, context.targetRevision);
+            } else {
+                cache.putMissing(context.resName);
+            }
+        }
+
         Class<?> result = null;
         XBundleRevision brev = context.targetRevision;
         if (brev != null) {
@@ -244,6 +279,7 @@ final class FallbackLoader implements LocalLoader {
                 mapping.put(pathName, recursiveDepth = new AtomicInteger());
 
             if (recursiveDepth.incrementAndGet() == 1) {
+                context.searched = true;
                 findInResolvedRevisions(context, matchingPatterns);
                 if (context.targetRevision == null) {
                     findInUnresolvedRevisions(context, matchingPatterns);
@@ -302,50 +338,99 @@ final class FallbackLoader implements LocalLoader {
 
     private void findInResolvedRevisions(DynamicLoadContext context, List<XPackageRequirement> matchingPatterns) {
         LOGGER.tracef("Attempt to find path dynamically in resolved modules ...");
-        Set<XBundle> resolved = bundleManager.getBundles(Bundle.RESOLVED | Bundle.ACTIVE);
-        LOGGER.tracef("Resolved modules: %d", resolved.size());
-        if (LOGGER.isTraceEnabled()) {
-            for (Bundle bundle : resolved)
-                LOGGER.tracef("   %s", bundle);
+        BundleIndex bundleIndex = getBundleIndex();
+        String packageName = getPackageName(context.resName);
+        Set<XBundle> resolved = null;
+        for (XPackageRequirement pkgreq : matchingPatterns) {
+            boolean wildcard = pkgreq.getPackageName().endsWith("*");
+
+            // Try the resolved exporters of the requested package first
+            if (bundleIndex != null) {
+                String exportedName = wildcard ? packageName : pkgreq.getPackageName();
+                Set<XBundle> exporters = getPackageExporters(bundleIndex, exportedName);
+                LOGGER.tracef("Exporters of %s: %d", exportedName, exporters.size());
+                if (findInCandidates(context, pkgreq, exporters))
+                    return;
+
+                // A non-wildcard requirement only matches capabilities with its package name
+                if (!wildcard)
+                    continue;
+            }
+
+            // A wildcard requirement may match the capability of another package
+            if (resolved == null) {
+                resolved = bundleManager.getBundles(BundleIndex.WIRED_STATES);
+                LOGGER.tracef("Resolved modules: %d", resolved.size());
+                if (LOGGER.isTraceEnabled()) {
+                    for (Bundle bundle : resolved)
+                        LOGGER.tracef("   %s", bundle);
+                }
+            }
+            if (findInCandidates(context, pkgreq, resolved))
+                return;
         }
-        if (resolved.isEmpty())
-            return;
+    }
 
-        for (XPackageRequirement pkgreq : matchingPatterns) {
-            Map<XBundleRevision, XPackageCapability> matches = new HashMap<XBundleRevision, XPackageCapability>();
-            for (XBundle bundle : resolved) {
-                if (bundle != hostBundle) {
-                    XBundleRevision brev = bundle.getBundleRevision();
-                    if (bundle.getBundleId() > 0 && !brev.isFragment() && matches.get(brev) == null) {
-                        XPackageCapability bcap = getCapabilityCandidate(context, pkgreq, brev);
-                        if (bcap != null) {
-                            matches.put(brev, bcap);
-                        }
+    // Find the best matching revision in the given candidates
+    private boolean findInCandidates(DynamicLoadContext context, XPackageRequirement pkgreq, Set<XBundle> candidates) {
+        Map<XBundleRevision, XPackageCapability> matches = new HashMap<XBundleRevision, XPackageCapability>();
+        for (XBundle bundle : candidates) {
+            if (bundle != hostBundle) {
+                XBundleRevision brev = bundle.getBundleRevision();
+                if (bundle.getBundleId() > 0 && !brev.isFragment() && matches.get(brev) == null) {
+                    XPackageCapability bcap = getCapabilityCandidate(context, pkgreq, brev);
+                    if (bcap != null) {
+                        matches.put(brev, bcap);
                     }
                 }
             }
-            List<XBundleRevision> matchingRevisions = new ArrayList<XBundleRevision>(matches.keySet());
-            if (matchingRevisions.size() > 0) {
-                if (matchingRevisions.size() > 1) {
-                    // Sort multiple revision candidates - highest version first
-                    Collections.sort(matchingRevisions, new Comparator<XBundleRevision>() {
-                        @Override
-                        public int compare(XBundleRevision brevA, XBundleRevision brevB) {
-                            if (brevA.getSymbolicName().equals(brevB.getSymbolicName())) {
-                                return brevB.getVersion().compareTo(brevA.getVersion());
-                            } else {
-                                return (int) (brevB.getBundle().getBundleId() - brevA.getBundle().getBundleId());
-                            }
-                        }
-                    });
+        }
+        if (matches.isEmpty())
+            return false;
+
+        List<XBundleRevision> matchingRevisions = new ArrayList<XBundleRevision>(matches.keySet());
+        if (matchingRevisions.size() > 1) {
+            // Sort multiple revision candidates - highest version first
+            Collections.sort(matchingRevisions, new Comparator<XBundleRevision>() {
+                @Override
+                public int compare(XBundleRevision brevA, XBundleRevision brevB) {
+                    if (brevA.getSymbolicName().equals(brevB.getSymbolicName())) {
+                        return brevB.getVersion().compareTo(brevA.getVersion());
+                    } else {
+                        return (int) (brevB.getBundle().getBundleId() - brevA.getBundle().getBundleId());
+                    }
                 }
-                XBundleRevision brev = matchingRevisions.get(0);
-                context.capability = matches.get(brev);
-                context.targetRevision = brev;
-                context.requirement = pkgreq;
-                return;
+            });
+        }
+        XBundleRevision brev = matchingRevisions.get(0);
+        context.capability = matches.get(brev);
+        context.targetRevision = brev;
+        context.requirement = pkgreq;
+        return true;
+    }
+
+    // Get the bundle index of the environment, or null if there is none
+    private BundleIndex getBundleIndex() {
+        XEnvironment env = frameworkState.getEnvironment();
+        return env instanceof IndexedEnvironment ? ((IndexedEnvironment) env).getBundleIndex() : null;
+    }
+
+    // Get the resolved bundles that export the given package
+    private Set<XBundle> getPackageExporters(BundleIndex bundleIndex, String packageName) {
+        Set<XBundle> result = new LinkedHashSet<XBundle>();
+        for (XPackageCapability cap : bundleIndex.getPackageCapabilities(packageName)) {
+            XBundle bundle = ((XBundleRevision) cap.getResource()).getBundle();
+            if (bundle != null && BundleIndex.isWired(bundle.getState())) {
+                result.add(bundle);
             }
         }
+        return result;
+    }
+
+    // Get the name of the package that contains the given resource
+    private String getPackageName(String resName) {
+        int index = resName.lastIndexOf('/');
+        return index > 0 ? resName.substring(0, index).replace('/', '.') : "";
     }
 
     private boolean filterMatches(XPackageRequirement req, XPackageCapability cap) {
@@ -422,6 +507,16 @@ final class FallbackLoader implements LocalLoader {
 
         String resName = context.resName;
         LOGGER.tracef("Attempt to find path dynamically [%s] in %s ...", resName, brev);
+        URL resURL = findEntry(brev, resName);
+        if (resURL == null) {
+            return null;
+        }
+
+        XPackageCapability cap = getCandidateCapability(brev, pkgreq, resName);
+        return (cap != null && filterMatches(pkgreq, cap) ? cap : null);
+    }
+
+    private URL findEntry(XBundleRevision brev, String resName) {
         URL resURL = brev.getEntry(resName);
         if (resURL == null) {
             AbstractCommonBundleRevision cRev = (AbstractCommonBundleRevision) brev;
@@ -433,12 +528,24 @@ final class FallbackLoader implements LocalLoader {
                 }
             }
         }
-        if (resURL == null) {
+        return resURL;
+    }
+
+    private long getWiringGeneration() {
+        XEnvironment env = frameworkState.getEnvironment();
+        return env instanceof IndexedEnvironment ? ((IndexedEnvironment) env).getBundleIndex().getGeneration() : -1;
+    }
+
+    // Get the dynamic load cache for the given wiring generation, or null if results cannot be cached
+    private DynamicLoadCache getDynamicLoadCache(long generation) {
+        if (generation < 0)
             return null;
+        DynamicLoadCache cache = dynamicLoadCache;
+        if (cache.generation != generation) {
+            cache = new DynamicLoadCache(generation);
+            dynamicLoadCache = cache;
         }
-
-        XPackageCapability cap = getCandidateCapability(brev, pkgreq, resName);
-        return (cap != null && filterMatches(pkgreq, cap) ? cap : null);
+        return cache;
     }
 
     private XPackageCapability getCandidateCapability(BundleRevision brev, XPackageRequirement preq, String resName) {
@@ -503,12 +610,55 @@ final class FallbackLoader implements LocalLoader {
         return result;
     }
 
+    /**
+     * The results of dynamic loads for a given wiring generation. Providers are cached per package,
+     * a bounded number of resources for which no provider was found are remembered.
+     */
+    static final class DynamicLoadCache {
+
+        static final DynamicLoadCache INVALID = new DynamicLoadCache(-1);
+        static final int MAX_MISSING = 1024;
+
+        final long generation;
+        private final ConcurrentMap<String, XBundleRevision> providers = new ConcurrentHashMap<String, XBundleRevision>();
+        private final Set<String> missing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        DynamicLoadCache(long generation) {
+            this.generation = generation;
+        }
+
+        XBundleRevision getProvider(String resName) {
+            return providers.get(getPackagePath(resName));
+        }
+
+        void putProvider(String resName, XBundleRevision brev) {
+            providers.putIfAbsent(getPackagePath(resName), brev);
+        }
+
+        boolean isMissing(String resName) {
+            return missing.contains(resName);
+        }
+
+        void putMissing(String resName) {
+            if (missing.size() >= MAX_MISSING) {
+                missing.clear();
+            }
+            missing.add(resName);
+        }
+
+        private static String getPackagePath(String resName) {
+            int index = resName.lastIndexOf('/');
+            return index > 0 ? resName.substring(0, index) : "";
+        }
+    }
+
     class DynamicLoadContext {
 
         final String resName;
         XBundleRevision targetRevision;
         XPackageRequirement requirement;
         XPackageCapability capability;
+        boolean searched;
 
         DynamicLoadContext(String resName) {
             this.resName = resName;
@@ -0,0 +1,121 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+
+/**
+ * A bounded cache of {@link CompiledFilter}s keyed by filter string.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+final class FilterCache {
+
+    static final int DEFAULT_MAX_SIZE = 1024;
+
+    private static final FilterCache INSTANCE = new FilterCache(DEFAULT_MAX_SIZE);
+
+    private final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+    private final AtomicLong clock = new AtomicLong();
+    private final int maxSize;
+
+    static FilterCache getInstance() {
+        return INSTANCE;
+    }
+
+    FilterCache(int maxSize) {
+        assert maxSize > 0 : "Invalid maxSize";
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the compiled filter for the given filter string, or {@link NoFilter#INSTANCE} for a null filter string.
+     */
+    Filter getFilter(String filterString) throws InvalidSyntaxException {
+        if (filterString == null)
+            return NoFilter.INSTANCE;
+
+        CacheEntry entry = cache.get(filterString);
+        if (entry != null) {
+            entry.lastAccess = clock.incrementAndGet();
+            return entry.filter;
+        }
+
+        CompiledFilter filter = CompiledFilter.compile(filterString);
+        cache.put(filterString, new CacheEntry(filter, clock.incrementAndGet()));
+        if (cache.size() > maxSize) {
+            evict();
+        }
+        return filter;
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    private synchronized void evict() {
+        if (cache.size() <= maxSize)
+            return;
+
+        // The access times are captured first, hits keep updating them during the sort
+        List<Map.Entry<String, CacheEntry>> entries = new ArrayList<Map.Entry<String, CacheEntry>>(cache.entrySet());
+        final Map<String, Long> accessTimes = new HashMap<String, Long>();
+        for (Map.Entry<String, CacheEntry> entry : entries) {
+            accessTimes.put(entry.getKey(), entry.getValue().lastAccess);
+        }
+        Collections.sort(entries, new Comparator<Map.Entry<String, CacheEntry>>() {
+            @Override
+            public int compare(Map.Entry<String, CacheEntry> e1, Map.Entry<String, CacheEntry> e2) {
+                long t1 = accessTimes.get(e1.getKey());
+                long t2 = accessTimes.get(e2.getKey());
+                return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+            }
+        });
+        int count = entries.size() - (maxSize * 3 / 4);
+        for (int i = 0; i < count; i++) {
+            cache.remove(entries.get(i).getKey());
+        }
+    }
+
+    private static final class CacheEntry {
+
+        private final CompiledFilter filter;
+        private volatile long lastAccess;
+
+        CacheEntry(CompiledFilter filter, long lastAccess) {
+            this.filter = filter;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -54,6 +54,7 @@ import org.jboss.osgi.framework.spi.StartLevelManagerPlugin;
 import org.jboss.osgi.framework.spi.StorageManagerPlugin;
 import org.jboss.osgi.framework.spi.SystemPathsPlugin;
 import org.jboss.osgi.framework.spi.SystemServicesPlugin;
+import org.jboss.osgi.resolver.XResolver;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleException;
@@ -146,6 +147,12 @@ public final class FrameworkActive extends AbstractFrameworkService {
         SystemBundleState systemBundle = frameworkState.getSystemBundle();
         systemBundle.changeState(Bundle.ACTIVE);
 
+        // The bootstrap resolve operations are complete
+        XResolver resolver = frameworkState.getFrameworkResolver();
+        if (resolver instanceof FrameworkResolverImpl) {
+            ((FrameworkResolverImpl) resolver).storeResolutionCache();
+        }
+
         // Increase to initial start level
         StartLevelManager startLevelPlugin = frameworkState.getStartLevelManager();
         startLevelPlugin.increaseFrameworkStartLevel(getBeginningStartLevel(bundleManager));
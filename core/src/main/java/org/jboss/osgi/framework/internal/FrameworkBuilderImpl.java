@@ -42,7 +42,6 @@ import org.jboss.osgi.framework.spi.BundleLifecyclePlugin;
 import org.jboss.osgi.framework.spi.BundleManager;
 import org.jboss.osgi.framework.spi.BundleStartLevelPlugin;
 import org.jboss.osgi.framework.spi.DeploymentProviderPlugin;
-import org.jboss.osgi.framework.spi.EnvironmentPlugin;
 import org.jboss.osgi.framework.spi.FrameworkBuilder;
 import org.jboss.osgi.framework.spi.FrameworkModuleLoaderPlugin;
 import org.jboss.osgi.framework.spi.FrameworkModuleProviderPlugin;
@@ -184,7 +183,7 @@ public final class FrameworkBuilderImpl implements FrameworkBuilder {
         registerIntegrationService(FrameworkPhase.CREATE, new StorageManagerPlugin(firstInit));
         registerIntegrationService(FrameworkPhase.CREATE, new CoreServices());
         registerIntegrationService(FrameworkPhase.CREATE, new DeploymentProviderPlugin());
-        registerIntegrationService(FrameworkPhase.CREATE, new EnvironmentPlugin());
+        registerIntegrationService(FrameworkPhase.CREATE, new IndexedEnvironmentPlugin());
         registerIntegrationService(FrameworkPhase.CREATE, new FrameworkEnvironment());
         registerIntegrationService(FrameworkPhase.CREATE, new FrameworkEventsPlugin());
         registerIntegrationService(FrameworkPhase.CREATE, new FrameworkModuleProviderPlugin());
@@ -192,6 +191,7 @@ public final class FrameworkBuilderImpl implements FrameworkBuilder {
         registerIntegrationService(FrameworkPhase.CREATE, new FrameworkResolverPlugin());
         registerIntegrationService(FrameworkPhase.CREATE, new FrameworkStartLevelPlugin());
         registerIntegrationService(FrameworkPhase.CREATE, new FrameworkWiringPlugin());
+        registerIntegrationService(FrameworkPhase.CREATE, new LifecycleExecutorPlugin());
         registerIntegrationService(FrameworkPhase.CREATE, new LifecycleInterceptorPlugin());
         registerIntegrationService(FrameworkPhase.CREATE, new LockManagerPlugin());
         registerIntegrationService(FrameworkPhase.CREATE, new ModuleManagerPlugin());
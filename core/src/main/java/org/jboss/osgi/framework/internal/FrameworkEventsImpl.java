@@ -27,6 +27,7 @@ import static org.jboss.osgi.framework.FrameworkMessages.MESSAGES;
 import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -39,6 +40,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 
+import org.jboss.osgi.framework.Constants;
 import org.jboss.osgi.framework.spi.FrameworkEvents;
 import org.jboss.osgi.framework.spi.ServiceState;
 import org.jboss.osgi.resolver.XBundle;
@@ -50,21 +52,19 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
 import org.osgi.framework.BundleListener;
-import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
 import org.osgi.framework.FrameworkEvent;
 import org.osgi.framework.FrameworkListener;
-import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServiceListener;
-import org.osgi.framework.ServiceReference;
 import org.osgi.framework.SynchronousBundleListener;
 import org.osgi.framework.UnfilteredServiceListener;
 import org.osgi.framework.hooks.bundle.EventHook;
 import org.osgi.framework.hooks.service.EventListenerHook;
 import org.osgi.framework.hooks.service.ListenerHook;
 import org.osgi.framework.hooks.service.ListenerHook.ListenerInfo;
+import org.osgi.framework.hooks.weaving.WeavingHook;
 
 /**
  * A plugin that manages {@link FrameworkListener}, {@link BundleListener}, {@link ServiceListener} and their associated
@@ -76,8 +76,10 @@ import org.osgi.framework.hooks.service.ListenerHook.ListenerInfo;
 @SuppressWarnings("deprecation")
 final class FrameworkEventsImpl implements FrameworkEvents {
 
+    private static final String OBJECTCLASS_KEY = CompiledFilter.toLowerCase(Constants.OBJECTCLASS);
+
     private final BundleManagerPlugin bundleManager;
-    private final ExecutorService executorService;
+    private final EventDispatcher eventDispatcher;
 
     /** The bundleState listeners */
     private final Map<XBundle, List<BundleListenerRegistration>> bundleListeners = new ConcurrentHashMap<XBundle, List<BundleListenerRegistration>>();
@@ -85,6 +87,15 @@ final class FrameworkEventsImpl implements FrameworkEvents {
     private final Map<XBundle, List<FrameworkListener>> frameworkListeners = new ConcurrentHashMap<XBundle, List<FrameworkListener>>();
     /** The service listeners */
     private final Map<XBundle, List<ServiceListenerRegistration>> serviceListeners = new ConcurrentHashMap<XBundle, List<ServiceListenerRegistration>>();
+    /** The immutable snapshot of the service listeners, indexed by objectClass */
+    private volatile ServiceListenerSnapshot serviceListenerSnapshot = ServiceListenerSnapshot.EMPTY;
+
+    /** The live caches of the registered hooks */
+    private final ServiceHookCache<EventHook> bundleEventHooks = new ServiceHookCache<EventHook>(EventHook.class);
+    private final ServiceHookCache<org.osgi.framework.hooks.service.EventHook> serviceEventHooks = new ServiceHookCache<org.osgi.framework.hooks.service.EventHook>(org.osgi.framework.hooks.service.EventHook.class);
+    private final ServiceHookCache<EventListenerHook> serviceEventListenerHooks = new ServiceHookCache<EventListenerHook>(EventListenerHook.class);
+    private final ServiceHookCache<ListenerHook> serviceListenerHooks = new ServiceHookCache<ListenerHook>(ListenerHook.class);
+    private final ServiceHookCache<WeavingHook> weavingHooks = new ServiceHookCache<WeavingHook>(WeavingHook.class);
 
     /** The set of bundleState events that are delivered to an (asynchronous) BundleListener */
     private Set<Integer> asyncBundleEvents = new HashSet<Integer>();
@@ -93,7 +104,9 @@ final class FrameworkEventsImpl implements FrameworkEvents {
 
     FrameworkEventsImpl(BundleManagerPlugin bundleManager, ExecutorService executorService) {
         this.bundleManager = bundleManager;
-        this.executorService = executorService;
+        int queueCapacity = getIntProperty(Constants.PROPERTY_EVENTS_QUEUE_CAPACITY, EventDispatcher.DEFAULT_QUEUE_CAPACITY);
+        long slowThreshold = getIntProperty(Constants.PROPERTY_EVENTS_SLOW_LISTENER_THRESHOLD, (int) EventDispatcher.DEFAULT_SLOW_LISTENER_THRESHOLD);
+        this.eventDispatcher = new EventDispatcher(executorService, queueCapacity, slowThreshold);
         asyncBundleEvents.add(new Integer(BundleEvent.INSTALLED));
         asyncBundleEvents.add(new Integer(BundleEvent.RESOLVED));
         asyncBundleEvents.add(new Integer(BundleEvent.STARTED));
@@ -111,6 +124,18 @@ final class FrameworkEventsImpl implements FrameworkEvents {
         infoEvents.add(ConstantsHelper.bundleEvent(BundleEvent.UNINSTALLED));
     }
 
+    private int getIntProperty(String key, int defaultValue) {
+        Object value = bundleManager.getProperty(key);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException ex) {
+            LOGGER.debugf("Invalid %s: %s", key, value);
+            return defaultValue;
+        }
+    }
+
     @Override
     public void addBundleListener(final XBundle bundle, final BundleListener listener) {
         assert listener != null : "Null listener";
@@ -220,7 +245,7 @@ final class FrameworkEventsImpl implements FrameworkEvents {
             removeServiceListener(bundleState, listener);
 
             // Create the new listener registration
-            Filter filter = (filterstr != null ? FrameworkUtil.createFilter(filterstr) : NoFilter.INSTANCE);
+            Filter filter = FilterCache.getInstance().getFilter(filterstr);
             ServiceListenerRegistration slreg = new ServiceListenerRegistration(bundleState, listener, filter);
 
             // The {@link ListenerHook} added method is called to provide the hook implementation with information on newly
@@ -236,6 +261,7 @@ final class FrameworkEventsImpl implements FrameworkEvents {
 
             // Add the listener to the list
             listeners.add(slreg);
+            serviceListenerSnapshot = serviceListenerSnapshot.add(slreg);
         }
     }
 
@@ -263,6 +289,7 @@ final class FrameworkEventsImpl implements FrameworkEvents {
                 int index = listeners.indexOf(slreg);
                 if (index >= 0) {
                     slreg = listeners.remove(index);
+                    serviceListenerSnapshot = serviceListenerSnapshot.remove(slreg);
 
                     // The {@link ListenerHook} 'removed' method is called to provide the hook implementation with information
                     // on newly removed service listeners.
@@ -285,7 +312,12 @@ final class FrameworkEventsImpl implements FrameworkEvents {
     public void removeServiceListeners(final XBundle bundleState) {
         synchronized (serviceListeners) {
             Collection<ListenerInfo> listenerInfos = getServiceListenerInfos(bundleState);
-            serviceListeners.remove(bundleState);
+            List<ServiceListenerRegistration> registrations = serviceListeners.remove(bundleState);
+            if (registrations != null) {
+                for (ServiceListenerRegistration slreg : registrations) {
+                    serviceListenerSnapshot = serviceListenerSnapshot.remove(slreg);
+                }
+            }
 
             // The {@link ListenerHook} 'removed' method is called to provide the hook implementation with information on newly
             // removed service listeners.
@@ -304,30 +336,17 @@ final class FrameworkEventsImpl implements FrameworkEvents {
     public void removeAllServiceListeners() {
         synchronized (serviceListeners) {
             serviceListeners.clear();
+            serviceListenerSnapshot = ServiceListenerSnapshot.EMPTY;
         }
     }
 
     private List<ListenerHook> getServiceListenerHooks() {
 
-        if (bundleManager.isFrameworkCreated() == false)
+        if (serviceListenerHooks.isEmpty() || bundleManager.isFrameworkCreated() == false)
             return Collections.emptyList();
 
-        ServiceReference<?>[] srefs = null;
         SystemBundleState sysbundle = bundleManager.getSystemBundle();
-        BundleContext syscontext = sysbundle.getBundleContext();
-        try {
-            srefs = syscontext.getServiceReferences(ListenerHook.class.getName(), null);
-        } catch (InvalidSyntaxException e) {
-            // ignore
-        }
-        if (srefs == null)
-            return Collections.emptyList();
-
-        List<ListenerHook> hooks = new ArrayList<ListenerHook>();
-        for (ServiceReference<?> sref : srefs)
-            hooks.add((ListenerHook) syscontext.getService(sref));
-
-        return Collections.unmodifiableList(hooks);
+        return Collections.unmodifiableList(serviceListenerHooks.getHooks(sysbundle.getBundleContext()));
     }
 
     @Override
@@ -359,21 +378,23 @@ final class FrameworkEventsImpl implements FrameworkEvents {
         final String typeName = ConstantsHelper.bundleEvent(event.getType());
 
         // Call the bundle {@link EventHook}
-        Collection<BundleContext> contexts = new ArrayList<BundleContext>();
-        for (XBundle aux : bundleListeners.keySet()) {
-            contexts.add(aux.getBundleContext());
-        }
-        SystemBundleState sysbundle = bundleManager.getSystemBundle();
-        BundleContext syscontext = sysbundle.getBundleContext();
-        contexts = new RemoveOnlyCollection<BundleContext>(contexts);
-        callBundleEventHooks(syscontext, contexts, event);
-
-        // Remove the filtered {@link BundleListener} registrations
-        Iterator<BundleListenerRegistration> iterator = registrations.iterator();
-        while(iterator.hasNext()) {
-            BundleListenerRegistration blreg = iterator.next();
-            if (!contexts.contains(blreg.getBundleContext())) {
-                iterator.remove();
+        if (bundleEventHooks.isEmpty() == false) {
+            Collection<BundleContext> contexts = new ArrayList<BundleContext>();
+            for (XBundle aux : bundleListeners.keySet()) {
+                contexts.add(aux.getBundleContext());
+            }
+            SystemBundleState sysbundle = bundleManager.getSystemBundle();
+            BundleContext syscontext = sysbundle.getBundleContext();
+            contexts = new RemoveOnlyCollection<BundleContext>(contexts);
+            callBundleEventHooks(syscontext, contexts, event);
+
+            // Remove the filtered {@link BundleListener} registrations
+            Iterator<BundleListenerRegistration> iterator = registrations.iterator();
+            while(iterator.hasNext()) {
+                BundleListenerRegistration blreg = iterator.next();
+                if (!contexts.contains(blreg.getBundleContext())) {
+                    iterator.remove();
+                }
             }
         }
 
@@ -382,7 +403,7 @@ final class FrameworkEventsImpl implements FrameworkEvents {
             return;
 
         // Synchronous listeners first
-        iterator = registrations.iterator();
+        Iterator<BundleListenerRegistration> iterator = registrations.iterator();
         while (iterator.hasNext()) {
             BundleListenerRegistration blreg = iterator.next();
             BundleListener listener = blreg.listener;
@@ -396,28 +417,22 @@ final class FrameworkEventsImpl implements FrameworkEvents {
             }
         }
 
-        if (!registrations.isEmpty()) {
-            Runnable runner = new Runnable() {
-                @Override
-                public void run() {
-                    // BundleListeners are called with a BundleEvent object when a bundleState has been
-                    // installed, resolved, started, stopped, updated, unresolved, or uninstalled
-                    if (asyncBundleEvents.contains(type)) {
-                        for (BundleListenerRegistration blreg : registrations) {
-                            BundleListener listener = blreg.listener;
-                            try {
-                                if (!(listener instanceof SynchronousBundleListener)) {
-                                    listener.bundleChanged(event);
-                                }
-                            } catch (Throwable th) {
-                                LOGGER.warnErrorWhileFiringBundleEvent(th, typeName, bundle);
-                            }
+        // BundleListeners are called with a BundleEvent object when a bundleState has been
+        // installed, resolved, started, stopped, updated, unresolved, or uninstalled
+        if (!registrations.isEmpty() && asyncBundleEvents.contains(type)) {
+            for (BundleListenerRegistration blreg : registrations) {
+                final BundleListener listener = blreg.listener;
+                Runnable runner = new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            listener.bundleChanged(event);
+                        } catch (Throwable th) {
+                            LOGGER.warnErrorWhileFiringBundleEvent(th, typeName, bundle);
                         }
                     }
-                }
-            };
-            if (!executorService.isShutdown()) {
-                executorService.execute(runner);
+                };
+                eventDispatcher.dispatch(listener, typeName, runner);
             }
         }
     }
@@ -434,24 +449,14 @@ final class FrameworkEventsImpl implements FrameworkEvents {
     }
 
     private List<EventHook> getBundleEventHooks(BundleContext syscontext) {
+        return bundleEventHooks.getHooks(syscontext);
+    }
 
-        List<EventHook> hooks = new ArrayList<EventHook>();
-        Collection<ServiceReference<EventHook>> srefs = null;
-        try {
-            srefs = syscontext.getServiceReferences(EventHook.class, null);
-        } catch (InvalidSyntaxException e) {
-            // ignore
-        }
-
-        // The calling order of the hooks is defined by the reversed compareTo ordering of their Service
-        // Reference objects. That is, the service with the highest ranking number is called first.
-        List<ServiceReference<EventHook>> sorted = new ArrayList<ServiceReference<EventHook>>(srefs);
-        Collections.reverse(sorted);
-
-        for (ServiceReference<EventHook> sref : sorted)
-            hooks.add(syscontext.getService(sref));
-
-        return hooks;
+    /**
+     * Get the live cache of the registered {@link WeavingHook} services.
+     */
+    ServiceHookCache<WeavingHook> getWeavingHooks() {
+        return weavingHooks;
     }
 
     @Override
@@ -496,11 +501,11 @@ final class FrameworkEventsImpl implements FrameworkEvents {
         if (listeners.isEmpty())
             return;
 
-        Runnable runner = new Runnable() {
-            @Override
-            public void run() {
-                // Call the listeners
-                for (FrameworkListener listener : listeners) {
+        // Call the listeners
+        for (final FrameworkListener listener : listeners) {
+            Runnable runner = new Runnable() {
+                @Override
+                public void run() {
                     try {
                         listener.frameworkEvent(event);
                     } catch (RuntimeException ex) {
@@ -516,53 +521,73 @@ final class FrameworkEventsImpl implements FrameworkEvents {
                         LOGGER.warnErrorWhileFiringEvent(th, typeName);
                     }
                 }
-            }
-        };
-        if (!executorService.isShutdown()) {
-            executorService.execute(runner);
+            };
+            eventDispatcher.dispatch(listener, typeName, runner);
         }
     }
 
     @Override
     public void fireServiceEvent(final XBundle bundle, int type, final ServiceState<?> serviceState) {
 
+        // Keep the hook caches up to date
+        bundleEventHooks.serviceChanged(type, serviceState);
+        serviceEventHooks.serviceChanged(type, serviceState);
+        serviceEventListenerHooks.serviceChanged(type, serviceState);
+        serviceListenerHooks.serviceChanged(type, serviceState);
+        weavingHooks.serviceChanged(type, serviceState);
+
         // Do nothing it the framework is not active
         if (bundleManager.isFrameworkCreated() == false)
             return;
 
-        // Get a snapshot of the current listeners
-        Map<BundleContext, Collection<ListenerInfo>> listeners;
-        synchronized (serviceListeners) {
-            listeners = new HashMap<BundleContext, Collection<ListenerInfo>>();
-            for (Entry<XBundle, List<ServiceListenerRegistration>> entry : serviceListeners.entrySet()) {
-                for (ServiceListenerRegistration listener : entry.getValue()) {
-                    BundleContext context = listener.getBundleContext();
-                    if (context != null) {
-                        Collection<ListenerInfo> infos = listeners.get(context);
-                        if (infos == null) {
-                            infos = new ArrayList<ListenerInfo>();
-                            listeners.put(context, infos);
-                        }
-                        infos.add(listener.getListenerInfo());
-                    }
-                }
-            }
-            for (Map.Entry<BundleContext, Collection<ListenerInfo>> entry : listeners.entrySet()) {
-                listeners.put(entry.getKey(), new RemoveOnlyCollection<ListenerInfo>(entry.getValue()));
-            }
-            listeners = new RemoveOnlyMap<BundleContext, Collection<ListenerInfo>>(listeners);
-        }
-
         // Construct the ServiceEvent
         ServiceEvent event = new ServiceEventImpl(type, serviceState);
         String typeName = ConstantsHelper.serviceEvent(event.getType());
         LOGGER.tracef("Service %s: %s", typeName, serviceState);
 
-        // Call the registered event hooks
+        // Without hooks the event is delivered to the candidate listeners from the current snapshot
+        ServiceListenerSnapshot snapshot = serviceListenerSnapshot;
+        if (serviceEventHooks.isEmpty() && serviceEventListenerHooks.isEmpty()) {
+            String[] clazzes = (String[]) serviceState.getProperty(Constants.OBJECTCLASS);
+            for (String clazz : clazzes) {
+                ServiceListenerRegistration[] registrations = snapshot.getRegistrations(clazz);
+                for (int i = 0; i < registrations.length; i++) {
+                    deliverServiceEvent(registrations[i], event, serviceState, typeName);
+                }
+            }
+            ServiceListenerRegistration[] registrations = snapshot.getUnconstrainedRegistrations();
+            for (int i = 0; i < registrations.length; i++) {
+                deliverServiceEvent(registrations[i], event, serviceState, typeName);
+            }
+            return;
+        }
+
         SystemBundleState sysbundle = bundleManager.getSystemBundle();
         BundleContext syscontext = sysbundle.getBundleContext();
-        callServiceEventHooks(syscontext, listeners, event);
-        callServieEventListenerHooks(syscontext, listeners, event);
+        List<org.osgi.framework.hooks.service.EventHook> eventHooks = serviceEventHooks.getHooks(syscontext);
+        List<EventListenerHook> listenerHooks = serviceEventListenerHooks.getHooks(syscontext);
+
+        // Get a snapshot of the current listeners for the hooks
+        Map<BundleContext, Collection<ListenerInfo>> listeners = new HashMap<BundleContext, Collection<ListenerInfo>>();
+        for (ServiceListenerRegistration listener : snapshot.getAllRegistrations()) {
+            BundleContext context = listener.getBundleContext();
+            if (context != null) {
+                Collection<ListenerInfo> infos = listeners.get(context);
+                if (infos == null) {
+                    infos = new ArrayList<ListenerInfo>();
+                    listeners.put(context, infos);
+                }
+                infos.add(listener.getListenerInfo());
+            }
+        }
+        for (Map.Entry<BundleContext, Collection<ListenerInfo>> entry : listeners.entrySet()) {
+            listeners.put(entry.getKey(), new RemoveOnlyCollection<ListenerInfo>(entry.getValue()));
+        }
+        listeners = new RemoveOnlyMap<BundleContext, Collection<ListenerInfo>>(listeners);
+
+        // Call the registered event hooks
+        callServiceEventHooks(eventHooks, listeners, event);
+        callServieEventListenerHooks(listenerHooks, listeners, event);
 
         // Nobody is interested
         if (listeners.isEmpty())
@@ -572,52 +597,50 @@ final class FrameworkEventsImpl implements FrameworkEvents {
         for (Map.Entry<BundleContext, Collection<ListenerInfo>> entry : listeners.entrySet()) {
             for (ListenerInfo info : entry.getValue()) {
                 ServiceListenerRegistration listenerReg = ((ListenerInfoImpl) info).getRegistration();
-                AbstractBundleContext<?> context = (AbstractBundleContext<?>) info.getBundleContext();
-                if (context.isDestroyed()) {
-                    continue;
-                }
-                // Service events must only be delivered to event listeners which can validly cast the event
-                if (!listenerReg.isAllServiceListener()) {
-                    boolean assignableToOwner = true;
-                    XBundle owner = context.getBundleState();
-                    String[] clazzes = (String[]) serviceState.getProperty(Constants.OBJECTCLASS);
-                    for (String clazz : clazzes) {
-                        if (serviceState.isAssignableTo(owner, clazz) == false) {
-                            assignableToOwner = false;
-                            break;
-                        }
-                    }
-                    if (assignableToOwner == false)
-                        continue;
-                }
+                deliverServiceEvent(listenerReg, event, serviceState, typeName);
+            }
+        }
+    }
 
-                try {
-                    String filterstr = info.getFilter();
-                    ServiceListener listener = listenerReg.getListener();
-                    if (listenerReg.isAllServiceListener() || listener instanceof UnfilteredServiceListener || listenerReg.filter.match(serviceState)) {
-                        listener.serviceChanged(event);
-                    }
+    private void deliverServiceEvent(ServiceListenerRegistration listenerReg, ServiceEvent event, ServiceState<?> serviceState, String typeName) {
+        AbstractBundleContext<?> context = (AbstractBundleContext<?>) listenerReg.getBundleContext();
+        if (context == null || context.isDestroyed())
+            return;
 
-                    // The MODIFIED_ENDMATCH event is synchronously delivered after the service properties have been modified.
-                    // This event is only delivered to listeners which were added with a non-null filter where
-                    // the filter matched the service properties prior to the modification but the filter does
-                    // not match the modified service properties.
-                    else if (filterstr != null && ServiceEvent.MODIFIED == event.getType()) {
-                        if (listenerReg.filter.match(serviceState.getPreviousProperties())) {
-                            event = new ServiceEventImpl(ServiceEvent.MODIFIED_ENDMATCH, serviceState);
-                            listener.serviceChanged(event);
-                        }
-                    }
-                } catch (Throwable th) {
-                    LOGGER.warnErrorWhileFiringServiceEvent(th, typeName, serviceState);
+        // Service events must only be delivered to event listeners which can validly cast the event
+        if (!listenerReg.isAllServiceListener()) {
+            XBundle owner = context.getBundleState();
+            String[] clazzes = (String[]) serviceState.getProperty(Constants.OBJECTCLASS);
+            for (String clazz : clazzes) {
+                if (serviceState.isAssignableTo(owner, clazz) == false)
+                    return;
+            }
+        }
+
+        try {
+            ServiceListener listener = listenerReg.getListener();
+            if (listenerReg.isAllServiceListener() || listener instanceof UnfilteredServiceListener || listenerReg.filter.match(serviceState)) {
+                listener.serviceChanged(event);
+            }
+
+            // The MODIFIED_ENDMATCH event is synchronously delivered after the service properties have been modified.
+            // This event is only delivered to listeners which were added with a non-null filter where
+            // the filter matched the service properties prior to the modification but the filter does
+            // not match the modified service properties.
+            else if (listenerReg.filter != NoFilter.INSTANCE && ServiceEvent.MODIFIED == event.getType()) {
+                if (listenerReg.filter.match(serviceState.getPreviousProperties())) {
+                    ServiceEvent endmatch = new ServiceEventImpl(ServiceEvent.MODIFIED_ENDMATCH, serviceState);
+                    listener.serviceChanged(endmatch);
                 }
             }
+        } catch (Throwable th) {
+            LOGGER.warnErrorWhileFiringServiceEvent(th, typeName, serviceState);
         }
     }
 
-    private void callServieEventListenerHooks(BundleContext syscontext, Map<BundleContext, Collection<ListenerInfo>> listeners, ServiceEvent event) {
+    private void callServieEventListenerHooks(List<EventListenerHook> hooks, Map<BundleContext, Collection<ListenerInfo>> listeners, ServiceEvent event) {
         // Call the registered event listener hooks
-        for (EventListenerHook hook : getServiceEventListenerHooks(syscontext)) {
+        for (EventListenerHook hook : hooks) {
             try {
                 hook.event(event, listeners);
             } catch (Exception ex) {
@@ -626,33 +649,11 @@ final class FrameworkEventsImpl implements FrameworkEvents {
         }
     }
 
-    private List<EventListenerHook> getServiceEventListenerHooks(BundleContext syscontext) {
-
-        List<EventListenerHook> hooks = new ArrayList<EventListenerHook>();
-        Collection<ServiceReference<EventListenerHook>> srefs = null;
-        try {
-            srefs = syscontext.getServiceReferences(EventListenerHook.class, null);
-        } catch (InvalidSyntaxException e) {
-            // ignore
-        }
-
-        // The calling order of the hooks is defined by the reversed compareTo ordering of their Service
-        // Reference objects. That is, the service with the highest ranking number is called first.
-        List<ServiceReference<EventListenerHook>> sortedRefs = new ArrayList<ServiceReference<EventListenerHook>>(srefs);
-        Collections.reverse(sortedRefs);
-
-        for (ServiceReference<EventListenerHook> sref : sortedRefs)
-            hooks.add(syscontext.getService(sref));
-
-        return hooks;
-    }
-
-    private void callServiceEventHooks(BundleContext syscontext, Map<BundleContext, Collection<ListenerInfo>> listeners, final ServiceEvent event) {
+    private void callServiceEventHooks(List<org.osgi.framework.hooks.service.EventHook> eventHooks, Map<BundleContext, Collection<ListenerInfo>> listeners, final ServiceEvent event) {
 
         Collection<BundleContext> contexts = new RemoveOnlyCollection<BundleContext>(listeners.keySet());
 
         // Call the registered event hooks
-        List<org.osgi.framework.hooks.service.EventHook> eventHooks = getServiceEventHooks(syscontext);
         for (org.osgi.framework.hooks.service.EventHook hook : eventHooks) {
             try {
                 hook.event(event, contexts);
@@ -672,26 +673,6 @@ final class FrameworkEventsImpl implements FrameworkEvents {
         }
     }
 
-    private List<org.osgi.framework.hooks.service.EventHook> getServiceEventHooks(BundleContext syscontext) {
-        List<org.osgi.framework.hooks.service.EventHook> hooks = new ArrayList<org.osgi.framework.hooks.service.EventHook>();
-        Collection<ServiceReference<org.osgi.framework.hooks.service.EventHook>> srefs = null;
-        try {
-            srefs = syscontext.getServiceReferences(org.osgi.framework.hooks.service.EventHook.class, null);
-        } catch (InvalidSyntaxException e) {
-            // ignore
-        }
-        if (srefs != null && !srefs.isEmpty()) {
-            // The calling order of the hooks is defined by the reversed compareTo ordering of their Service
-            // Reference objects. That is, the service with the highest ranking number is called first.
-            List<ServiceReference<org.osgi.framework.hooks.service.EventHook>> sorted = new ArrayList<ServiceReference<org.osgi.framework.hooks.service.EventHook>>(srefs);
-            Collections.reverse(sorted);
-
-            for (ServiceReference<org.osgi.framework.hooks.service.EventHook> sref : sorted)
-                hooks.add(syscontext.getService(sref));
-        }
-        return hooks;
-    }
-
     /**
      * Filter and AccessControl for service events
      */
@@ -702,6 +683,7 @@ final class FrameworkEventsImpl implements FrameworkEvents {
         private final ServiceListener listener;
         private final Filter filter;
         private final ListenerInfo info;
+        private final String objectClassConstraint;
 
         // Any access control context
         AccessControlContext accessControlContext;
@@ -715,10 +697,30 @@ final class FrameworkEventsImpl implements FrameworkEvents {
             this.filter = filter;
             this.bundleContext = bundle.getBundleContext();
             this.info = new ListenerInfoImpl(bundleContext, this);
+            this.objectClassConstraint = getObjectClassConstraint(listener, filter);
             if (System.getSecurityManager() != null)
                 accessControlContext = AccessController.getContext();
         }
 
+        // Get the objectClass that a service must have for this listener to receive its events, or null
+        private static String getObjectClassConstraint(ServiceListener listener, Filter filter) {
+            if (listener instanceof AllServiceListener || listener instanceof UnfilteredServiceListener)
+                return null;
+            if (filter instanceof CompiledFilter) {
+                CompiledFilter compiledFilter = (CompiledFilter) filter;
+                for (int i = 0; i < compiledFilter.getEqualityTermCount(); i++) {
+                    if (OBJECTCLASS_KEY.equals(compiledFilter.getEqualityKey(i))) {
+                        return compiledFilter.getEqualityValue(i);
+                    }
+                }
+            }
+            return null;
+        }
+
+        String getObjectClassConstraint() {
+            return objectClassConstraint;
+        }
+
         XBundle getBundle() {
             return bundle;
         }
@@ -761,6 +763,87 @@ final class FrameworkEventsImpl implements FrameworkEvents {
         }
     }
 
+    /**
+     * An immutable snapshot of the service listener registrations.
+     *
+     * Registrations whose filter requires a specific objectClass are indexed by that class name, all others are
+     * unconstrained. A service event only needs to visit the registrations indexed by the service's class names and
+     * the unconstrained ones.
+     */
+    static final class ServiceListenerSnapshot {
+
+        private static final ServiceListenerRegistration[] NONE = new ServiceListenerRegistration[0];
+        static final ServiceListenerSnapshot EMPTY = new ServiceListenerSnapshot(new HashMap<String, ServiceListenerRegistration[]>(), NONE, NONE);
+
+        private final Map<String, ServiceListenerRegistration[]> byClass;
+        private final ServiceListenerRegistration[] unconstrained;
+        private final ServiceListenerRegistration[] all;
+
+        private ServiceListenerSnapshot(Map<String, ServiceListenerRegistration[]> byClass, ServiceListenerRegistration[] unconstrained, ServiceListenerRegistration[] all) {
+            this.byClass = byClass;
+            this.unconstrained = unconstrained;
+            this.all = all;
+        }
+
+        ServiceListenerRegistration[] getRegistrations(String className) {
+            ServiceListenerRegistration[] result = byClass.get(className);
+            return result != null ? result : NONE;
+        }
+
+        ServiceListenerRegistration[] getUnconstrainedRegistrations() {
+            return unconstrained;
+        }
+
+        List<ServiceListenerRegistration> getAllRegistrations() {
+            return Arrays.asList(all);
+        }
+
+        ServiceListenerSnapshot add(ServiceListenerRegistration slreg) {
+            String className = slreg.getObjectClassConstraint();
+            if (className == null) {
+                return new ServiceListenerSnapshot(byClass, append(unconstrained, slreg), append(all, slreg));
+            }
+            Map<String, ServiceListenerRegistration[]> result = new HashMap<String, ServiceListenerRegistration[]>(byClass);
+            result.put(className, append(getRegistrations(className), slreg));
+            return new ServiceListenerSnapshot(result, unconstrained, append(all, slreg));
+        }
+
+        ServiceListenerSnapshot remove(ServiceListenerRegistration slreg) {
+            String className = slreg.getObjectClassConstraint();
+            if (className == null) {
+                return new ServiceListenerSnapshot(byClass, removeFrom(unconstrained, slreg), removeFrom(all, slreg));
+            }
+            Map<String, ServiceListenerRegistration[]> result = new HashMap<String, ServiceListenerRegistration[]>(byClass);
+            ServiceListenerRegistration[] registrations = removeFrom(getRegistrations(className), slreg);
+            if (registrations.length > 0) {
+                result.put(className, registrations);
+            } else {
+                result.remove(className);
+            }
+            return new ServiceListenerSnapshot(result, unconstrained, removeFrom(all, slreg));
+        }
+
+        private static ServiceListenerRegistration[] append(ServiceListenerRegistration[] array, ServiceListenerRegistration slreg) {
+            ServiceListenerRegistration[] result = Arrays.copyOf(array, array.length + 1);
+            result[array.length] = slreg;
+            return result;
+        }
+
+        private static ServiceListenerRegistration[] removeFrom(ServiceListenerRegistration[] array, ServiceListenerRegistration slreg) {
+            for (int i = 0; i < array.length; i++) {
+                if (array[i] == slreg) {
+                    if (array.length == 1)
+                        return NONE;
+                    ServiceListenerRegistration[] result = new ServiceListenerRegistration[array.length - 1];
+                    System.arraycopy(array, 0, result, 0, i);
+                    System.arraycopy(array, i + 1, result, i, array.length - i - 1);
+                    return result;
+                }
+            }
+            return array;
+        }
+    }
+
     static class BundleListenerRegistration {
         private final BundleListener listener;
         private final BundleContext bundleContext;
@@ -21,11 +21,19 @@
  */
 package org.jboss.osgi.framework.internal;
 
+import static org.jboss.osgi.framework.FrameworkLogger.LOGGER;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.jboss.msc.service.ServiceBuilder;
 import org.jboss.msc.service.ServiceController.Mode;
 import org.jboss.msc.service.StartContext;
 import org.jboss.msc.service.StartException;
 import org.jboss.msc.service.StopContext;
+import org.jboss.osgi.framework.Constants;
 import org.jboss.osgi.framework.spi.ExecutorServicePlugin;
 import org.jboss.osgi.framework.spi.FrameworkEvents;
 import org.jboss.osgi.framework.spi.IntegrationServices;
@@ -55,6 +63,37 @@ final class FrameworkEventsPlugin extends ExecutorServicePlugin<FrameworkEvents>
         builder.setInitialMode(Mode.ON_DEMAND);
     }
 
+    @Override
+    protected ExecutorService createExecutorService(final String threadName) {
+        int maxThreads = getMaxThreads();
+        if (maxThreads == 1) {
+            return super.createExecutorService(threadName);
+        }
+        // Deliveries to the same listener are serialized by the {@link EventDispatcher}
+        return Executors.newFixedThreadPool(maxThreads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable run) {
+                Thread thread = new Thread(run);
+                thread.setName(threadName + "-" + count.incrementAndGet());
+                return thread;
+            }
+        });
+    }
+
+    private int getMaxThreads() {
+        // Parallel event delivery is opt-in
+        Object value = getBundleManager().getProperty(Constants.PROPERTY_EVENTS_THREADS);
+        if (value == null)
+            return 1;
+        try {
+            return Math.max(1, Integer.parseInt(value.toString().trim()));
+        } catch (NumberFormatException ex) {
+            LOGGER.debugf("Invalid %s: %s", Constants.PROPERTY_EVENTS_THREADS, value);
+            return 1;
+        }
+    }
+
     @Override
     protected FrameworkEvents createServiceValue(StartContext startContext) throws StartException {
         return new FrameworkEventsImpl((BundleManagerPlugin) getBundleManager(), getExecutorService());
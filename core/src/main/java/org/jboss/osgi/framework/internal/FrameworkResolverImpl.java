@@ -21,9 +21,11 @@
  */
 package org.jboss.osgi.framework.internal;
 
+import static org.jboss.osgi.framework.Constants.PROPERTY_RESOLVER_CACHE;
 import static org.jboss.osgi.framework.internal.InternalConstants.NATIVE_LIBRARY_METADATA_KEY;
 import static org.jboss.osgi.resolver.ResolverMessages.MESSAGES;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -43,6 +45,7 @@ import org.jboss.osgi.framework.spi.LockManager.LockContext;
 import org.jboss.osgi.framework.spi.LockManager.Method;
 import org.jboss.osgi.framework.spi.ModuleManager;
 import org.jboss.osgi.framework.spi.NativeCode;
+import org.jboss.osgi.framework.spi.StorageManager;
 import org.jboss.osgi.metadata.NativeLibraryMetaData;
 import org.jboss.osgi.resolver.XBundle;
 import org.jboss.osgi.resolver.XBundleRevision;
@@ -84,6 +87,7 @@ final class FrameworkResolverImpl implements XResolver {
     private final FrameworkModuleLoader moduleLoader;
     private final LockManager lockManager;
     private final XResolver resolver;
+    private ResolutionCache resolutionCache;
 
     FrameworkResolverImpl(BundleManager bundleManager, NativeCode nativeCode, ModuleManager moduleManager, FrameworkModuleLoader moduleLoader, XResolver resolver, LockManager lockManager) {
         this.bundleManager = (BundleManagerPlugin) bundleManager;
@@ -155,12 +159,34 @@ final class FrameworkResolverImpl implements XResolver {
 
             Map<Resource, List<Wire>> wiremap;
 
+            // Resolver hooks may filter differently on every resolve operation
+            ResolutionCache resolutionCache = hookregs.hasResolverHooks() ? null : getResolutionCache();
+
             FrameworkWiringLock wireLock = lockManager.getItemForType(FrameworkWiringLock.class);
             LockContext lockContext = lockManager.lockItems(Method.RESOLVE, wireLock);
             try {
-                wiremap = resolver.resolve(resolveContext);
+                ResolutionCache.Context cacheContext = null;
+                if (resolutionCache != null) {
+                    cacheContext = resolutionCache.createContext(env, resolveContext.getMandatoryResources(), resolveContext.getOptionalResources());
+                }
+                wiremap = cacheContext != null ? cacheContext.getWiring() : null;
+                boolean cached = wiremap != null;
+                if (!cached) {
+                    wiremap = resolver.resolve(resolveContext);
+                }
                 if (applyResults) {
+                    // Applying the results replaces the wires in the map
+                    Map<Resource, List<Wire>> resolved = null;
+                    if (cacheContext != null && !cached) {
+                        resolved = new LinkedHashMap<Resource, List<Wire>>();
+                        for (Entry<Resource, List<Wire>> entry : wiremap.entrySet()) {
+                            resolved.put(entry.getKey(), new ArrayList<Wire>(entry.getValue()));
+                        }
+                    }
                     applyResolverResults(env, wiremap);
+                    if (resolved != null) {
+                        cacheContext.putWiring(resolved);
+                    }
                 }
             } finally {
                 lockManager.unlockItems(lockContext);
@@ -177,6 +203,31 @@ final class FrameworkResolverImpl implements XResolver {
         }
     }
 
+    /**
+     * Store the results of the bootstrap resolve operations, which are reused on the next framework start.
+     */
+    synchronized void storeResolutionCache() {
+        if (resolutionCache != null) {
+            resolutionCache.store();
+            resolutionCache = null;
+        }
+    }
+
+    // The cache is only used for the resolve operations that bootstrap the framework
+    private synchronized ResolutionCache getResolutionCache() {
+        if (bundleManager.getSystemBundle().getState() == Bundle.ACTIVE)
+            return null;
+        if (resolutionCache == null) {
+            Object value = bundleManager.getProperty(PROPERTY_RESOLVER_CACHE);
+            StorageManager storageManager = bundleManager.getFrameworkState().getStorageManager();
+            if (value == null || !Boolean.parseBoolean(value.toString()) || storageManager == null)
+                return null;
+            File cacheFile = new File(storageManager.getStorageArea(), ResolutionCache.CACHE_FILE_NAME);
+            resolutionCache = new ResolutionCache(cacheFile, bundleManager.getProperties());
+        }
+        return resolutionCache;
+    }
+
     private Collection<? extends Resource> getFilteredResources(ResolverHookProcessor hookregs, Collection<? extends Resource> resources) {
         Collection<Resource> filtered = null;
         if (resources != null) {
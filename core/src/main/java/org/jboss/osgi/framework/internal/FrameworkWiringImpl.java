@@ -24,17 +24,27 @@ package org.jboss.osgi.framework.internal;
 import static org.jboss.osgi.framework.FrameworkLogger.LOGGER;
 import static org.jboss.osgi.framework.FrameworkMessages.MESSAGES;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 
+import org.jboss.osgi.framework.Constants;
 import org.jboss.osgi.framework.spi.BundleManager;
 import org.jboss.osgi.framework.spi.FrameworkEvents;
 import org.jboss.osgi.framework.spi.FrameworkWiringLock;
@@ -80,14 +90,30 @@ public final class FrameworkWiringImpl implements FrameworkWiring {
     private final LockManager lockManager;
     private final XEnvironment environment;
     private final ExecutorService executorService;
+    private final ExecutorService lifecycleExecutor;
+    private final int refreshParallelism;
 
-    public FrameworkWiringImpl(BundleManager bundleManager, FrameworkEvents events, XEnvironment environment, XResolver resolver, LockManager lockManager, ExecutorService executorService) {
+    public FrameworkWiringImpl(BundleManager bundleManager, FrameworkEvents events, XEnvironment environment, XResolver resolver, LockManager lockManager, ExecutorService executorService, ExecutorService lifecycleExecutor) {
         this.bundleManager = (BundleManagerPlugin) bundleManager;
         this.events = events;
         this.environment = environment;
         this.resolver = resolver;
         this.lockManager = lockManager;
         this.executorService = executorService;
+        this.lifecycleExecutor = lifecycleExecutor;
+        this.refreshParallelism = getRefreshParallelism(bundleManager);
+    }
+
+    private static int getRefreshParallelism(BundleManager bundleManager) {
+        Object value = bundleManager.getProperty(Constants.PROPERTY_REFRESH_PARALLELISM);
+        if (value == null)
+            return 1;
+        try {
+            return Math.max(1, Integer.parseInt(value.toString().trim()));
+        } catch (NumberFormatException ex) {
+            LOGGER.debugf("Invalid %s: %s", Constants.PROPERTY_REFRESH_PARALLELISM, value);
+            return 1;
+        }
     }
 
     @Override
@@ -148,17 +174,35 @@ public final class FrameworkWiringImpl implements FrameworkWiring {
             }
         }
 
+        BundleStartLevelComparator startLevelComparator = new BundleStartLevelComparator();
+        Collections.sort(stopList, startLevelComparator);
+
+        // Independent groups of bundles are stopped concurrently before the closure is locked,
+        // because the bundle locks are owned by the thread that obtained them
+        boolean concurrent = refreshParallelism > 1 && stopList.size() > 1;
+        if (concurrent) {
+            runConcurrently(stopList, dependencyClosure, false);
+        }
+
         LockableItem wireLock = lockManager.getItemForType(FrameworkWiringLock.class);
         XBundle[] bundles = dependencyClosure.toArray(new XBundle[dependencyClosure.size()]);
         LockableItem[] items = LockUtils.getLockableItems(bundles, new LockableItem[] { wireLock });
-        LockContext context = lockManager.lockItems(Method.REFRESH, items);
+        LockContext context;
+        try {
+            context = lockManager.lockItems(Method.REFRESH, items);
+        } catch (RuntimeException ex) {
+            // The closure could not be locked, restart the bundles that were stopped concurrently
+            if (concurrent) {
+                runConcurrently(stopList, dependencyClosure, true);
+            }
+            throw ex;
+        }
         try {
             // Lock the dependency closure
-            BundleStartLevelComparator startLevelComparator = new BundleStartLevelComparator();
-            Collections.sort(stopList, startLevelComparator);
-
             for (ListIterator<XBundle> it = stopList.listIterator(stopList.size()); it.hasPrevious();) {
                 XBundle bundle = it.previous();
+                if (concurrent && (bundle.getState() & (Bundle.ACTIVE | Bundle.STARTING)) == 0)
+                    continue;
                 try {
                     bundleManager.stopBundleLifecycle(bundle, Bundle.STOP_TRANSIENT);
                 } catch (Exception th) {
@@ -195,21 +239,168 @@ public final class FrameworkWiringImpl implements FrameworkWiring {
                 }
             }
 
-            for (XBundle bundle : stopList) {
-                try {
-                    bundleManager.startBundleLifecycle(bundle, Bundle.START_TRANSIENT);
-                } catch (Exception th) {
-                    events.fireFrameworkEvent(bundle, FrameworkEvent.ERROR, th);
+            if (!concurrent) {
+                for (XBundle bundle : stopList) {
+                    runLifecycle(bundle, true);
                 }
             }
-
-            XBundle systemBundle = bundleManager.getSystemBundle();
-            events.fireFrameworkEvent(systemBundle, FrameworkEvent.PACKAGES_REFRESHED, null, listeners);
         } catch (BundleException ex) {
             throw MESSAGES.illegalStateCannotRefreshBundles(ex);
         } finally {
             lockManager.unlockItems(context);
         }
+
+        // Resolve the restarted bundles in one pass so that starting them does not contend on the wiring lock
+        if (concurrent) {
+            resolveBundles(new ArrayList<Bundle>(stopList));
+            runConcurrently(stopList, dependencyClosure, true);
+        }
+
+        XBundle systemBundle = bundleManager.getSystemBundle();
+        events.fireFrameworkEvent(systemBundle, FrameworkEvent.PACKAGES_REFRESHED, null, listeners);
+    }
+
+    /**
+     * Stop or start the given bundles, which are sorted by start level. The start levels are processed one after
+     * the other, in reverse order when stopping. Within a start level, bundles that are not wired to each other
+     * directly or through other bundles of the dependency closure are processed concurrently on the lifecycle executor.
+     * Wired bundles keep the sequential order.
+     *
+     * If the calling thread is interrupted, the running tasks are awaited and the remaining bundles are processed
+     * sequentially, so that no bundle is refreshed while it is still being stopped.
+     */
+    private void runConcurrently(List<XBundle> sortedBundles, List<XBundle> dependencyClosure, final boolean start) {
+
+        Map<XBundle, Integer> subgraphs = getIndependentSubgraphs(sortedBundles, dependencyClosure);
+        TreeMap<Integer, Map<Integer, List<XBundle>>> levels = new TreeMap<Integer, Map<Integer, List<XBundle>>>();
+        for (XBundle bundle : sortedBundles) {
+            Integer level = bundle.adapt(BundleStartLevel.class).getStartLevel();
+            Map<Integer, List<XBundle>> groups = levels.get(level);
+            if (groups == null) {
+                groups = new LinkedHashMap<Integer, List<XBundle>>();
+                levels.put(level, groups);
+            }
+            Integer subgraph = subgraphs.get(bundle);
+            List<XBundle> group = groups.get(subgraph);
+            if (group == null) {
+                group = new ArrayList<XBundle>();
+                groups.put(subgraph, group);
+            }
+            group.add(bundle);
+        }
+
+        Map<Integer, Map<Integer, List<XBundle>>> ordered = start ? levels : levels.descendingMap();
+        if (!start) {
+            for (Map<Integer, List<XBundle>> groups : ordered.values()) {
+                for (List<XBundle> group : groups.values()) {
+                    Collections.reverse(group);
+                }
+            }
+        }
+        Set<XBundle> attempted = Collections.newSetFromMap(new ConcurrentHashMap<XBundle, Boolean>());
+        BoundedTaskRunner<Void> taskRunner = new BoundedTaskRunner<Void>(lifecycleExecutor, refreshParallelism);
+        boolean interrupted = false;
+        try {
+            for (Map<Integer, List<XBundle>> groups : ordered.values()) {
+                for (List<XBundle> group : groups.values()) {
+                    submitLifecycleTask(taskRunner, group, start, attempted);
+                }
+                while (taskRunner.hasPending()) {
+                    taskRunner.take();
+                }
+            }
+        } catch (InterruptedException ex) {
+            interrupted = true;
+        } catch (ExecutionException ex) {
+            LOGGER.debugf(ex, "Cannot refresh bundles concurrently");
+        } finally {
+            // Do not process any more bundles before the running tasks have completed
+            taskRunner.cancelAndAwait();
+        }
+
+        // Process the remaining bundles in order
+        for (Map<Integer, List<XBundle>> groups : ordered.values()) {
+            for (List<XBundle> group : groups.values()) {
+                for (XBundle bundle : group) {
+                    if (!attempted.contains(bundle)) {
+                        runLifecycle(bundle, start);
+                    }
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submitLifecycleTask(BoundedTaskRunner<Void> taskRunner, final List<XBundle> group, final boolean start, final Set<XBundle> attempted) {
+        taskRunner.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (XBundle bundle : group) {
+                    attempted.add(bundle);
+                    runLifecycle(bundle, start);
+                }
+                return null;
+            }
+        });
+    }
+
+    private void runLifecycle(XBundle bundle, boolean start) {
+        try {
+            if (start) {
+                bundleManager.startBundleLifecycle(bundle, Bundle.START_TRANSIENT);
+            } else {
+                bundleManager.stopBundleLifecycle(bundle, Bundle.STOP_TRANSIENT);
+            }
+        } catch (Exception th) {
+            events.fireFrameworkEvent(bundle, FrameworkEvent.ERROR, th);
+        }
+    }
+
+    /**
+     * Partition the given bundles by the connected components of the wiring graph of the dependency closure.
+     * Bundles that are only connected through other closure members, such as a resolved library, share a component.
+     *
+     * @return the index of the component for each bundle, components are numbered in bundle order
+     */
+    private Map<XBundle, Integer> getIndependentSubgraphs(List<XBundle> bundles, List<XBundle> dependencyClosure) {
+        Map<XBundle, Integer> result = new HashMap<XBundle, Integer>();
+        Set<XBundle> candidates = new HashSet<XBundle>(dependencyClosure);
+        candidates.addAll(bundles);
+        Deque<XBundle> worklist = new ArrayDeque<XBundle>();
+        int index = 0;
+        for (XBundle root : bundles) {
+            if (result.containsKey(root))
+                continue;
+            Integer subgraph = index++;
+            result.put(root, subgraph);
+            worklist.add(root);
+            while (!worklist.isEmpty()) {
+                XBundle bundle = worklist.poll();
+                BundleRevisions brevs = bundle.adapt(BundleRevisions.class);
+                for (BundleRevision aux : brevs.getRevisions()) {
+                    XBundleRevision brev = (XBundleRevision) aux;
+                    Wiring wiring = brev.getWiringSupport().getWiring(false);
+                    if (wiring == null)
+                        continue;
+                    List<Wire> wires = new ArrayList<Wire>(wiring.getRequiredResourceWires(null));
+                    wires.addAll(wiring.getProvidedResourceWires(null));
+                    for (Wire wire : wires) {
+                        XBundle other = ((XBundleRevision) wire.getProvider()).getBundle();
+                        if (other == bundle) {
+                            other = ((XBundleRevision) wire.getRequirer()).getBundle();
+                        }
+                        if (candidates.contains(other) && !result.containsKey(other)) {
+                            result.put(other, subgraph);
+                            worklist.add(other);
+                        }
+                    }
+                }
+            }
+        }
+        result.keySet().retainAll(new HashSet<XBundle>(bundles));
+        return result;
     }
 
     @Override
@@ -280,39 +471,45 @@ public final class FrameworkWiringImpl implements FrameworkWiring {
         if (bundles == null)
             throw MESSAGES.illegalArgumentNull("bundles");
 
+        // Walk the provided wires iteratively, the wiring of each revision already indexes the wires to its requirers
         Set<Bundle> closure = new HashSet<Bundle>();
+        Deque<XBundle> worklist = new ArrayDeque<XBundle>();
         for (Bundle bundle : bundles) {
-            transitiveDependencyClosure((XBundle) bundle, closure);
+            worklist.add((XBundle) bundle);
         }
-        return Collections.unmodifiableCollection(closure);
-    }
-
-    private void transitiveDependencyClosure(XBundle bundle, Set<Bundle> closure) {
-        if (bundle.getBundleId() != 0 && closure.contains(bundle) == false) {
-            closure.add(bundle);
+        while (!worklist.isEmpty()) {
+            XBundle bundle = worklist.poll();
+            if (bundle.getBundleId() == 0 || !closure.add(bundle))
+                continue;
 
             BundleRevisions brevs = bundle.adapt(BundleRevisions.class);
             for (BundleRevision aux : brevs.getRevisions()) {
                 XBundleRevision brev = (XBundleRevision) aux;
                 Wiring wiring = brev.getWiringSupport().getWiring(false);
                 if (wiring != null) {
-                    transitiveDependencyClosure(brev, wiring, closure);
+                    addDependentBundles(brev, wiring, closure, worklist);
                 }
             }
         }
+        return Collections.unmodifiableCollection(closure);
     }
 
-    private void transitiveDependencyClosure(XBundleRevision brev, Wiring wiring, Set<Bundle> closure) {
+    private void addDependentBundles(XBundleRevision brev, Wiring wiring, Set<Bundle> closure, Deque<XBundle> worklist) {
         if (brev instanceof FragmentBundleRevision) {
             for (Wire wire : wiring.getRequiredResourceWires(HostNamespace.HOST_NAMESPACE)) {
                 AbstractBundleWire bwire = (AbstractBundleWire) wire;
-                Bundle provider = bwire.getProviderWiring(false).getBundle();
-                transitiveDependencyClosure((XBundle) provider, closure);
+                XBundle provider = (XBundle) bwire.getProviderWiring(false).getBundle();
+                if (!closure.contains(provider)) {
+                    worklist.add(provider);
+                }
             }
         } else {
             for (Wire wire : wiring.getProvidedResourceWires(null)) {
                 XBundleRevision requirer = (XBundleRevision) wire.getRequirer();
-                transitiveDependencyClosure(requirer.getBundle(), closure);
+                XBundle bundle = requirer.getBundle();
+                if (!closure.contains(bundle)) {
+                    worklist.add(bundle);
+                }
             }
         }
     }
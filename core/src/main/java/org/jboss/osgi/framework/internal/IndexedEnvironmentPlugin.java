@@ -0,0 +1,40 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import org.jboss.msc.service.StartContext;
+import org.jboss.osgi.framework.spi.EnvironmentPlugin;
+import org.jboss.osgi.resolver.XEnvironment;
+
+/**
+ * The default {@link XEnvironment} plugin that provides an {@link IndexedEnvironment}.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+final class IndexedEnvironmentPlugin extends EnvironmentPlugin {
+
+    @Override
+    protected XEnvironment createServiceValue(StartContext startContext) {
+        return new IndexedEnvironment();
+    }
+}
@@ -21,10 +21,26 @@
  */
 package org.jboss.osgi.framework.internal;
 
+import static org.jboss.osgi.framework.FrameworkLogger.LOGGER;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -32,54 +48,103 @@ import java.util.zip.ZipFile;
 /**
  * A utility class which maintains the set of JDK paths.
  *
+ * The packages of the JDK come from the boot module layer if there is one, otherwise from the jars on the boot class path.
+ * The paths of every jar are stored in an index file in the storage area, which is reused as long as the jar has the
+ * same size and modification time. Directories on the class path are always scanned.
+ *
+ * The storage area comes from the initialized {@link org.jboss.osgi.framework.spi.StorageManager}, so the index is
+ * written after the storage clean on first init and reused on restart.
+ *
  * @author david.lloyd@redhat.com
  * @author thomas.diesler@jboss.com
  * @since 27-Jul-2011
  */
 final class JDKPaths {
-    static final Set<String> JDK;
 
-    static {
+    static final String INDEX_FILE_NAME = "jdk-paths.index";
+
+    private static final int MAGIC = 0x4A424A50;
+    private static final int VERSION = 1;
+
+    private static volatile Set<String> cachedPaths;
+
+    private JDKPaths() {
+    }
+
+    /**
+     * Get the JDK paths, using the index in the given storage area if there is one.
+     */
+    static Set<String> getJDKPaths(File storageArea) {
+        Set<String> result = cachedPaths;
+        if (result == null) {
+            synchronized (JDKPaths.class) {
+                result = cachedPaths;
+                if (result == null) {
+                    File indexFile = storageArea != null ? new File(storageArea, INDEX_FILE_NAME) : null;
+                    String javaClassPath = SecurityActions.getSystemProperty("java.class.path", null);
+                    result = Collections.unmodifiableSet(loadPaths(indexFile, javaClassPath));
+                    cachedPaths = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    static Set<String> loadPaths(File indexFile, String javaClassPath) {
         final Set<String> pathSet = new HashSet<String>(1024);
-        final Set<String> jarSet = new HashSet<String>(1024);
-        final String sunBootClassPath = SecurityActions.getSystemProperty("sun.boot.class.path", null);
-        final String javaClassPath = SecurityActions.getSystemProperty("java.class.path", null);
-        processClassPathItem(sunBootClassPath, jarSet, pathSet);
-        processClassPathItem(javaClassPath, jarSet, pathSet);
-        JDK = pathSet;
+        final Map<String, JarPaths> storedJars = readIndex(indexFile);
+        final Map<String, JarPaths> jarPaths = new LinkedHashMap<String, JarPaths>();
+        if (!processModuleLayer(pathSet)) {
+            final String sunBootClassPath = SecurityActions.getSystemProperty("sun.boot.class.path", null);
+            processClassPathItem(sunBootClassPath, storedJars, jarPaths, pathSet);
+        }
+        processClassPathItem(javaClassPath, storedJars, jarPaths, pathSet);
+        if (indexFile != null && !jarPaths.equals(storedJars)) {
+            writeIndex(indexFile, jarPaths);
+        }
+        return pathSet;
     }
 
-    private JDKPaths() {
+    // Add the packages of the boot module layer, which is only available on Java 9 and later
+    private static boolean processModuleLayer(final Set<String> pathSet) {
+        try {
+            Class<?> layerClass = Class.forName("java.lang.ModuleLayer");
+            Object bootLayer = layerClass.getMethod("boot").invoke(null);
+            Collection<?> modules = (Collection<?>) layerClass.getMethod("modules").invoke(bootLayer);
+            Method getPackages = Class.forName("java.lang.Module").getMethod("getPackages");
+            for (Object module : modules) {
+                for (Object packageName : (Collection<?>) getPackages.invoke(module)) {
+                    pathSet.add(packageName.toString().replace('.', '/'));
+                }
+            }
+            return true;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        } catch (Exception ex) {
+            LOGGER.debugf(ex, "Cannot obtain packages from the boot module layer");
+            return false;
+        }
     }
 
-    private static void processClassPathItem(final String classPath, final Set<String> jarSet, final Set<String> pathSet) {
+    private static void processClassPathItem(final String classPath, final Map<String, JarPaths> storedJars, final Map<String, JarPaths> jarPaths, final Set<String> pathSet) {
         if (classPath == null) return;
         int s = 0, e;
         do {
             e = classPath.indexOf(File.pathSeparatorChar, s);
             String item = e == -1 ? classPath.substring(s) : classPath.substring(s, e);
-            if (! jarSet.contains(item)) {
-                final File file = new File(item);
+            final File file = new File(item);
+            final String key = file.getAbsolutePath();
+            if (!jarPaths.containsKey(key)) {
                 if (file.isDirectory()) {
                     processDirectory0(pathSet, file);
-                } else {
-                    try {
-                        final ZipFile zipFile = new ZipFile(file);
-                        try {
-                            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
-                            while (entries.hasMoreElements()) {
-                                final ZipEntry entry = entries.nextElement();
-                                final String name = entry.getName();
-                                final int lastSlash = name.lastIndexOf('/');
-                                if (lastSlash != -1) {
-                                    pathSet.add(name.substring(0, lastSlash));
-                                }
-                            }
-                        } finally {
-                            zipFile.close();
-                        }
-                    } catch (IOException ex) {
-                        // ignore
+                } else if (file.isFile()) {
+                    JarPaths jar = storedJars.get(key);
+                    if (jar == null || jar.size != file.length() || jar.lastModified != file.lastModified()) {
+                        jar = processJar(file);
+                    }
+                    if (jar != null) {
+                        jarPaths.put(key, jar);
+                        pathSet.addAll(jar.paths);
                     }
                 }
             }
@@ -87,6 +152,33 @@ final class JDKPaths {
         } while (e != -1);
     }
 
+    private static JarPaths processJar(final File file) {
+        final Set<String> paths = new HashSet<String>();
+        final long size = file.length();
+        final long lastModified = file.lastModified();
+        try {
+            final ZipFile zipFile = new ZipFile(file);
+            try {
+                final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    final ZipEntry entry = entries.nextElement();
+                    final String name = entry.getName();
+                    final int lastSlash = name.lastIndexOf('/');
+                    if (lastSlash != -1) {
+                        paths.add(name.substring(0, lastSlash));
+                    }
+                }
+            } finally {
+                zipFile.close();
+            }
+        } catch (IOException ex) {
+            return null;
+        }
+        List<String> sorted = new ArrayList<String>(paths);
+        Collections.sort(sorted);
+        return new JarPaths(size, lastModified, sorted);
+    }
+
     private static void processDirectory0(final Set<String> pathSet, final File file) {
         for (File entry : file.listFiles()) {
             if (entry.isDirectory()) {
@@ -114,4 +206,106 @@ final class JDKPaths {
             }
         }
     }
+
+    // The sorted paths of every jar are stored with the length of the prefix they share with the previous path
+    static Map<String, JarPaths> readIndex(final File indexFile) {
+        final Map<String, JarPaths> result = new HashMap<String, JarPaths>();
+        if (indexFile == null || !indexFile.isFile())
+            return result;
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            try {
+                if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                    return result;
+                int jarCount = input.readInt();
+                for (int i = 0; i < jarCount; i++) {
+                    String key = input.readUTF();
+                    long size = input.readLong();
+                    long lastModified = input.readLong();
+                    int pathCount = input.readInt();
+                    List<String> paths = new ArrayList<String>(pathCount);
+                    String previous = "";
+                    for (int j = 0; j < pathCount; j++) {
+                        int prefixLength = input.readUnsignedShort();
+                        String path = previous.substring(0, prefixLength) + input.readUTF();
+                        paths.add(path);
+                        previous = path;
+                    }
+                    result.put(key, new JarPaths(size, lastModified, paths));
+                }
+            } finally {
+                input.close();
+            }
+        } catch (Exception ex) {
+            LOGGER.debugf(ex, "Cannot read JDK paths index: %s", indexFile);
+            result.clear();
+        }
+        return result;
+    }
+
+    static void writeIndex(final File indexFile, final Map<String, JarPaths> jarPaths) {
+        File tmpFile = new File(indexFile.getPath() + ".tmp");
+        try {
+            indexFile.getParentFile().mkdirs();
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            try {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(jarPaths.size());
+                for (Map.Entry<String, JarPaths> entry : jarPaths.entrySet()) {
+                    JarPaths jar = entry.getValue();
+                    output.writeUTF(entry.getKey());
+                    output.writeLong(jar.size);
+                    output.writeLong(jar.lastModified);
+                    output.writeInt(jar.paths.size());
+                    String previous = "";
+                    for (String path : jar.paths) {
+                        int prefixLength = 0;
+                        int maxLength = Math.min(Math.min(previous.length(), path.length()), 0xFFFF);
+                        while (prefixLength < maxLength && previous.charAt(prefixLength) == path.charAt(prefixLength)) {
+                            prefixLength++;
+                        }
+                        output.writeShort(prefixLength);
+                        output.writeUTF(path.substring(prefixLength));
+                        previous = path;
+                    }
+                }
+            } finally {
+                output.close();
+            }
+            if (!tmpFile.renameTo(indexFile)) {
+                indexFile.delete();
+                if (!tmpFile.renameTo(indexFile))
+                    throw new IOException("Cannot rename: " + tmpFile);
+            }
+        } catch (IOException ex) {
+            LOGGER.debugf(ex, "Cannot write JDK paths index: %s", indexFile);
+            tmpFile.delete();
+        }
+    }
+
+    static final class JarPaths {
+        final long size;
+        final long lastModified;
+        final List<String> paths;
+
+        JarPaths(long size, long lastModified, List<String> paths) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.paths = paths;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (size ^ lastModified) ^ paths.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof JarPaths))
+                return false;
+            JarPaths other = (JarPaths) obj;
+            return size == other.size && lastModified == other.lastModified && paths.equals(other.paths);
+        }
+    }
 }
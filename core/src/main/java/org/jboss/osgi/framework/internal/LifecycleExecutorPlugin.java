@@ -0,0 +1,74 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.msc.service.ServiceBuilder;
+import org.jboss.msc.service.ServiceController.Mode;
+import org.jboss.msc.service.StartContext;
+import org.jboss.msc.service.StartException;
+import org.jboss.osgi.framework.spi.ExecutorServicePlugin;
+import org.jboss.osgi.framework.spi.IntegrationServices;
+
+/**
+ * A plugin that provides the executor on which bundles are installed, started and stopped concurrently.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+final class LifecycleExecutorPlugin extends ExecutorServicePlugin<ExecutorService> {
+
+    LifecycleExecutorPlugin() {
+        super(IntegrationServices.LIFECYCLE_EXECUTOR_PLUGIN, "Framework Lifecycle Thread");
+    }
+
+    @Override
+    protected void addServiceDependencies(ServiceBuilder<ExecutorService> builder) {
+        super.addServiceDependencies(builder);
+        builder.setInitialMode(Mode.ON_DEMAND);
+    }
+
+    @Override
+    protected ExecutorService createExecutorService(final String threadName) {
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable run) {
+                Thread thread = new Thread(run);
+                thread.setName(threadName + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    protected ExecutorService createServiceValue(StartContext startContext) throws StartException {
+        return getExecutorService();
+    }
+}
@@ -24,29 +24,45 @@ package org.jboss.osgi.framework.internal;
 import static org.jboss.osgi.framework.FrameworkLogger.LOGGER;
 import static org.jboss.osgi.framework.FrameworkMessages.MESSAGES;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.jboss.osgi.framework.spi.FrameworkWiringLock;
 import org.jboss.osgi.framework.spi.LockException;
 import org.jboss.osgi.framework.spi.LockManager;
+import org.osgi.framework.Bundle;
 
 /**
  * The plugin for framework locks.
  *
+ * The items of a lock context are acquired in a deterministic global order. Items that are not bundles
+ * (e.g. the {@link FrameworkWiringLock}) come first, ordered by type. Bundles follow, ordered by bundle id.
+ * There is no central monitor; a thread that cannot obtain an item releases the items it already holds
+ * for this context and parks on the contended item only.
+ *
  * @author thomas.diesler@jboss.com
  * @since 22-Nov-2012
  */
 public final class LockManagerImpl implements LockManager {
 
+    private static final ItemComparator ITEM_ORDER = new ItemComparator();
+
     private final ConcurrentMap<Class<? extends LockableItem>, LockableItem> locks = new ConcurrentHashMap<Class<? extends LockableItem>, LockableItem>();
     private final ThreadLocal<Stack<LockContext>> lockContextAssociation = new ThreadLocal<Stack<LockContext>>();
+    private final Map<LockableItem, ItemStatistics> statistics = Collections.synchronizedMap(new WeakHashMap<LockableItem, ItemStatistics>());
 
     public LockManagerImpl() {
         locks.put(FrameworkWiringLock.class, new FrameworkWiringLock());
@@ -85,28 +101,48 @@ public final class LockManagerImpl implements LockManager {
         return lockItemsInternal(method, timeout, unit, items);
     }
 
-    private synchronized LockContext lockItemsInternal(Method method, long timeout, TimeUnit unit,
-            LockableItem... items) {
+    /**
+     * Get the contention statistics for the given item, or null if the item was never contended.
+     */
+    public ItemStatistics getItemStatistics(LockableItem item) {
+        return statistics.get(item);
+    }
 
-        LockContextImpl context = new LockContextImpl(method, items);
+    /**
+     * Get a snapshot of the contention statistics of all contended items.
+     */
+    public Map<LockableItem, ItemStatistics> getItemStatistics() {
+        synchronized (statistics) {
+            return new HashMap<LockableItem, ItemStatistics>(statistics);
+        }
+    }
 
-        // Try to lock all items
-        long start = System.currentTimeMillis();
-        while (!context.lockItems()) {
+    private LockContext lockItemsInternal(Method method, long timeout, TimeUnit unit, LockableItem... items) {
 
-            // Timeout if we have waited long enough
-            long now = System.currentTimeMillis();
-            if (now >= start + unit.toMillis(timeout))
-                throw MESSAGES.cannotObtainLockTimely(new TimeoutException(), context);
+        LockContextImpl context = new LockContextImpl(method, items);
 
-            LOGGER.tracef("LockManager lock: %s waiting ...", context);
+        // Try to lock all items, parking on the contended item only
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        LockableItem contended = null;
+        while ((contended = context.lockItems(contended)) != null) {
 
+            LOGGER.tracef("LockManager lock: %s waiting for %s ...", context, contended);
+
+            long waitStart = System.nanoTime();
+            boolean locked;
             try {
-                wait(unit.toMillis(timeout));
-                LOGGER.tracef("LockManager continue ...");
+                locked = contended.getReentrantLock().tryLock(deadline - waitStart, TimeUnit.NANOSECONDS);
             } catch (InterruptedException ex) {
                 throw MESSAGES.cannotObtainLockTimely(ex, context);
+            } finally {
+                getStatistics(contended).addWait(System.nanoTime() - waitStart);
             }
+
+            // Timeout if we have waited long enough
+            if (!locked)
+                throw MESSAGES.cannotObtainLockTimely(new TimeoutException(), context);
+
+            LOGGER.tracef("LockManager continue ...");
         }
 
         LOGGER.tracef("LockManager locked: %s", context);
@@ -123,11 +159,11 @@ public final class LockManagerImpl implements LockManager {
     }
 
     @Override
-    public synchronized void unlockItems(LockContext context) {
+    public void unlockItems(LockContext context) {
 
         if (context != null) {
 
-            // Unlock all items
+            // Unlock all items, waiting threads are parked on the individual locks
             for (LockableItem item : context.getItems()) {
                 ReentrantLock lock = item.getReentrantLock();
                 lock.unlock();
@@ -142,19 +178,60 @@ public final class LockManagerImpl implements LockManager {
                 lockContextAssociation.remove();
             }
         }
+    }
 
-        // Notify all waiting threads
-        notifyAll();
+    private ItemStatistics getStatistics(LockableItem item) {
+        synchronized (statistics) {
+            ItemStatistics result = statistics.get(item);
+            if (result == null) {
+                result = new ItemStatistics();
+                statistics.put(item, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Contention statistics for a lockable item.
+     */
+    public static final class ItemStatistics {
+
+        private final AtomicLong contentionCount = new AtomicLong();
+        private final AtomicLong waitTime = new AtomicLong();
+
+        void addWait(long nanos) {
+            contentionCount.incrementAndGet();
+            waitTime.addAndGet(nanos);
+        }
+
+        /** The number of times a thread had to wait for the item */
+        public long getContentionCount() {
+            return contentionCount.get();
+        }
+
+        /** The accumulated time in milliseconds that threads waited for the item */
+        public long getWaitTime() {
+            return TimeUnit.NANOSECONDS.toMillis(waitTime.get());
+        }
+
+        @Override
+        public String toString() {
+            return "[contention=" + getContentionCount() + ",wait=" + getWaitTime() + "ms]";
+        }
     }
 
     static class LockContextImpl implements LockContext {
 
         final List<LockableItem> items;
+        final List<LockableItem> orderedItems;
         final Method method;
 
         LockContextImpl(Method method, LockableItem... items) {
             this.items = Arrays.asList(items);
             this.method = method;
+            List<LockableItem> ordered = new ArrayList<LockableItem>(this.items);
+            Collections.sort(ordered, ITEM_ORDER);
+            this.orderedItems = ordered;
         }
 
         @Override
@@ -167,31 +244,41 @@ public final class LockManagerImpl implements LockManager {
             return method;
         }
 
-        boolean lockItems() {
+        /**
+         * Try to lock all items in global order. The given item is already held by the current thread.
+         *
+         * @return null if all items are locked, otherwise the item that could not be obtained
+         */
+        LockableItem lockItems(LockableItem held) {
 
             // Try to lock all items
-            int index = -1;
-            for (LockableItem item : items) {
+            List<ReentrantLock> locked = new ArrayList<ReentrantLock>(orderedItems.size());
+            LockableItem contended = null;
+            for (LockableItem item : orderedItems) {
                 ReentrantLock lock = item.getReentrantLock();
-                if (!lock.tryLock()) {
+                if (item == held) {
+                    held = null;
+                } else if (!lock.tryLock()) {
+                    contended = item;
                     break;
                 }
-                index++;
+                locked.add(lock);
             }
 
             // All items locked
-            if (index + 1 == items.size()) {
-                return true;
+            if (contended == null) {
+                return null;
             }
 
-            // Unlock the locked items
-            for (; index >= 0; index--) {
-                LockableItem item = items.get(index);
-                ReentrantLock lock = item.getReentrantLock();
-                lock.unlock();
+            // Unlock the locked items, including an item that was held by a previous attempt
+            for (int index = locked.size() - 1; index >= 0; index--) {
+                locked.get(index).unlock();
+            }
+            if (held != null) {
+                held.getReentrantLock().unlock();
             }
 
-            return false;
+            return contended;
         }
 
         @Override
@@ -199,4 +286,54 @@ public final class LockManagerImpl implements LockManager {
             return "(" + method + ") " + items;
         }
     }
+
+    /**
+     * Orders items by type first and by bundle id for bundles.
+     */
+    static class ItemComparator implements Comparator<LockableItem> {
+
+        private final Map<LockableItem, Long> ordinals = new WeakHashMap<LockableItem, Long>();
+        private long nextOrdinal;
+
+        @Override
+        public int compare(LockableItem i1, LockableItem i2) {
+            if (i1 == i2)
+                return 0;
+
+            boolean isBundle1 = i1 instanceof Bundle;
+            boolean isBundle2 = i2 instanceof Bundle;
+            if (isBundle1 && isBundle2) {
+                long id1 = ((Bundle) i1).getBundleId();
+                long id2 = ((Bundle) i2).getBundleId();
+                if (id1 != id2)
+                    return id1 < id2 ? -1 : 1;
+            } else if (isBundle1 != isBundle2) {
+                return isBundle1 ? 1 : -1;
+            } else {
+                int result = i1.getClass().getName().compareTo(i2.getClass().getName());
+                if (result != 0)
+                    return result;
+                int hash1 = System.identityHashCode(i1);
+                int hash2 = System.identityHashCode(i2);
+                if (hash1 != hash2)
+                    return hash1 < hash2 ? -1 : 1;
+            }
+
+            // Distinct items with the same key, fall back to the order of first encounter
+            synchronized (ordinals) {
+                long ord1 = getOrdinal(i1);
+                long ord2 = getOrdinal(i2);
+                return ord1 < ord2 ? -1 : 1;
+            }
+        }
+
+        private long getOrdinal(LockableItem item) {
+            Long result = ordinals.get(item);
+            if (result == null) {
+                result = nextOrdinal++;
+                ordinals.put(item, result);
+            }
+            return result;
+        }
+    }
 }
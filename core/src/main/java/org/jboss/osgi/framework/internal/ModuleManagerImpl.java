@@ -171,6 +171,13 @@ public final class ModuleManagerImpl implements ModuleManager {
     }
 
     private XBundleRevision getBundleRevision(Module module) {
+        if (environment instanceof IndexedEnvironment) {
+            XBundleRevision brev = ((IndexedEnvironment) environment).getBundleIndex().getRevisionByModule(module);
+            if (brev != null && brev.getAttachment(InternalConstants.MODULE_KEY) == module) {
+                return brev;
+            }
+            return null;
+        }
         XBundleRevision result = null;
         Iterator<XResource> itres = environment.getResources(null);
         while (itres.hasNext()) {
@@ -45,6 +45,7 @@ final class OSGiStreamHandlerFactoryDelegate implements URLStreamHandlerFactory
 
     private URLStreamHandlerFactory delegate;
     private Map<String, List<ServiceReference<URLStreamHandlerService>>> streamHandlers = new HashMap<String, List<ServiceReference<URLStreamHandlerService>>>();
+    private volatile int modificationCount;
 
     void setDelegateFactory(URLStreamHandlerFactory factory) {
         delegate = factory;
@@ -59,6 +60,7 @@ final class OSGiStreamHandlerFactoryDelegate implements URLStreamHandlerFactory
             }
             list.add(reference);
             Collections.sort(list, Collections.reverseOrder(ServiceReferenceComparator.getInstance()));
+            modificationCount++;
         }
     }
 
@@ -68,12 +70,30 @@ final class OSGiStreamHandlerFactoryDelegate implements URLStreamHandlerFactory
         }
     }
 
+    /**
+     * Get the highest ranked stream handler for the given protocol, or null if there is none.
+     */
+    ServiceReference<URLStreamHandlerService> getStreamHandler(String protocol) {
+        synchronized (streamHandlers) {
+            List<ServiceReference<URLStreamHandlerService>> list = streamHandlers.get(protocol);
+            return list != null && !list.isEmpty() ? list.get(0) : null;
+        }
+    }
+
+    /**
+     * Get a counter that changes whenever a stream handler is added or removed.
+     */
+    int getModificationCount() {
+        return modificationCount;
+    }
+
     void removeHandler(ServiceReference<URLStreamHandlerService> reference) {
         synchronized (streamHandlers) {
             for (List<ServiceReference<URLStreamHandlerService>> list : streamHandlers.values()) {
                 for (Iterator<ServiceReference<URLStreamHandlerService>> it = list.iterator(); it.hasNext();) {
                     if (it.next().equals(reference)) {
                         it.remove();
+                        modificationCount++;
                         break;
                     }
                 }
@@ -86,6 +106,7 @@ final class OSGiStreamHandlerFactoryDelegate implements URLStreamHandlerFactory
             for (List<ServiceReference<URLStreamHandlerService>> list : streamHandlers.values()) {
                 list.clear();
             }
+            modificationCount++;
         }
     }
 
@@ -0,0 +1,173 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jboss.modules.filter.PathFilter;
+
+/**
+ * An immutable {@link PathFilter} for package paths.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+final class PackagePathFilter implements PathFilter {
+
+    private final Set<String> exactOnly;
+    private final Node root = new Node();
+    private final String description;
+
+    /**
+     * Create a filter that accepts the given exact paths and all children of the given parent paths.
+     */
+    PackagePathFilter(Collection<String> exactPaths, Collection<String> parentPaths) {
+        if (parentPaths.isEmpty()) {
+            exactOnly = new HashSet<String>(exactPaths);
+        } else {
+            exactOnly = null;
+            for (String path : exactPaths) {
+                getNode(path).exact = true;
+            }
+            for (String path : parentPaths) {
+                getNode(path).children = true;
+            }
+            root.freeze();
+        }
+        Set<String> sorted = new TreeSet<String>(exactPaths);
+        for (String path : parentPaths) {
+            sorted.add(path + "/*");
+        }
+        description = "PackagePathFilter" + sorted;
+    }
+
+    @Override
+    public boolean accept(String path) {
+        if (exactOnly != null)
+            return exactOnly.contains(path);
+        Node node = root;
+        int start = 0;
+        int length = path.length();
+        while (true) {
+            // Find the end of the segment and compute its String.hashCode() on the way
+            int end = start;
+            int hash = 0;
+            while (end < length) {
+                char ch = path.charAt(end);
+                if (ch == '/')
+                    break;
+                hash = 31 * hash + ch;
+                end++;
+            }
+            node = node.getChild(path, start, end, hash);
+            if (node == null)
+                return false;
+            if (end == length)
+                return node.exact;
+            if (node.children)
+                return true;
+            start = end + 1;
+        }
+    }
+
+    private Node getNode(String path) {
+        Node node = root;
+        for (String segment : path.split("/")) {
+            if (node.segments == null)
+                node.segments = new HashMap<String, Node>();
+            Node child = node.segments.get(segment);
+            if (child == null) {
+                child = new Node();
+                node.segments.put(segment, child);
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    @Override
+    public int hashCode() {
+        return description.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof PackagePathFilter && description.equals(((PackagePathFilter) obj).description);
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+
+    private static final class Node {
+        private Map<String, Node> segments;
+        private boolean exact;
+        private boolean children;
+        // The child segments in an open addressing table, which is built from the segments map
+        private String[] keys;
+        private Node[] nodes;
+        private int mask;
+
+        void freeze() {
+            if (segments == null)
+                return;
+            int capacity = Integer.highestOneBit(segments.size() * 2 + 1) << 1;
+            keys = new String[capacity];
+            nodes = new Node[capacity];
+            mask = capacity - 1;
+            for (Map.Entry<String, Node> entry : segments.entrySet()) {
+                String key = entry.getKey();
+                int index = spread(key.hashCode()) & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                nodes[index] = entry.getValue();
+                entry.getValue().freeze();
+            }
+            segments = null;
+        }
+
+        Node getChild(String path, int start, int end, int hash) {
+            if (keys == null)
+                return null;
+            int length = end - start;
+            for (int index = spread(hash) & mask;; index = (index + 1) & mask) {
+                String key = keys[index];
+                if (key == null)
+                    return null;
+                if (key.length() == length && key.hashCode() == hash && path.regionMatches(start, key, 0, length))
+                    return nodes[index];
+            }
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -24,10 +24,13 @@ package org.jboss.osgi.framework.internal;
 import static org.jboss.osgi.framework.FrameworkLogger.LOGGER;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 
 import org.jboss.msc.service.ServiceBuilder;
 import org.jboss.msc.service.ServiceTarget;
@@ -35,6 +38,7 @@ import org.jboss.msc.service.StartContext;
 import org.jboss.msc.service.StartException;
 import org.jboss.msc.value.InjectedValue;
 import org.jboss.osgi.deployment.deployer.Deployment;
+import org.jboss.osgi.framework.Constants;
 import org.jboss.osgi.framework.spi.BootstrapBundlesInstall;
 import org.jboss.osgi.framework.spi.DeploymentProvider;
 import org.jboss.osgi.framework.spi.IntegrationServices;
@@ -45,13 +49,21 @@ import org.osgi.framework.BundleException;
 /**
  * A service that provides persistent bundles on framework startup.
  *
+ * The deployments for the stored bundles are installed in bundle id order. If more than one restore thread is
+ * configured, the deployments are created concurrently on the framework lifecycle executor, which requires a
+ * thread-safe {@link DeploymentProvider}.
+ *
  * @author thomas.diesler@jboss.com
  * @since 04-Apr-2011
  */
 final class PersistentBundlesInstallPlugin extends BootstrapBundlesInstall<Void> {
 
+    // The interval in milliseconds at which the progress of a long restore is reported
+    private static final long PROGRESS_INTERVAL = 5000;
+
     private final InjectedValue<StorageManager> injectedStoragePlugin = new InjectedValue<StorageManager>();
     private final InjectedValue<DeploymentProvider> injectedDeploymentFactory = new InjectedValue<DeploymentProvider>();
+    private final InjectedValue<ExecutorService> injectedLifecycleExecutor = new InjectedValue<ExecutorService>();
 
     PersistentBundlesInstallPlugin() {
         super(IntegrationServices.PERSISTENT_BUNDLES);
@@ -62,6 +74,7 @@ final class PersistentBundlesInstallPlugin extends BootstrapBundlesInstall<Void>
         super.addServiceDependencies(builder);
         builder.addDependency(IntegrationServices.STORAGE_MANAGER_PLUGIN, StorageManager.class, injectedStoragePlugin);
         builder.addDependency(IntegrationServices.DEPLOYMENT_PROVIDER_PLUGIN, DeploymentProvider.class, injectedDeploymentFactory);
+        builder.addDependency(IntegrationServices.LIFECYCLE_EXECUTOR_PLUGIN, ExecutorService.class, injectedLifecycleExecutor);
         builder.addDependencies(IntegrationServices.BOOTSTRAP_BUNDLES_COMPLETE);
     }
 
@@ -72,9 +85,9 @@ final class PersistentBundlesInstallPlugin extends BootstrapBundlesInstall<Void>
         final ServiceTarget serviceTarget = context.getChildTarget();
 
         final StorageManager storageStatePlugin = injectedStoragePlugin.getValue();
-        final Set<StorageState> storageStates = new HashSet<StorageState>(storageStatePlugin.getStorageStates());
+        final List<StorageState> storageStates = new ArrayList<StorageState>(storageStatePlugin.getStorageStates());
 
-        // Reduce the set by the bundles that are already installed
+        // Reduce the list by the bundles that are already installed
         Iterator<StorageState> iterator = storageStates.iterator();
         while (iterator.hasNext()) {
             StorageState storageState = iterator.next();
@@ -83,15 +96,17 @@ final class PersistentBundlesInstallPlugin extends BootstrapBundlesInstall<Void>
             }
         }
 
-        List<Deployment> deployments = new ArrayList<Deployment>();
-        for (StorageState storageState : storageStates) {
-            try {
-                Deployment dep = deploymentPlugin.createDeployment(storageState);
-                deployments.add(dep);
-            } catch (BundleException ex) {
-                LOGGER.errorStateCannotInstallInitialBundle(ex, storageState.getLocation());
+        // Install in bundle id order, which is the original install order
+        Collections.sort(storageStates, new Comparator<StorageState>() {
+            @Override
+            public int compare(StorageState o1, StorageState o2) {
+                long id1 = o1.getBundleId();
+                long id2 = o2.getBundleId();
+                return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
             }
-        }
+        });
+
+        List<Deployment> deployments = createDeployments(deploymentPlugin, storageStates);
 
         // Log the deployemnts
         if (LOGGER.isDebugEnabled()) {
@@ -104,4 +119,90 @@ final class PersistentBundlesInstallPlugin extends BootstrapBundlesInstall<Void>
         // Install the bundles from the given locations
         installBootstrapBundles(serviceTarget, deployments);
     }
-}
\ No newline at end of file
+
+    private List<Deployment> createDeployments(final DeploymentProvider deploymentPlugin, final List<StorageState> storageStates) throws StartException {
+        List<Deployment> deployments = new ArrayList<Deployment>();
+        int parallelism = Math.min(getRestoreParallelism(), storageStates.size());
+        if (parallelism <= 1) {
+            for (StorageState storageState : storageStates) {
+                Deployment dep = createDeployment(deploymentPlugin, storageState);
+                if (dep != null) {
+                    deployments.add(dep);
+                }
+            }
+            return deployments;
+        }
+
+        // Each task records its deployment by the index of its storage state
+        final Deployment[] results = new Deployment[storageStates.size()];
+        BoundedTaskRunner<Integer> taskRunner = new BoundedTaskRunner<Integer>(injectedLifecycleExecutor.getValue(), parallelism);
+        try {
+            for (int i = 0; i < storageStates.size(); i++) {
+                final int index = i;
+                taskRunner.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        StorageState storageState = storageStates.get(index);
+                        try {
+                            results[index] = createDeployment(deploymentPlugin, storageState);
+                        } catch (RuntimeException ex) {
+                            LOGGER.errorStateCannotInstallInitialBundle(ex, storageState.getLocation());
+                        }
+                        return index;
+                    }
+                });
+            }
+
+            int total = storageStates.size();
+            int completed = 0;
+            long lastReport = System.currentTimeMillis();
+            while (taskRunner.hasPending()) {
+                try {
+                    taskRunner.take();
+                } catch (ExecutionException ex) {
+                    throw new StartException(ex.getCause());
+                }
+                completed++;
+                long now = System.currentTimeMillis();
+                if (now - lastReport >= PROGRESS_INTERVAL) {
+                    LOGGER.infoRestoringPersistentBundles(completed, total);
+                    lastReport = now;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new StartException(ex);
+        } finally {
+            taskRunner.cancelAndAwait();
+        }
+
+        // Collect the deployments in the order of the storage states
+        for (Deployment dep : results) {
+            if (dep != null) {
+                deployments.add(dep);
+            }
+        }
+        return deployments;
+    }
+
+    private Deployment createDeployment(DeploymentProvider deploymentPlugin, StorageState storageState) {
+        try {
+            return deploymentPlugin.createDeployment(storageState);
+        } catch (BundleException ex) {
+            LOGGER.errorStateCannotInstallInitialBundle(ex, storageState.getLocation());
+            return null;
+        }
+    }
+
+    private int getRestoreParallelism() {
+        Object value = getBundleManager().getProperty(Constants.PROPERTY_STORAGE_RESTORE_THREADS);
+        if (value == null)
+            return 1;
+        try {
+            return Math.max(1, Integer.parseInt(value.toString().trim()));
+        } catch (NumberFormatException ex) {
+            LOGGER.debugf("Invalid %s: %s", Constants.PROPERTY_STORAGE_RESTORE_THREADS, value);
+            return 1;
+        }
+    }
+}
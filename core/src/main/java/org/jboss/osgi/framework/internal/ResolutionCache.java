@@ -0,0 +1,520 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import static org.jboss.osgi.framework.FrameworkLogger.LOGGER;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.jboss.osgi.framework.spi.StorageState;
+import org.jboss.osgi.resolver.XBundle;
+import org.jboss.osgi.resolver.XBundleRevision;
+import org.jboss.osgi.resolver.XEnvironment;
+import org.jboss.osgi.resolver.XResource;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.resource.Capability;
+import org.osgi.resource.Namespace;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+import org.osgi.resource.Wire;
+
+/**
+ * A persistent cache of resolver results.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+final class ResolutionCache {
+
+    static final String CACHE_FILE_NAME = "resolution.cache";
+
+    private static final int MAGIC = 0x4A425243;
+    private static final int VERSION = 1;
+    private static final int MAX_ENTRIES = 32;
+
+    private final File cacheFile;
+    private final String configHash;
+    private final Map<String, List<StoredResource>> entries = new LinkedHashMap<String, List<StoredResource>>(16, 0.75f, true);
+    private boolean modified;
+
+    ResolutionCache(File cacheFile, Map<String, Object> properties) {
+        this.cacheFile = cacheFile;
+        this.configHash = getConfigHash(properties);
+        readEntries();
+    }
+
+    /**
+     * Create the context for a resolve operation, or null if the environment cannot be fingerprinted.
+     */
+    Context createContext(XEnvironment env, Collection<? extends Resource> mandatory, Collection<? extends Resource> optional) {
+        Map<Resource, String> fingerprints = new HashMap<Resource, String>();
+        Map<String, XResource> resources = new HashMap<String, XResource>();
+        List<String> envKeys = new ArrayList<String>();
+        Iterator<XResource> itres = env.getResources(null);
+        while (itres.hasNext()) {
+            XResource res = itres.next();
+            String fingerprint = getFingerprint(res);
+            if (fingerprint == null || resources.put(fingerprint, res) != null)
+                return null;
+            fingerprints.put(res, fingerprint);
+            envKeys.add(fingerprint);
+        }
+        List<String> manKeys = getFingerprints(fingerprints, mandatory);
+        List<String> optKeys = getFingerprints(fingerprints, optional);
+        if (manKeys == null || optKeys == null)
+            return null;
+
+        MessageDigest digest = getDigest();
+        update(digest, configHash);
+        update(digest, envKeys);
+        update(digest, manKeys);
+        update(digest, optKeys);
+        return new Context(toHex(digest.digest()), fingerprints, resources, mandatory);
+    }
+
+    private static List<String> getFingerprints(Map<Resource, String> fingerprints, Collection<? extends Resource> resources) {
+        List<String> result = new ArrayList<String>();
+        if (resources != null) {
+            for (Resource res : resources) {
+                String fingerprint = fingerprints.get(res);
+                if (fingerprint == null)
+                    return null;
+                result.add(fingerprint);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the fingerprint of a resource, which is stable across framework restarts for unchanged content.
+     *
+     * The content of a user revision is the copy in its storage dir, which is written once when the revision is
+     * installed and never modified. Install and update assign a new revision id and last modified stamp, so these
+     * identify the content without reading every bundle on every start.
+     */
+    static String getFingerprint(XResource res) {
+        if (res instanceof UserBundleRevision) {
+            UserBundleRevision userRev = (UserBundleRevision) res;
+            StorageState storageState = userRev.getStorageState();
+            if (storageState == null)
+                return null;
+            File bundleFile = storageState.getBundleFile();
+            long length = bundleFile != null ? bundleFile.length() : 0;
+            return "user:" + userRev.getLocation() + "|" + storageState.getRevisionId() + "|" + storageState.getLastModified() + "|" + length + "|" + userRev.getCanonicalName();
+        }
+        if (res instanceof XBundleRevision) {
+            XBundleRevision brev = (XBundleRevision) res;
+            XBundle bundle = brev.getBundle();
+            if (bundle == null)
+                return null;
+
+            // The capabilities of the system bundle and adapted bundles are not backed by stored content
+            MessageDigest digest = getDigest();
+            for (Capability cap : brev.getCapabilities(null)) {
+                update(digest, "cap:" + cap.getNamespace());
+                update(digest, new TreeMap<String, Object>(cap.getAttributes()).toString());
+                update(digest, new TreeMap<String, String>(cap.getDirectives()).toString());
+            }
+            for (Requirement req : brev.getRequirements(null)) {
+                update(digest, "req:" + req.getNamespace());
+                update(digest, new TreeMap<String, Object>(req.getAttributes()).toString());
+                update(digest, new TreeMap<String, String>(req.getDirectives()).toString());
+            }
+            return "bundle:" + bundle.getLocation() + "|" + brev.getSymbolicName() + "|" + brev.getVersion() + "|" + toHex(digest.digest());
+        }
+        return null;
+    }
+
+    /**
+     * The resolve operation specific view of the cache.
+     */
+    final class Context {
+
+        private final String key;
+        private final Map<Resource, String> fingerprints;
+        private final Map<String, XResource> resources;
+        private final Collection<? extends Resource> mandatory;
+
+        private Context(String key, Map<Resource, String> fingerprints, Map<String, XResource> resources, Collection<? extends Resource> mandatory) {
+            this.key = key;
+            this.fingerprints = fingerprints;
+            this.resources = resources;
+            this.mandatory = mandatory;
+        }
+
+        /**
+         * Get the validated wiring map for this resolve operation, or null.
+         */
+        Map<Resource, List<Wire>> getWiring() {
+            List<StoredResource> stored;
+            synchronized (ResolutionCache.this) {
+                stored = entries.get(key);
+            }
+            if (stored == null)
+                return null;
+
+            Map<Resource, List<Wire>> wiremap = new LinkedHashMap<Resource, List<Wire>>();
+            for (StoredResource sres : stored) {
+                XResource res = resources.get(sres.fingerprint);
+                if (res == null || isResolved(res))
+                    return null;
+                wiremap.put(res, null);
+            }
+            if (mandatory != null && !wiremap.keySet().containsAll(mandatory))
+                return null;
+
+            for (StoredResource sres : stored) {
+                List<Wire> wires = new ArrayList<Wire>(sres.wires.size());
+                for (StoredWire swire : sres.wires) {
+                    Wire wire = swire.toWire(resources);
+                    if (wire == null)
+                        return null;
+                    Resource provider = wire.getProvider();
+                    if (!wiremap.containsKey(provider) && !isResolved(provider))
+                        return null;
+                    wires.add(wire);
+                }
+                wiremap.put(resources.get(sres.fingerprint), wires);
+            }
+            LOGGER.debugf("Using cached resolver results: %s", wiremap.keySet());
+            return wiremap;
+        }
+
+        /**
+         * Add the wiring map of this resolve operation to the cache.
+         */
+        void putWiring(Map<Resource, List<Wire>> wiremap) {
+            List<StoredResource> stored = new ArrayList<StoredResource>(wiremap.size());
+            for (Entry<Resource, List<Wire>> entry : wiremap.entrySet()) {
+                String fingerprint = fingerprints.get(entry.getKey());
+                if (fingerprint == null)
+                    return;
+                List<StoredWire> wires = new ArrayList<StoredWire>();
+                for (Wire wire : entry.getValue()) {
+                    StoredWire swire = StoredWire.fromWire(wire, fingerprints);
+                    if (swire == null)
+                        return;
+                    wires.add(swire);
+                }
+                stored.add(new StoredResource(fingerprint, wires));
+            }
+            synchronized (ResolutionCache.this) {
+                entries.put(key, stored);
+                Iterator<String> iterator = entries.keySet().iterator();
+                while (entries.size() > MAX_ENTRIES) {
+                    iterator.next();
+                    iterator.remove();
+                }
+                modified = true;
+            }
+        }
+    }
+
+    /**
+     * Write the cache file if entries were added since it was read.
+     */
+    synchronized void store() {
+        if (modified) {
+            writeEntries();
+            modified = false;
+        }
+    }
+
+    private static boolean isResolved(Resource res) {
+        return res instanceof BundleRevision && ((BundleRevision) res).getWiring() != null;
+    }
+
+    private synchronized void readEntries() {
+        if (!cacheFile.isFile())
+            return;
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            try {
+                if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                    return;
+                if (!configHash.equals(input.readUTF()))
+                    return;
+                int entryCount = readCount(input);
+                for (int i = 0; i < entryCount; i++) {
+                    String key = input.readUTF();
+                    int resourceCount = readCount(input);
+                    List<StoredResource> stored = new ArrayList<StoredResource>();
+                    for (int j = 0; j < resourceCount; j++) {
+                        String fingerprint = input.readUTF();
+                        int wireCount = readCount(input);
+                        List<StoredWire> wires = new ArrayList<StoredWire>();
+                        for (int k = 0; k < wireCount; k++) {
+                            wires.add(new StoredWire(input.readUTF(), input.readUTF(), input.readInt(), input.readUTF(), input.readUTF(), input.readInt()));
+                        }
+                        stored.add(new StoredResource(fingerprint, wires));
+                    }
+                    entries.put(key, stored);
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException ex) {
+            LOGGER.debugf(ex, "Cannot read resolution cache: %s", cacheFile);
+            entries.clear();
+        }
+    }
+
+    private static int readCount(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        if (count < 0)
+            throw new IOException("Invalid count: " + count);
+        return count;
+    }
+
+    // Must be called while holding the monitor
+    private void writeEntries() {
+        File tmpFile = new File(cacheFile.getPath() + ".tmp");
+        try {
+            cacheFile.getParentFile().mkdirs();
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            try {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeUTF(configHash);
+                output.writeInt(entries.size());
+                for (Entry<String, List<StoredResource>> entry : entries.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    output.writeInt(entry.getValue().size());
+                    for (StoredResource sres : entry.getValue()) {
+                        output.writeUTF(sres.fingerprint);
+                        output.writeInt(sres.wires.size());
+                        for (StoredWire swire : sres.wires) {
+                            output.writeUTF(swire.requirer);
+                            output.writeUTF(swire.requirementOwner);
+                            output.writeInt(swire.requirementIndex);
+                            output.writeUTF(swire.provider);
+                            output.writeUTF(swire.capabilityOwner);
+                            output.writeInt(swire.capabilityIndex);
+                        }
+                    }
+                }
+            } finally {
+                output.close();
+            }
+            if (!tmpFile.renameTo(cacheFile)) {
+                cacheFile.delete();
+                if (!tmpFile.renameTo(cacheFile))
+                    throw new IOException("Cannot rename: " + tmpFile);
+            }
+        } catch (IOException ex) {
+            LOGGER.debugf(ex, "Cannot write resolution cache: %s", cacheFile);
+            tmpFile.delete();
+        }
+    }
+
+    // The framework configuration that determines the capabilities of the system bundle
+    private static String getConfigHash(Map<String, Object> properties) {
+        MessageDigest digest = getDigest();
+        for (Entry<String, Object> entry : new TreeMap<String, Object>(properties).entrySet()) {
+            String key = entry.getKey();
+            if (key.startsWith("org.osgi.") || key.startsWith("org.jboss.osgi.") || key.startsWith("java.specification.")) {
+                update(digest, key + "=" + entry.getValue());
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void update(MessageDigest digest, List<String> values) {
+        List<String> sorted = new ArrayList<String>(values);
+        Collections.sort(sorted);
+        update(digest, sorted.toString());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        try {
+            digest.update(value.getBytes("UTF-8"));
+            digest.update((byte) 0);
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    private static final class StoredResource {
+        private final String fingerprint;
+        private final List<StoredWire> wires;
+
+        StoredResource(String fingerprint, List<StoredWire> wires) {
+            this.fingerprint = fingerprint;
+            this.wires = wires;
+        }
+    }
+
+    private static final class StoredWire {
+        private final String requirer;
+        private final String requirementOwner;
+        private final int requirementIndex;
+        private final String provider;
+        private final String capabilityOwner;
+        private final int capabilityIndex;
+
+        StoredWire(String requirer, String requirementOwner, int requirementIndex, String provider, String capabilityOwner, int capabilityIndex) {
+            this.requirer = requirer;
+            this.requirementOwner = requirementOwner;
+            this.requirementIndex = requirementIndex;
+            this.provider = provider;
+            this.capabilityOwner = capabilityOwner;
+            this.capabilityIndex = capabilityIndex;
+        }
+
+        static StoredWire fromWire(Wire wire, Map<Resource, String> fingerprints) {
+            Requirement req = wire.getRequirement();
+            Capability cap = wire.getCapability();
+            String requirer = fingerprints.get(wire.getRequirer());
+            String requirementOwner = fingerprints.get(req.getResource());
+            String provider = fingerprints.get(wire.getProvider());
+            String capabilityOwner = fingerprints.get(cap.getResource());
+            if (requirer == null || requirementOwner == null || provider == null || capabilityOwner == null)
+                return null;
+            int requirementIndex = req.getResource().getRequirements(null).indexOf(req);
+            int capabilityIndex = cap.getResource().getCapabilities(null).indexOf(cap);
+            if (requirementIndex < 0 || capabilityIndex < 0)
+                return null;
+            return new StoredWire(requirer, requirementOwner, requirementIndex, provider, capabilityOwner, capabilityIndex);
+        }
+
+        // Recreate the wire and verify that the requirement still matches the capability
+        Wire toWire(Map<String, XResource> resources) {
+            Resource requirerRes = resources.get(requirer);
+            Resource requirementRes = resources.get(requirementOwner);
+            Resource providerRes = resources.get(provider);
+            Resource capabilityRes = resources.get(capabilityOwner);
+            if (requirerRes == null || requirementRes == null || providerRes == null || capabilityRes == null)
+                return null;
+            List<Requirement> reqs = requirementRes.getRequirements(null);
+            List<Capability> caps = capabilityRes.getCapabilities(null);
+            if (requirementIndex >= reqs.size() || capabilityIndex >= caps.size())
+                return null;
+            Requirement req = reqs.get(requirementIndex);
+            Capability cap = caps.get(capabilityIndex);
+            if (!req.getNamespace().equals(cap.getNamespace()))
+                return null;
+            String filterSpec = req.getDirectives().get(Namespace.REQUIREMENT_FILTER_DIRECTIVE);
+            if (filterSpec != null) {
+                try {
+                    Filter filter = FilterCache.getInstance().getFilter(filterSpec);
+                    if (!filter.matches(cap.getAttributes()))
+                        return null;
+                } catch (InvalidSyntaxException ex) {
+                    return null;
+                }
+            }
+            return new CachedWire(cap, req, providerRes, requirerRes);
+        }
+    }
+
+    private static final class CachedWire implements Wire {
+        private final Capability capability;
+        private final Requirement requirement;
+        private final Resource provider;
+        private final Resource requirer;
+
+        CachedWire(Capability capability, Requirement requirement, Resource provider, Resource requirer) {
+            this.capability = capability;
+            this.requirement = requirement;
+            this.provider = provider;
+            this.requirer = requirer;
+        }
+
+        @Override
+        public Capability getCapability() {
+            return capability;
+        }
+
+        @Override
+        public Requirement getRequirement() {
+            return requirement;
+        }
+
+        @Override
+        public Resource getProvider() {
+            return provider;
+        }
+
+        @Override
+        public Resource getRequirer() {
+            return requirer;
+        }
+
+        @Override
+        public int hashCode() {
+            return capability.hashCode() ^ requirement.hashCode() ^ provider.hashCode() ^ requirer.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Wire))
+                return false;
+            Wire other = (Wire) obj;
+            return capability.equals(other.getCapability()) && requirement.equals(other.getRequirement())
+                    && provider.equals(other.getProvider()) && requirer.equals(other.getRequirer());
+        }
+
+        @Override
+        public String toString() {
+            return "CachedWire[" + requirer + "->" + provider + "," + requirement + "]";
+        }
+    }
+}
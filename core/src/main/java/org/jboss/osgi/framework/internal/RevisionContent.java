@@ -24,15 +24,24 @@ package org.jboss.osgi.framework.internal;
 import static org.jboss.osgi.framework.FrameworkLogger.LOGGER;
 import static org.jboss.osgi.framework.FrameworkMessages.MESSAGES;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Vector;
-
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.jboss.osgi.framework.spi.StorageState;
+import org.jboss.osgi.framework.spi.VirtualFileResourceLoader;
 import org.jboss.osgi.metadata.OSGiMetaData;
-import org.jboss.osgi.vfs.AbstractVFS;
 import org.jboss.osgi.vfs.VFSUtils;
 import org.jboss.osgi.vfs.VirtualFile;
 import org.osgi.framework.Bundle;
@@ -40,6 +49,9 @@ import org.osgi.framework.Bundle;
 /**
  * An abstraction for the revision content
  *
+ * The entry paths are indexed once per revision content, so that entry lookups do not walk the virtual file.
+ * All entry URLs share one stream handler, which does not resolve the host name for URL hashing.
+ *
  * @author thomas.diesler@jboss.com
  * @author <a href="david@redhat.com">David Bosschaert</a>
  * @since 13-Jan-2011
@@ -50,6 +62,9 @@ final class RevisionContent implements EntriesProvider {
     private final VirtualFile virtualFile;
     private final String identity;
     private final int contentId;
+    private final URLStreamHandler streamHandler = new BundleEntryStreamHandler();
+    private volatile EntryTable entryTable;
+    private VirtualFileResourceLoader resourceLoader;
     private boolean closedMarker;
 
     RevisionContent(UserBundleRevision brev, OSGiMetaData metadata, long bundleId, int contentId, VirtualFile rootFile) {
@@ -111,10 +126,10 @@ final class RevisionContent implements EntriesProvider {
     @Override
     public URL getEntry(String path) {
         assertNotClosed();
-        VirtualFile child;
         try {
-            child = virtualFile.getChild(path);
-            return child != null ? getBundleURL(child) : null;
+            String entryPath = EntryTable.normalize(path);
+            Boolean directory = getEntryTable().entries.get(entryPath);
+            return directory != null ? getBundleURL(entryPath, directory) : null;
         } catch (IOException ex) {
             LOGGER.errorCannotGetEntry(ex, path, userRev);
             return null;
@@ -125,8 +140,16 @@ final class RevisionContent implements EntriesProvider {
     public Enumeration<URL> findEntries(String path, String pattern, boolean recurse) {
         assertNotClosed();
         try {
-            Enumeration<URL> urls = virtualFile.findEntries(path, pattern, recurse);
-            return getBundleURLs(urls);
+            EntryTable table = getEntryTable();
+            List<String> entryPaths = table.findEntries(path, pattern, recurse);
+            if (entryPaths.isEmpty())
+                return null;
+
+            List<URL> result = new ArrayList<URL>(entryPaths.size());
+            for (String entryPath : entryPaths) {
+                result.add(getBundleURL(entryPath, table.entries.get(entryPath)));
+            }
+            return Collections.enumeration(result);
         } catch (IOException ex) {
             return null;
         }
@@ -136,17 +159,39 @@ final class RevisionContent implements EntriesProvider {
     public Enumeration<String> getEntryPaths(String path) {
         assertNotClosed();
         try {
-            Enumeration<String> entryPaths = virtualFile.getEntryPaths(path);
-            if (entryPaths != null && entryPaths.hasMoreElements())
-                return entryPaths;
-            else
-                return null;
+            List<String> result = getEntryTable().getEntryPaths(path);
+            return result.isEmpty() ? null : Collections.enumeration(result);
         } catch (IOException ex) {
             return null;
         }
     }
 
+    /**
+     * Get the resource loader for this content, which is shared by the modules of the revision.
+     */
+    synchronized VirtualFileResourceLoader getResourceLoader() {
+        assertNotClosed();
+        if (resourceLoader == null) {
+            resourceLoader = new VirtualFileResourceLoader(virtualFile, getArchiveFile());
+        }
+        return resourceLoader;
+    }
+
+    // The storage area keeps a plain jar copy of the revision root
+    private File getArchiveFile() {
+        StorageState storageState = userRev.getStorageState();
+        if (storageState.getRootFile() != virtualFile)
+            return null;
+        return storageState.getBundleFile();
+    }
+
     void close() {
+        synchronized (this) {
+            if (resourceLoader != null) {
+                resourceLoader.close();
+                resourceLoader = null;
+            }
+        }
         VFSUtils.safeClose(virtualFile);
         closedMarker = true;
     }
@@ -157,52 +202,28 @@ final class RevisionContent implements EntriesProvider {
         }
     }
 
-    private Enumeration<URL> getBundleURLs(Enumeration<URL> urls) throws IOException {
-        if (urls == null)
-            return null;
-
-        if (!urls.hasMoreElements())
-            return null;
-
-        Vector<URL> result = new Vector<URL>();
-        while (urls.hasMoreElements()) {
-            VirtualFile child = AbstractVFS.toVirtualFile(urls.nextElement());
-            result.add(getBundleURL(child));
+    private URL getBundleURL(String entryPath, boolean directory) throws IOException {
+        // The path can potentially be made characters longer (one leading and one trailing slash)
+        StringBuilder path = new StringBuilder(entryPath.length() + 2);
+        path.append('/').append(entryPath);
+        if (directory && path.charAt(path.length() - 1) != '/') {
+            path.append('/');
         }
-
-        return result.elements();
+        return new URL(BundleProtocolHandler.PROTOCOL_NAME, identity, -1, path.toString(), streamHandler);
     }
 
-    URL getBundleURL(final VirtualFile child) throws IOException {
-        final String orgPath = child.getPathName();
-        URLStreamHandler streamHandler = new URLStreamHandler() {
-            @Override
-            protected URLConnection openConnection(URL url) throws IOException {
-                String path = url.getPath();
-                VirtualFile real = (orgPath.equals(path) ? child : virtualFile.getChild(path));
-                return real.getStreamURL().openConnection();
+    private EntryTable getEntryTable() throws IOException {
+        EntryTable table = entryTable;
+        if (table == null) {
+            synchronized (this) {
+                table = entryTable;
+                if (table == null) {
+                    table = new EntryTable(virtualFile);
+                    entryTable = table;
+                }
             }
-
-            // [TODO] overwrite hashCode for to prevent host address resolution
-            // when offline the BundleEntriesTestCase is slow because of this
-        };
-
-        String rootPath = virtualFile.getPathName();
-        String pathName = child.getPathName().substring(rootPath.length());
-
-        // The path can potentially be made characters longer (one leading and one trailing slash)
-        StringBuilder path = new StringBuilder(pathName.length() + 2);
-
-        if (pathName.startsWith("/") == false)
-            path.append('/');
-
-        path.append(pathName);
-
-        if (child.isDirectory() && path.charAt(path.length() - 1) != '/') {
-            path.append('/');
         }
-
-        return new URL(BundleProtocolHandler.PROTOCOL_NAME, identity, -1, path.toString(), streamHandler);
+        return table;
     }
 
     @Override
@@ -224,4 +245,143 @@ final class RevisionContent implements EntriesProvider {
     public String toString() {
         return "[rev=" + userRev + ",id=" + identity + ",vfile=" + virtualFile + "]";
     }
+
+    /**
+     * The paths of all entries, relative to the root and without leading or trailing slash.
+     */
+    static final class EntryTable {
+
+        // Maps the entry path to whether the entry is a directory, the root is the empty path
+        final Map<String, Boolean> entries = new HashMap<String, Boolean>();
+        private final Map<String, List<String>> children = new HashMap<String, List<String>>();
+
+        EntryTable(VirtualFile rootFile) throws IOException {
+            String rootPath = rootFile.getPathName();
+            TreeMap<String, Boolean> sorted = new TreeMap<String, Boolean>();
+            for (VirtualFile child : rootFile.getChildrenRecursively()) {
+                String entryPath = normalize(child.getPathName().substring(rootPath.length()));
+                sorted.put(entryPath, child.isDirectory());
+            }
+            entries.put("", Boolean.TRUE);
+            for (Map.Entry<String, Boolean> entry : sorted.entrySet()) {
+                String entryPath = entry.getKey();
+                if (entryPath.length() == 0)
+                    continue;
+                entries.put(entryPath, entry.getValue());
+                int index = entryPath.lastIndexOf('/');
+                String parentPath = index > 0 ? entryPath.substring(0, index) : "";
+                List<String> list = children.get(parentPath);
+                if (list == null) {
+                    list = new ArrayList<String>();
+                    children.put(parentPath, list);
+                }
+                list.add(entryPath);
+            }
+        }
+
+        List<String> getChildren(String entryPath) {
+            List<String> result = children.get(entryPath);
+            return result != null ? result : Collections.<String> emptyList();
+        }
+
+        /**
+         * Get the entry paths below the given directory whose name matches the file pattern.
+         */
+        List<String> findEntries(String path, String pattern, boolean recurse) {
+            String entryPath = normalize(path);
+            if (!Boolean.TRUE.equals(entries.get(entryPath)))
+                return Collections.emptyList();
+
+            Pattern filter = convertToPattern(pattern != null ? pattern : "*");
+            List<String> result = new ArrayList<String>();
+            findEntries(entryPath, filter, recurse, result);
+            return result;
+        }
+
+        private void findEntries(String parentPath, Pattern filter, boolean recurse, List<String> result) {
+            for (String childPath : getChildren(parentPath)) {
+                if (filter.matcher(childPath.substring(childPath.lastIndexOf('/') + 1)).matches()) {
+                    result.add(childPath);
+                }
+                if (recurse && entries.get(childPath)) {
+                    findEntries(childPath, filter, recurse, result);
+                }
+            }
+        }
+
+        /**
+         * Get the paths of the direct children of the given directory, directories end with a slash.
+         */
+        List<String> getEntryPaths(String path) {
+            List<String> childPaths = getChildren(normalize(path));
+            List<String> result = new ArrayList<String>(childPaths.size());
+            for (String childPath : childPaths) {
+                result.add(entries.get(childPath) ? childPath + "/" : childPath);
+            }
+            return result;
+        }
+
+        // Convert file pattern (RFC 1960-based Filter) into a RegEx pattern
+        private static Pattern convertToPattern(String filePattern) {
+            StringBuilder regex = new StringBuilder();
+            int start = 0;
+            int index;
+            while ((index = filePattern.indexOf('*', start)) >= 0) {
+                if (index > start)
+                    regex.append(Pattern.quote(filePattern.substring(start, index)));
+                regex.append(".*");
+                start = index + 1;
+            }
+            if (start < filePattern.length())
+                regex.append(Pattern.quote(filePattern.substring(start)));
+            return Pattern.compile(regex.toString());
+        }
+
+        static String normalize(String path) {
+            int start = 0;
+            int end = path.length();
+            while (start < end && path.charAt(start) == '/')
+                start++;
+            while (end > start && path.charAt(end - 1) == '/')
+                end--;
+            return path.substring(start, end);
+        }
+    }
+
+    /**
+     * The stream handler for all entry URLs of this revision content.
+     */
+    private final class BundleEntryStreamHandler extends URLStreamHandler {
+
+        @Override
+        protected URLConnection openConnection(URL url) throws IOException {
+            VirtualFile child = virtualFile.getChild(url.getPath());
+            if (child == null)
+                throw new FileNotFoundException(url.toExternalForm());
+            return child.getStreamURL().openConnection();
+        }
+
+        // Do not resolve the host, which is the revision content identity
+        @Override
+        protected int hashCode(URL url) {
+            int result = url.getProtocol().hashCode();
+            String host = url.getHost();
+            if (host != null)
+                result = 31 * result + host.toLowerCase().hashCode();
+            String file = url.getFile();
+            if (file != null)
+                result = 31 * result + file.hashCode();
+            String ref = url.getRef();
+            if (ref != null)
+                result = 31 * result + ref.hashCode();
+            return 31 * result + url.getPort();
+        }
+
+        @Override
+        protected boolean hostsEqual(URL url1, URL url2) {
+            String host1 = url1.getHost();
+            String host2 = url2.getHost();
+            return host1 != null ? host1.equalsIgnoreCase(host2) : host2 == null;
+        }
+    }
 }
@@ -34,7 +34,6 @@ import org.jboss.modules.PackageSpec;
 import org.jboss.modules.Resource;
 import org.jboss.modules.ResourceLoader;
 import org.jboss.osgi.framework.spi.URLResource;
-import org.jboss.osgi.framework.spi.VirtualFileResourceLoader;
 import org.jboss.osgi.resolver.XPackageRequirement;
 import org.osgi.framework.namespace.PackageNamespace;
 import org.osgi.framework.wiring.BundleRequirement;
@@ -55,7 +54,7 @@ final class RevisionContentResourceLoader implements IterableResourceLoader {
     RevisionContentResourceLoader(HostBundleRevision hostRev, RevisionContent revContent) {
         assert hostRev != null : "Null hostRev";
         assert revContent != null : "Null revContent";
-        this.delegate = new VirtualFileResourceLoader(revContent.getVirtualFile());
+        this.delegate = revContent.getResourceLoader();
         this.revContent = revContent;
         this.hostRev = hostRev;
     }
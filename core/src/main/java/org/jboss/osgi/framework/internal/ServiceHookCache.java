@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.jboss.osgi.framework.spi.ServiceState;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+
+/**
+ * A live cache of the registered hook services of a given type.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+final class ServiceHookCache<T> {
+
+    // The service with the highest ranking number comes first
+    private static final Comparator<HookEntry<?>> HOOK_ORDER = new Comparator<HookEntry<?>>() {
+        @Override
+        public int compare(HookEntry<?> entry1, HookEntry<?> entry2) {
+            return ServiceReferenceComparator.getInstance().compare(entry2.serviceState, entry1.serviceState);
+        }
+    };
+
+    private final Class<T> hookType;
+    private final String className;
+    private volatile List<HookEntry<T>> entries = Collections.emptyList();
+
+    ServiceHookCache(Class<T> hookType) {
+        assert hookType != null : "Null hookType";
+        this.hookType = hookType;
+        this.className = hookType.getName();
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Update the cache for the given service event type.
+     */
+    void serviceChanged(int type, ServiceState<?> serviceState) {
+        String[] clazzes = (String[]) serviceState.getProperty(Constants.OBJECTCLASS);
+        boolean hookService = false;
+        for (int i = 0; i < clazzes.length; i++) {
+            if (className.equals(clazzes[i])) {
+                hookService = true;
+                break;
+            }
+        }
+        if (hookService == false)
+            return;
+
+        synchronized (this) {
+            List<HookEntry<T>> result = new ArrayList<HookEntry<T>>(entries);
+            switch (type) {
+                case ServiceEvent.REGISTERED:
+                    result.add(new HookEntry<T>(serviceState, hookType));
+                    break;
+                case ServiceEvent.UNREGISTERING:
+                    for (int i = 0; i < result.size(); i++) {
+                        if (result.get(i).serviceState == serviceState) {
+                            result.remove(i);
+                            break;
+                        }
+                    }
+                    break;
+            }
+            Collections.sort(result, HOOK_ORDER);
+            entries = result.isEmpty() ? Collections.<HookEntry<T>> emptyList() : Collections.unmodifiableList(result);
+        }
+    }
+
+    /**
+     * Get the immutable snapshot of the hook entries, highest ranking first.
+     */
+    List<HookEntry<T>> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Get the hook service objects, highest ranking first.
+     */
+    List<T> getHooks(BundleContext context) {
+        List<HookEntry<T>> current = entries;
+        if (current.isEmpty())
+            return Collections.emptyList();
+
+        List<T> result = new ArrayList<T>(current.size());
+        for (int i = 0; i < current.size(); i++) {
+            T hook = current.get(i).getHook(context);
+            if (hook != null) {
+                result.add(hook);
+            }
+        }
+        return result;
+    }
+
+    static final class HookEntry<T> {
+
+        private final ServiceState<?> serviceState;
+        private final Class<T> hookType;
+        private volatile T hook;
+
+        HookEntry(ServiceState<?> serviceState, Class<T> hookType) {
+            this.serviceState = serviceState;
+            this.hookType = hookType;
+        }
+
+        ServiceState<?> getServiceState() {
+            return serviceState;
+        }
+
+        T getHook(BundleContext context) {
+            T result = hook;
+            if (result == null && serviceState.isUnregistered() == false) {
+                Object service = context.getService(serviceState.getReference());
+                if (hookType.isInstance(service)) {
+                    result = hookType.cast(service);
+                    hook = result;
+                }
+            }
+            return result;
+        }
+    }
+}
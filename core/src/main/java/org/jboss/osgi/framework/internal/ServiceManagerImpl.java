@@ -24,15 +24,11 @@ package org.jboss.osgi.framework.internal;
 import static org.jboss.osgi.framework.FrameworkLogger.LOGGER;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Dictionary;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.jboss.osgi.framework.spi.FrameworkEvents;
@@ -42,8 +38,8 @@ import org.jboss.osgi.resolver.XBundle;
 import org.jboss.osgi.resolver.spi.RemoveOnlyCollection;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
-import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServiceException;
@@ -61,14 +57,25 @@ import org.osgi.framework.hooks.service.ListenerHook.ListenerInfo;
  */
 public final class ServiceManagerImpl implements ServiceManager {
 
+    // The service properties that are indexed by default
+    private static final String[] DEFAULT_INDEXED_PROPERTIES = new String[] { Constants.SERVICE_PID, "component.name", Constants.OBJECTCLASS };
+
     private final FrameworkEvents frameworkEvents;
-    private final Map<String, List<ServiceState<?>>> serviceContainer = new HashMap<String, List<ServiceState<?>>>();
+    private final ServiceStateRegistry serviceRegistry;
     private final ThreadLocal<Bundle> getServiceRecursion = new ThreadLocal<Bundle>();
     private final AtomicLong identityGenerator = new AtomicLong();
 
 
     public ServiceManagerImpl(FrameworkEvents frameworkEvents) {
+        this(frameworkEvents, Arrays.asList(DEFAULT_INDEXED_PROPERTIES));
+    }
+
+    /**
+     * Create the service manager with secondary indexes on the given service properties.
+     */
+    public ServiceManagerImpl(FrameworkEvents frameworkEvents, Collection<String> indexedProperties) {
         this.frameworkEvents = frameworkEvents;
+        this.serviceRegistry = new ServiceStateRegistry(indexedProperties);
     }
 
     @Override
@@ -125,18 +132,7 @@ public final class ServiceManagerImpl implements ServiceManager {
         ServiceState<?> serviceState = new ServiceStateImpl<Object>(this, bundleState, serviceId, classNames, valueProvider, properties);
         LOGGER.debugf("Register service: %s", serviceState);
 
-        synchronized (serviceContainer) {
-            for (String className : classNames) {
-                List<ServiceState<?>> serviceStates = serviceContainer.get(className);
-                if (serviceStates != null) {
-                    serviceStates.add(serviceState);
-                } else {
-                    serviceStates = new CopyOnWriteArrayList<ServiceState<?>>();
-                    serviceStates.add(serviceState);
-                    serviceContainer.put(className, serviceStates);
-                }
-            }
-        }
+        serviceRegistry.addServiceState(serviceState);
         bundleState.addRegisteredService(serviceState);
 
         // Call the newly added ListenerHook.added() method
@@ -163,6 +159,18 @@ public final class ServiceManagerImpl implements ServiceManager {
         assert clazz != null : "Null clazz";
 
         boolean checkAssignable = (bundle.getBundleId() != 0);
+
+        // Without find hooks the highest ranked matching service is the last match in the sorted index
+        if (serviceRegistry.hasServiceStates(FindHook.class.getName()) == false) {
+            List<ServiceState<?>> serviceStates = serviceRegistry.getServiceStates(clazz);
+            for (int i = serviceStates.size() - 1; i >= 0; i--) {
+                ServiceState<?> serviceState = serviceStates.get(i);
+                if (isMatchingService(bundle, serviceState, clazz, NoFilter.INSTANCE, checkAssignable))
+                    return serviceState;
+            }
+            return null;
+        }
+
         List<ServiceState<?>> result = getServiceReferencesInternal(bundle, clazz, NoFilter.INSTANCE, checkAssignable);
         result = processFindHooks(bundle, clazz, null, true, result);
         if (result.isEmpty())
@@ -186,10 +194,7 @@ public final class ServiceManagerImpl implements ServiceManager {
      */
     @Override
     public List<ServiceState<?>> getServiceReferences(XBundle bundle, String clazz, String filterStr, boolean checkAssignable) throws InvalidSyntaxException {
-        Filter filter = NoFilter.INSTANCE;
-        if (filterStr != null)
-            filter = FrameworkUtil.createFilter(filterStr);
-
+        Filter filter = FilterCache.getInstance().getFilter(filterStr);
         List<ServiceState<?>> result = getServiceReferencesInternal(bundle, clazz, filter, checkAssignable);
         result = processFindHooks(bundle, clazz, filterStr, checkAssignable, result);
         return result;
@@ -199,35 +204,18 @@ public final class ServiceManagerImpl implements ServiceManager {
         assert bundle != null : "Null bundleState";
         assert filter != null : "Null filter";
 
-        Set<ServiceState<?>> initialSet = new HashSet<ServiceState<?>>();
-        synchronized (serviceContainer) {
-            if (className != null) {
-                List<ServiceState<?>> list = serviceContainer.get(className);
-                if (list != null) {
-                    initialSet.addAll(list);
-                }
-            } else {
-                for (List<ServiceState<?>> list : serviceContainer.values()) {
-                    initialSet.addAll(list);
-                }
-            }
-        }        
-
-        if (initialSet.isEmpty())
+        // The registry snapshot is already sorted and free of duplicates
+        List<ServiceState<?>> initialList = serviceRegistry.getServiceStates(className, filter);
+        if (initialList.isEmpty())
             return Collections.emptyList();
 
-        Set<ServiceState<?>> resultset = new HashSet<ServiceState<?>>();
-        for (ServiceState<?> serviceState : initialSet) {
+        List<ServiceState<?>> resultList = new ArrayList<ServiceState<?>>(initialList.size());
+        for (ServiceState<?> serviceState : initialList) {
             if (isMatchingService(bundle, serviceState, className, filter, checkAssignable)) {
-                resultset.add(serviceState);
+                resultList.add(serviceState);
             }
         }
 
-        // Sort the result
-        List<ServiceState<?>> resultList = new ArrayList<ServiceState<?>>(resultset);
-        if (resultList.size() > 1)
-            Collections.sort(resultList, ServiceReferenceComparator.getInstance());
-
         return Collections.unmodifiableList(resultList);
     }
 
@@ -240,6 +228,13 @@ public final class ServiceManagerImpl implements ServiceManager {
         return serviceState.isAssignableTo(bundle, clazzName);
     }
 
+    /**
+     * Update the registry indexes after the properties of the given service have changed.
+     */
+    void servicePropertiesChanged(ServiceState<?> serviceState, boolean rankingChanged) {
+        serviceRegistry.servicePropertiesChanged(serviceState, rankingChanged);
+    }
+
     /**
      * Returns the service object referenced by the specified <code>ServiceReference</code> object.
      *
@@ -289,18 +284,11 @@ public final class ServiceManagerImpl implements ServiceManager {
             if (serviceState.isUnregistered())
                 return;
 
-            synchronized (serviceContainer) {
-                for (String className : serviceState.getClassNames()) {
-                    LOGGER.debugf("Unregister service: %s", className);
-                    try {
-                        List<ServiceState<?>> serviceStates = serviceContainer.get(className);
-                        if (serviceStates != null) {
-                            serviceStates.remove(serviceState);
-                        }
-                    } catch (RuntimeException ex) {
-                        LOGGER.errorCannotRemoveService(ex, className);
-                    }
-                }
+            LOGGER.debugf("Unregister service: %s", serviceState.getClassNames());
+            try {
+                serviceRegistry.removeServiceState(serviceState);
+            } catch (RuntimeException ex) {
+                LOGGER.errorCannotRemoveService(ex, serviceState.getClassNames().toString());
             }
 
             XBundle serviceOwner = serviceState.getServiceOwner();
@@ -349,7 +337,7 @@ public final class ServiceManagerImpl implements ServiceManager {
      */
     private List<ServiceState<?>> processFindHooks(XBundle bundle, String clazz, String filterStr, boolean checkAssignable, List<ServiceState<?>> serviceStates) {
 
-        if (serviceStates.isEmpty())
+        if (serviceStates.isEmpty() || serviceRegistry.hasServiceStates(FindHook.class.getName()) == false)
             return serviceStates;
 
         List<ServiceState<?>> hookRefs = getServiceReferencesInternal(bundle, FindHook.class.getName(), NoFilter.INSTANCE, true);
@@ -36,13 +36,15 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import org.jboss.osgi.framework.spi.ServiceManager;
 import org.jboss.osgi.framework.spi.ServiceState;
 import org.jboss.osgi.metadata.CaseInsensitiveDictionary;
 import org.jboss.osgi.resolver.XBundle;
 import org.jboss.osgi.resolver.XBundleRevision;
+import org.jboss.osgi.resolver.XEnvironment;
 import org.jboss.osgi.spi.ConstantsHelper;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.Constants;
@@ -61,9 +63,9 @@ import org.osgi.framework.ServiceRegistration;
  * @since 29-Jun-2010
  */
 @SuppressWarnings("rawtypes")
-final class ServiceStateImpl<S> implements ServiceState<S> {
+final class ServiceStateImpl<S> implements ServiceState<S>, CompiledFilter.PropertySource {
 
-    private final ServiceManager serviceManager;
+    private final ServiceManagerImpl serviceManager;
     private final XBundle ownerBundle;
     private final String[] classNames;
     private final long serviceId;
@@ -76,9 +78,13 @@ final class ServiceStateImpl<S> implements ServiceState<S> {
     // The properties
     private CaseInsensitiveDictionary prevProperties;
     private CaseInsensitiveDictionary currProperties;
+    // The current properties by lowercase key for filter matching
+    private volatile Map<String, Object> filterProperties;
+    // The isAssignableTo results for the current wiring generation
+    private volatile AssignableCache assignableCache;
 
     @SuppressWarnings("unchecked")
-    ServiceStateImpl(ServiceManager serviceManager, XBundle owner, long serviceId, String[] classNames, ValueProvider<S> valueProvider, Dictionary properties) {
+    ServiceStateImpl(ServiceManagerImpl serviceManager, XBundle owner, long serviceId, String[] classNames, ValueProvider<S> valueProvider, Dictionary properties) {
         assert serviceManager != null : "Null serviceManager";
         assert owner != null : "Null owner";
         assert classNames != null && classNames.length > 0 : "Null clazzes";
@@ -99,6 +105,7 @@ final class ServiceStateImpl<S> implements ServiceState<S> {
         properties.put(Constants.SERVICE_ID, serviceId);
         properties.put(Constants.OBJECTCLASS, classNames);
         this.currProperties = new CaseInsensitiveDictionary(properties);
+        this.filterProperties = getFilterProperties(currProperties);
 
         // Create the {@link ServiceRegistration} and {@link ServiceReference}
         this.registration = new ServiceRegistrationWrapper(this);
@@ -201,6 +208,7 @@ final class ServiceStateImpl<S> implements ServiceState<S> {
         serviceManager.unregisterService(this);
         usingBundles = null;
         registration = null;
+        assignableCache = null;
     }
 
     @Override
@@ -210,6 +218,21 @@ final class ServiceStateImpl<S> implements ServiceState<S> {
         return currProperties.get(key);
     }
 
+    @Override
+    public Object getPropertyValue(String key, String lowerCaseKey) {
+        return filterProperties.get(lowerCaseKey);
+    }
+
+    private static Map<String, Object> getFilterProperties(CaseInsensitiveDictionary properties) {
+        Map<String, Object> result = new HashMap<String, Object>();
+        Enumeration<String> keys = properties.keys();
+        while (keys.hasMoreElements()) {
+            String key = keys.nextElement();
+            result.put(CompiledFilter.toLowerCase(key), properties.get(key));
+        }
+        return result;
+    }
+
     @Override
     public String[] getPropertyKeys() {
         List<String> result = new ArrayList<String>();
@@ -233,9 +256,14 @@ final class ServiceStateImpl<S> implements ServiceState<S> {
         if (properties == null)
             properties = new Hashtable();
 
+        int prevRanking = getServiceRanking();
         properties.put(Constants.SERVICE_ID, currProperties.get(Constants.SERVICE_ID));
         properties.put(Constants.OBJECTCLASS, currProperties.get(Constants.OBJECTCLASS));
         currProperties = new CaseInsensitiveDictionary(properties);
+        filterProperties = getFilterProperties(currProperties);
+
+        // Keep the service registry indexes up to date
+        serviceManager.servicePropertiesChanged(this, prevRanking != getServiceRanking());
 
         // This event is synchronously delivered after the service properties have been modified.
         serviceManager.fireServiceEvent(ownerBundle, ServiceEvent.MODIFIED, this);
@@ -324,6 +352,23 @@ final class ServiceStateImpl<S> implements ServiceState<S> {
             return false;
         }
 
+        // The answer only changes with the wiring of the requesting or the registrant bundle
+        long generation = getWiringGeneration();
+        AssignableCache cache = getAssignableCache(generation);
+        AssignableKey key = new AssignableKey(bundleRev, className);
+        Boolean cached = cache != null ? cache.results.get(key) : null;
+        if (cached != null)
+            return cached.booleanValue();
+
+        boolean result = isAssignableTo(bundle, bundleRev, bundleClassLoader, className);
+        if (cache != null && generation == getWiringGeneration()) {
+            cache.results.put(key, Boolean.valueOf(result));
+        }
+        return result;
+    }
+
+    private boolean isAssignableTo(Bundle bundle, XBundleRevision bundleRev, ClassLoader bundleClassLoader, String className) {
+
         FallbackLoader fallbackLoader = null;
         if (bundleRev instanceof HostBundleRevision) {
             fallbackLoader = ((HostBundleRevision) bundleRev).getFallbackLoader();
@@ -378,6 +423,28 @@ final class ServiceStateImpl<S> implements ServiceState<S> {
         return true;
     }
 
+    private long getWiringGeneration() {
+        if (ownerBundle instanceof AbstractBundleState) {
+            XEnvironment env = ((AbstractBundleState) ownerBundle).getFrameworkState().getEnvironment();
+            if (env instanceof IndexedEnvironment) {
+                return ((IndexedEnvironment) env).getBundleIndex().getGeneration();
+            }
+        }
+        return -1;
+    }
+
+    // Get the assignability cache for the given wiring generation, or null if results cannot be cached
+    private AssignableCache getAssignableCache(long generation) {
+        if (generation < 0)
+            return null;
+        AssignableCache cache = assignableCache;
+        if (cache == null || cache.generation != generation) {
+            cache = new AssignableCache(generation);
+            assignableCache = cache;
+        }
+        return cache;
+    }
+
     @Override
     public int compareTo(Object sref) {
         if (sref instanceof ServiceReference == false)
@@ -498,4 +565,39 @@ final class ServiceStateImpl<S> implements ServiceState<S> {
             }
         }
     }
+
+    /**
+     * The isAssignableTo results for a given wiring generation, by requesting revision and class name.
+     */
+    static final class AssignableCache {
+        final long generation;
+        final ConcurrentMap<AssignableKey, Boolean> results = new ConcurrentHashMap<AssignableKey, Boolean>();
+
+        AssignableCache(long generation) {
+            this.generation = generation;
+        }
+    }
+
+    static final class AssignableKey {
+        private final XBundleRevision bundleRev;
+        private final String className;
+
+        AssignableKey(XBundleRevision bundleRev, String className) {
+            this.bundleRev = bundleRev;
+            this.className = className;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(bundleRev) + className.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof AssignableKey))
+                return false;
+            AssignableKey other = (AssignableKey) obj;
+            return bundleRev == other.bundleRev && className.equals(other.className);
+        }
+    }
 }
@@ -0,0 +1,456 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.osgi.framework.spi.ServiceState;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Filter;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * The registry of service states, indexed by class name and service properties.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+final class ServiceStateRegistry {
+
+    private static final String OBJECTCLASS_KEY = CompiledFilter.toLowerCase(Constants.OBJECTCLASS);
+
+    private final ConcurrentMap<String, ServiceStateList> classIndex = new ConcurrentHashMap<String, ServiceStateList>();
+    private final ServiceStateList allServices = new ServiceStateList();
+    private final Map<String, PropertyIndex> propertyIndexes = new HashMap<String, PropertyIndex>();
+    private final Set<ServiceState<?>> registered = Collections.newSetFromMap(new ConcurrentHashMap<ServiceState<?>, Boolean>());
+
+    ServiceStateRegistry(Collection<String> indexedProperties) {
+        for (String key : indexedProperties) {
+            String lowerCaseKey = CompiledFilter.toLowerCase(key.trim());
+            // The objectClass is covered by the class index
+            if (lowerCaseKey.length() > 0 && lowerCaseKey.equals(OBJECTCLASS_KEY) == false) {
+                propertyIndexes.put(lowerCaseKey, new PropertyIndex(lowerCaseKey));
+            }
+        }
+    }
+
+    // The registered set and the property indexes are only modified while holding the service state monitor,
+    // so that a property change cannot re-index a service that is concurrently unregistered
+    void addServiceState(ServiceState<?> serviceState) {
+        synchronized (serviceState) {
+            registered.add(serviceState);
+            for (String className : serviceState.getClassNames()) {
+                getOrCreateList(className).add(serviceState);
+            }
+            allServices.add(serviceState);
+            for (PropertyIndex index : propertyIndexes.values()) {
+                index.add(serviceState);
+            }
+        }
+    }
+
+    void removeServiceState(ServiceState<?> serviceState) {
+        synchronized (serviceState) {
+            registered.remove(serviceState);
+            for (String className : serviceState.getClassNames()) {
+                ServiceStateList list = classIndex.get(className);
+                if (list != null) {
+                    list.remove(serviceState);
+                }
+            }
+            allServices.remove(serviceState);
+            for (PropertyIndex index : propertyIndexes.values()) {
+                index.remove(serviceState);
+            }
+        }
+    }
+
+    /**
+     * Update the index entries for the given service state after its properties have changed.
+     */
+    void servicePropertiesChanged(ServiceState<?> serviceState, boolean rankingChanged) {
+        synchronized (serviceState) {
+            if (registered.contains(serviceState) == false)
+                return;
+            for (PropertyIndex index : propertyIndexes.values()) {
+                index.update(serviceState, rankingChanged);
+            }
+        }
+        if (rankingChanged) {
+            for (String className : serviceState.getClassNames()) {
+                ServiceStateList list = classIndex.get(className);
+                if (list != null) {
+                    list.resort();
+                }
+            }
+            allServices.resort();
+        }
+    }
+
+    /**
+     * Get the sorted service states for the given class name or all service states if the class name is null.
+     * The returned list is an immutable snapshot.
+     */
+    List<ServiceState<?>> getServiceStates(String className) {
+        ServiceStateList list = className != null ? classIndex.get(className) : allServices;
+        return list != null ? list.getSnapshot() : Collections.<ServiceState<?>> emptyList();
+    }
+
+    /**
+     * Get the sorted candidate service states for the given class name and filter. The candidates are all registered
+     * under the given class name, but may still not match the filter.
+     */
+    List<ServiceState<?>> getServiceStates(String className, Filter filter) {
+        List<ServiceState<?>> result = getServiceStates(className);
+        if (filter instanceof CompiledFilter == false || result.isEmpty())
+            return result;
+
+        // Narrow the candidates to the smallest index entry that satisfies an equality term
+        CompiledFilter compiledFilter = (CompiledFilter) filter;
+        boolean classMatch = true;
+        for (int i = 0; i < compiledFilter.getEqualityTermCount(); i++) {
+            String key = compiledFilter.getEqualityKey(i);
+            String value = compiledFilter.getEqualityValue(i);
+            List<ServiceState<?>> candidates = null;
+            if (key.equals(OBJECTCLASS_KEY)) {
+                candidates = getServiceStates(value);
+            } else {
+                PropertyIndex index = propertyIndexes.get(key);
+                if (index != null) {
+                    candidates = index.getServiceStates(value);
+                }
+            }
+            if (candidates != null && candidates.size() < result.size()) {
+                result = candidates;
+                classMatch = (className == null || (className.equals(value) && key.equals(OBJECTCLASS_KEY)));
+                if (result.isEmpty())
+                    return result;
+            }
+        }
+        if (classMatch)
+            return result;
+
+        List<ServiceState<?>> classResult = new ArrayList<ServiceState<?>>(result.size());
+        for (ServiceState<?> serviceState : result) {
+            if (serviceState.getClassNames().contains(className)) {
+                classResult.add(serviceState);
+            }
+        }
+        return classResult;
+    }
+
+    boolean hasServiceStates(String className) {
+        return getServiceStates(className).isEmpty() == false;
+    }
+
+    private ServiceStateList getOrCreateList(String className) {
+        // Index entries are never removed, the set of service class names is bounded
+        ServiceStateList list = classIndex.get(className);
+        if (list == null) {
+            ServiceStateList newList = new ServiceStateList();
+            list = classIndex.putIfAbsent(className, newList);
+            if (list == null) {
+                list = newList;
+            }
+        }
+        return list;
+    }
+
+    /**
+     * An index of service states by the string values of a service property.
+     *
+     * Services with a property value that is not a string, a string array or a collection of strings are kept in a
+     * separate list that is part of every lookup result.
+     */
+    static final class PropertyIndex {
+
+        private static final String[] UNINDEXED = new String[0];
+
+        private final String key;
+        private final ConcurrentMap<String, ServiceStateList> valueIndex = new ConcurrentHashMap<String, ServiceStateList>();
+        private final ServiceStateList unindexed = new ServiceStateList();
+        private final Map<ServiceState<?>, String[]> indexedValues = new HashMap<ServiceState<?>, String[]>();
+
+        PropertyIndex(String key) {
+            this.key = key;
+        }
+
+        synchronized void add(ServiceState<?> serviceState) {
+            String[] values = getIndexValues(serviceState);
+            if (values != null) {
+                addEntries(serviceState, values, null);
+                indexedValues.put(serviceState, values);
+            }
+        }
+
+        synchronized void remove(ServiceState<?> serviceState) {
+            String[] values = indexedValues.remove(serviceState);
+            if (values != null) {
+                removeEntries(serviceState, values, null);
+            }
+        }
+
+        /**
+         * Move the service state to the entries of its current property value. The new entries are added before the
+         * stale entries are removed, so that a concurrent lookup never misses the service.
+         */
+        synchronized void update(ServiceState<?> serviceState, boolean rankingChanged) {
+            String[] oldValues = indexedValues.get(serviceState);
+            String[] newValues = getIndexValues(serviceState);
+            if (newValues != null) {
+                addEntries(serviceState, newValues, oldValues);
+                indexedValues.put(serviceState, newValues);
+            } else {
+                indexedValues.remove(serviceState);
+            }
+            if (oldValues != null) {
+                removeEntries(serviceState, oldValues, newValues);
+            }
+            if (rankingChanged && oldValues != null && newValues != null) {
+                resortEntries(oldValues, newValues);
+            }
+        }
+
+        private String[] getIndexValues(ServiceState<?> serviceState) {
+            Object value = serviceState.getProperty(key);
+            if (value == null)
+                return null;
+            String[] values = getStringValues(value);
+            return values != null ? values : UNINDEXED;
+        }
+
+        private void addEntries(ServiceState<?> serviceState, String[] values, String[] skipValues) {
+            if (values == UNINDEXED) {
+                if (skipValues != UNINDEXED) {
+                    unindexed.add(serviceState);
+                }
+                return;
+            }
+            for (String aux : values) {
+                if (contains(skipValues, aux))
+                    continue;
+                ServiceStateList list = valueIndex.get(aux);
+                if (list == null) {
+                    list = new ServiceStateList();
+                    valueIndex.put(aux, list);
+                }
+                list.add(serviceState);
+            }
+        }
+
+        private void removeEntries(ServiceState<?> serviceState, String[] values, String[] keepValues) {
+            if (values == UNINDEXED) {
+                if (keepValues != UNINDEXED) {
+                    unindexed.remove(serviceState);
+                }
+                return;
+            }
+            for (String aux : values) {
+                if (contains(keepValues, aux))
+                    continue;
+                ServiceStateList list = valueIndex.get(aux);
+                if (list != null) {
+                    list.remove(serviceState);
+                    if (list.getSnapshot().isEmpty()) {
+                        valueIndex.remove(aux);
+                    }
+                }
+            }
+        }
+
+        private void resortEntries(String[] oldValues, String[] newValues) {
+            if (oldValues == UNINDEXED || newValues == UNINDEXED) {
+                if (oldValues == newValues) {
+                    unindexed.resort();
+                }
+                return;
+            }
+            for (String aux : newValues) {
+                ServiceStateList list = valueIndex.get(aux);
+                if (list != null && contains(oldValues, aux)) {
+                    list.resort();
+                }
+            }
+        }
+
+        private static boolean contains(String[] values, String value) {
+            if (values == null || values == UNINDEXED)
+                return false;
+            for (String aux : values) {
+                if (aux.equals(value))
+                    return true;
+            }
+            return false;
+        }
+
+        List<ServiceState<?>> getServiceStates(String value) {
+            ServiceStateList list = valueIndex.get(value);
+            List<ServiceState<?>> indexed = list != null ? list.getSnapshot() : Collections.<ServiceState<?>> emptyList();
+            List<ServiceState<?>> others = unindexed.getSnapshot();
+            if (others.isEmpty())
+                return indexed;
+
+            // A service that is being moved between the lists may briefly be in both
+            List<ServiceState<?>> result = new ArrayList<ServiceState<?>>(indexed.size() + others.size());
+            result.addAll(indexed);
+            Set<ServiceState<?>> seen = Collections.newSetFromMap(new IdentityHashMap<ServiceState<?>, Boolean>());
+            seen.addAll(indexed);
+            for (ServiceState<?> aux : others) {
+                if (seen.add(aux)) {
+                    result.add(aux);
+                }
+            }
+            return Collections.unmodifiableList(Arrays.asList(ServiceStateList.sort(result.toArray(new ServiceState<?>[result.size()]))));
+        }
+
+        private static String[] getStringValues(Object value) {
+            if (value instanceof String)
+                return new String[] { (String) value };
+            if (value instanceof String[]) {
+                String[] array = (String[]) value;
+                for (String aux : array) {
+                    if (aux == null)
+                        return null;
+                }
+                return array.clone();
+            }
+            if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>) value;
+                List<String> result = new ArrayList<String>(collection.size());
+                for (Object aux : collection) {
+                    if (aux instanceof String == false)
+                        return null;
+                    result.add((String) aux);
+                }
+                return result.toArray(new String[result.size()]);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A copy-on-write array of service states in {@link ServiceReferenceComparator} order.
+     */
+    static final class ServiceStateList {
+
+        private static final ServiceState<?>[] EMPTY = new ServiceState<?>[0];
+        private final Comparator<ServiceReference<?>> comparator = ServiceReferenceComparator.getInstance();
+        private ServiceState<?>[] states = EMPTY;
+        private volatile List<ServiceState<?>> snapshot = Collections.emptyList();
+
+        synchronized void add(ServiceState<?> serviceState) {
+            ServiceState<?>[] current = states;
+            int index = Arrays.binarySearch(current, serviceState, comparator);
+            if (index >= 0)
+                return;
+
+            int insert = -(index + 1);
+            ServiceState<?>[] result = new ServiceState<?>[current.length + 1];
+            System.arraycopy(current, 0, result, 0, insert);
+            result[insert] = serviceState;
+            System.arraycopy(current, insert, result, insert + 1, current.length - insert);
+            publish(result);
+        }
+
+        synchronized boolean remove(ServiceState<?> serviceState) {
+            // Search by identity, the service ranking may have changed since it was added
+            ServiceState<?>[] current = states;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == serviceState) {
+                    ServiceState<?>[] result = current.length == 1 ? EMPTY : new ServiceState<?>[current.length - 1];
+                    System.arraycopy(current, 0, result, 0, i);
+                    System.arraycopy(current, i + 1, result, i, current.length - i - 1);
+                    publish(result);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized void resort() {
+            publish(sort(states));
+        }
+
+        // The sort keys are captured first, a concurrent ranking change must not be seen in the middle of the sort
+        static ServiceState<?>[] sort(ServiceState<?>[] states) {
+            SortKey[] keys = new SortKey[states.length];
+            for (int i = 0; i < states.length; i++) {
+                keys[i] = new SortKey(states[i]);
+            }
+            Arrays.sort(keys);
+            ServiceState<?>[] result = new ServiceState<?>[states.length];
+            for (int i = 0; i < keys.length; i++) {
+                result[i] = keys[i].serviceState;
+            }
+            return result;
+        }
+
+        List<ServiceState<?>> getSnapshot() {
+            return snapshot;
+        }
+
+        private void publish(ServiceState<?>[] result) {
+            states = result;
+            if (result.length == 0) {
+                snapshot = Collections.emptyList();
+            } else {
+                snapshot = Collections.unmodifiableList(Arrays.asList(result));
+            }
+        }
+    }
+
+    /**
+     * The {@link ServiceReferenceComparator} order for a ranking and service id that are read once.
+     */
+    private static final class SortKey implements Comparable<SortKey> {
+
+        private final ServiceState<?> serviceState;
+        private final int ranking;
+        private final long serviceId;
+
+        SortKey(ServiceState<?> serviceState) {
+            this.serviceState = serviceState;
+            this.ranking = serviceState.getServiceRanking();
+            this.serviceId = serviceState.getServiceId();
+        }
+
+        @Override
+        public int compareTo(SortKey other) {
+            if (serviceId == other.serviceId)
+                return 0;
+            if (ranking != other.ranking)
+                return ranking < other.ranking ? -1 : 1;
+            return serviceId > other.serviceId ? -1 : 1;
+        }
+    }
+}
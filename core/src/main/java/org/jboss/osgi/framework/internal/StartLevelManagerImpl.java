@@ -27,11 +27,19 @@ import static org.jboss.osgi.framework.FrameworkMessages.MESSAGES;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.jboss.osgi.framework.Constants;
 import org.jboss.osgi.framework.spi.BundleManager;
 import org.jboss.osgi.framework.spi.FrameworkEvents;
 import org.jboss.osgi.framework.spi.StartLevelManager;
@@ -43,6 +51,8 @@ import org.osgi.framework.BundleException;
 import org.osgi.framework.FrameworkEvent;
 import org.osgi.framework.FrameworkListener;
 import org.osgi.framework.launch.Framework;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
 
 /**
  * An implementation of the {@link StartLevelManager} service.
@@ -57,16 +67,41 @@ public final class StartLevelManagerImpl implements StartLevelManager {
     private final BundleManagerPlugin bundleManager;
     private final FrameworkEvents events;
     private final ExecutorService executorService;
+    private final ExecutorService lifecycleExecutor;
     private final AtomicBoolean immediateExecution;
     private AtomicInteger initialBundleStartLevel = new AtomicInteger(1);
     private AtomicInteger startLevel = new AtomicInteger(0);
     private AtomicBoolean changingStartLevel = new AtomicBoolean();
+    private final int startParallelism;
+    private final Map<Integer, Long> startLevelTimes = new ConcurrentHashMap<Integer, Long>();
+    private final Set<Thread> startThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
 
-    public StartLevelManagerImpl(BundleManager bundleManager, FrameworkEvents frameworkEvents, ExecutorService executorService, AtomicBoolean immediateExecution) {
+    public StartLevelManagerImpl(BundleManager bundleManager, FrameworkEvents frameworkEvents, ExecutorService executorService, ExecutorService lifecycleExecutor, AtomicBoolean immediateExecution) {
         this.bundleManager = (BundleManagerPlugin) bundleManager;
         this.events = frameworkEvents;
         this.executorService = executorService;
+        this.lifecycleExecutor = lifecycleExecutor;
         this.immediateExecution = immediateExecution;
+        this.startParallelism = getStartParallelism(bundleManager);
+    }
+
+    private static int getStartParallelism(BundleManager bundleManager) {
+        Object value = bundleManager.getProperty(Constants.PROPERTY_STARTLEVEL_PARALLELISM);
+        if (value == null)
+            return 1;
+        try {
+            return Math.max(1, Integer.parseInt(value.toString().trim()));
+        } catch (NumberFormatException ex) {
+            LOGGER.debugf("Invalid %s: %s", Constants.PROPERTY_STARTLEVEL_PARALLELISM, value);
+            return 1;
+        }
+    }
+
+    /**
+     * Get the time in milliseconds that was spent starting the bundles of each start level.
+     */
+    public Map<Integer, Long> getStartLevelTimes() {
+        return Collections.unmodifiableMap(new HashMap<Integer, Long>(startLevelTimes));
     }
 
     @Override
@@ -80,7 +115,7 @@ public final class StartLevelManagerImpl implements StartLevelManager {
     }
 
     @Override
-    public synchronized void setFrameworkStartLevel(final int level, FrameworkListener... listeners) {
+    public void setFrameworkStartLevel(final int level, FrameworkListener... listeners) {
         setFrameworkStartLevelInternal(level, immediateExecution.get(), listeners);
     }
 
@@ -94,7 +129,27 @@ public final class StartLevelManagerImpl implements StartLevelManager {
         setFrameworkStartLevelInternal(0, true, listeners);
     }
 
-    private synchronized void setFrameworkStartLevelInternal(final int level, final boolean synchronous, final FrameworkListener... listeners) {
+    private void setFrameworkStartLevelInternal(final int level, final boolean synchronous, final FrameworkListener... listeners) {
+
+        // A bundle that is started concurrently by a start level change cannot wait for the monitor that is held
+        // by that change. Its request is executed after the change has completed.
+        if (startThreads.contains(Thread.currentThread())) {
+            Runnable runner = new Runnable() {
+                @Override
+                public void run() {
+                    setFrameworkStartLevelInternal(level, true, listeners);
+                }
+            };
+            executeTask(runner, false);
+            return;
+        }
+
+        synchronized (this) {
+            changeFrameworkStartLevel(level, synchronous, listeners);
+        }
+    }
+
+    private void changeFrameworkStartLevel(final int level, final boolean synchronous, final FrameworkListener... listeners) {
 
         final XBundle sysbundle = bundleManager.getSystemBundle();
 
@@ -152,31 +207,148 @@ public final class StartLevelManagerImpl implements StartLevelManager {
             Collections.sort(bundles, comparator);
 
             while (startLevel.get() < level) {
-                startLevel.incrementAndGet();
-                LOGGER.infoStartingBundlesForStartLevel(startLevel.get());
+                int currentLevel = startLevel.incrementAndGet();
+                LOGGER.infoStartingBundlesForStartLevel(currentLevel);
+                long startTime = System.currentTimeMillis();
+
+                List<XBundle> levelBundles = new ArrayList<XBundle>();
                 for (XBundle bundle : bundles) {
                     if (bundle.getBundleId() == 0 || bundle.isFragment())
                         continue;
 
                     BundleStartLevelState state = getBundleStartLevelState(bundle);
-                    if (state.getLevel() == startLevel.get() && state.isStarted()) {
-                        try {
-                            int opts = Bundle.START_TRANSIENT;
-                            if (isBundleActivationPolicyUsed(bundle)) {
-                                opts |= Bundle.START_ACTIVATION_POLICY;
-                            }
-                            bundle.start(opts);
-                        } catch (Throwable e) {
-                            events.fireFrameworkEvent(bundle, FrameworkEvent.ERROR, e);
-                        }
+                    if (state.getLevel() == currentLevel && state.isStarted()) {
+                        levelBundles.add(bundle);
+                    }
+                }
+
+                if (startParallelism > 1 && levelBundles.size() > 1) {
+                    startBundlesConcurrently(levelBundles);
+                } else {
+                    for (XBundle bundle : levelBundles) {
+                        startBundle(bundle);
                     }
                 }
+
+                long duration = System.currentTimeMillis() - startTime;
+                startLevelTimes.put(currentLevel, duration);
+                LOGGER.debugf("Started %d bundles for start level %d in %dms", levelBundles.size(), currentLevel, duration);
             }
         } finally {
             changingStartLevel.set(false);
         }
     }
 
+    private void startBundle(XBundle bundle) {
+        try {
+            int opts = Bundle.START_TRANSIENT;
+            if (isBundleActivationPolicyUsed(bundle)) {
+                opts |= Bundle.START_ACTIVATION_POLICY;
+            }
+            bundle.start(opts);
+        } catch (Throwable e) {
+            events.fireFrameworkEvent(bundle, FrameworkEvent.ERROR, e);
+        }
+    }
+
+    /**
+     * Start the given bundles of the same start level concurrently. A bundle is only started after the bundles
+     * of the same start level that it is wired to have been started. Bundles that are not resolved yet are not
+     * started concurrently, so that they are resolved when they are started, as on the sequential path.
+     * These bundles and bundles in dependency cycles are started sequentially in bundle id order at the end.
+     */
+    private void startBundlesConcurrently(List<XBundle> bundles) {
+
+        Set<XBundle> resolvedBundles = new HashSet<XBundle>();
+        for (XBundle bundle : bundles) {
+            if (bundle.isResolved()) {
+                resolvedBundles.add(bundle);
+            }
+        }
+
+        Map<XBundle, Integer> providerCounts = new HashMap<XBundle, Integer>();
+        Map<XBundle, List<XBundle>> dependents = new HashMap<XBundle, List<XBundle>>();
+        for (XBundle bundle : resolvedBundles) {
+            Set<XBundle> providers = new HashSet<XBundle>();
+            BundleWiring wiring = bundle.getBundleRevision().getWiring();
+            if (wiring != null) {
+                for (BundleWire wire : wiring.getRequiredWires(null)) {
+                    XBundle provider = (XBundle) wire.getProvider().getBundle();
+                    if (provider != bundle && resolvedBundles.contains(provider)) {
+                        providers.add(provider);
+                    }
+                }
+            }
+            for (XBundle provider : providers) {
+                List<XBundle> list = dependents.get(provider);
+                if (list == null) {
+                    list = new ArrayList<XBundle>();
+                    dependents.put(provider, list);
+                }
+                list.add(bundle);
+            }
+            providerCounts.put(bundle, providers.size());
+        }
+
+        Set<XBundle> attempted = Collections.newSetFromMap(new ConcurrentHashMap<XBundle, Boolean>());
+        BoundedTaskRunner<XBundle> taskRunner = new BoundedTaskRunner<XBundle>(lifecycleExecutor, startParallelism);
+        boolean interrupted = false;
+        try {
+            for (XBundle bundle : bundles) {
+                if (resolvedBundles.contains(bundle) && providerCounts.get(bundle) == 0) {
+                    submitStartTask(taskRunner, bundle, attempted);
+                }
+            }
+            while (taskRunner.hasPending()) {
+                XBundle started = taskRunner.take();
+                List<XBundle> list = dependents.get(started);
+                if (list != null) {
+                    for (XBundle dependent : list) {
+                        int count = providerCounts.get(dependent) - 1;
+                        providerCounts.put(dependent, count);
+                        if (count == 0) {
+                            submitStartTask(taskRunner, dependent, attempted);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            interrupted = true;
+        } catch (ExecutionException ex) {
+            LOGGER.debugf(ex, "Cannot start bundles concurrently");
+        } finally {
+            // Do not start any more bundles before the running starts have completed
+            taskRunner.cancelAndAwait();
+        }
+
+        // Start the remaining bundles in bundle id order
+        for (XBundle bundle : bundles) {
+            if (!attempted.contains(bundle)) {
+                startBundle(bundle);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submitStartTask(BoundedTaskRunner<XBundle> taskRunner, final XBundle bundle, final Set<XBundle> attempted) {
+        taskRunner.submit(new Callable<XBundle>() {
+            @Override
+            public XBundle call() {
+                attempted.add(bundle);
+                Thread thread = Thread.currentThread();
+                startThreads.add(thread);
+                try {
+                    startBundle(bundle);
+                } finally {
+                    startThreads.remove(thread);
+                }
+                return bundle;
+            }
+        });
+    }
+
     /**
      * Decreases the Start Level of the Framework in the current thread.
      *
@@ -0,0 +1,356 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import static org.jboss.osgi.framework.FrameworkLogger.LOGGER;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the persistent bundle properties.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ *
+ * @ThreadSafe
+ */
+final class StorageJournal {
+
+    static final String JOURNAL_FILE_NAME = "storage.journal";
+
+    private static final int MAGIC = 0x4A424A4C;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_DELETE = 2;
+    private static final int MIN_COMPACTION_RECORDS = 64;
+
+    private final File journalFile;
+    private final Object flushLock = new Object();
+    // The last complete record of every live bundle
+    private final Map<Long, byte[]> liveRecords = new LinkedHashMap<Long, byte[]>();
+    private List<byte[]> pendingRecords = new ArrayList<byte[]>();
+    private long appendedCount;
+    private long flushedCount;
+    private long journalRecords;
+    private RandomAccessFile journal;
+
+    StorageJournal(File journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    File getJournalFile() {
+        return journalFile;
+    }
+
+    boolean exists() {
+        return journalFile.isFile();
+    }
+
+    /**
+     * Open the journal and recover the properties of all live bundles by bundle id.
+     */
+    Map<Long, Properties> open() throws IOException {
+        Map<Long, Properties> result = new LinkedHashMap<Long, Properties>();
+        synchronized (flushLock) {
+            journalFile.getParentFile().mkdirs();
+            journal = new RandomAccessFile(journalFile, "rw");
+            FileChannel channel = journal.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                writeHeader(channel);
+                return result;
+            }
+
+            byte[] bytes = new byte[(int) size];
+            ByteBuffer data = ByteBuffer.wrap(bytes);
+            while (data.hasRemaining()) {
+                if (channel.read(data, data.position()) < 0)
+                    throw new IOException("Unexpected end of storage journal: " + journalFile);
+            }
+            data.flip();
+            if (data.getInt() != MAGIC || data.getInt() != VERSION)
+                throw new IOException("Invalid storage journal: " + journalFile);
+
+            long validOffset = HEADER_SIZE;
+            while (data.remaining() >= RECORD_HEADER_SIZE) {
+                int length = data.getInt();
+                int checksum = data.getInt();
+                if (length <= 0 || length > data.remaining())
+                    break;
+                CRC32 crc = new CRC32();
+                crc.update(bytes, data.position(), length);
+                if ((int) crc.getValue() != checksum)
+                    break;
+
+                byte[] record = new byte[length];
+                data.get(record);
+                applyRecord(record, result);
+                validOffset = data.position();
+                journalRecords++;
+            }
+            if (validOffset < size) {
+                LOGGER.warnStorageJournalTruncated(validOffset, journalFile);
+                channel.truncate(validOffset);
+                channel.force(true);
+            }
+            channel.position(validOffset);
+        }
+        return result;
+    }
+
+    /**
+     * Record the complete properties of the given bundle.
+     */
+    void put(long bundleId, Properties props) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+        DataOutputStream output = new DataOutputStream(baos);
+        output.writeByte(RECORD_PUT);
+        output.writeLong(bundleId);
+        synchronized (props) {
+            output.writeInt(props.size());
+            for (Map.Entry<Object, Object> entry : props.entrySet()) {
+                output.writeUTF(entry.getKey().toString());
+                output.writeUTF(entry.getValue().toString());
+            }
+        }
+        output.close();
+        append(bundleId, baos.toByteArray());
+    }
+
+    /**
+     * Record that the given bundle has been deleted.
+     */
+    void delete(long bundleId) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(16);
+        DataOutputStream output = new DataOutputStream(baos);
+        output.writeByte(RECORD_DELETE);
+        output.writeLong(bundleId);
+        output.close();
+        append(bundleId, baos.toByteArray());
+    }
+
+    /**
+     * Get a copy of the last recorded properties of the given bundle, or null.
+     */
+    Properties getProperties(long bundleId) throws IOException {
+        byte[] record;
+        synchronized (this) {
+            record = liveRecords.get(bundleId);
+        }
+        if (record == null)
+            return null;
+        Map<Long, Properties> result = new HashMap<Long, Properties>();
+        readRecord(record, result);
+        return result.get(bundleId);
+    }
+
+    void close() {
+        synchronized (flushLock) {
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+                journal = null;
+            }
+        }
+    }
+
+    private void append(long bundleId, byte[] record) throws IOException {
+        long sequence;
+        synchronized (this) {
+            if (record[0] == RECORD_PUT) {
+                liveRecords.put(bundleId, record);
+            } else {
+                liveRecords.remove(bundleId);
+            }
+            pendingRecords.add(record);
+            sequence = ++appendedCount;
+        }
+
+        // The first thread to get here writes all pending records, the others find theirs already written
+        synchronized (flushLock) {
+            if (flushedCount >= sequence)
+                return;
+            if (journal == null)
+                throw new IOException("Storage journal closed: " + journalFile);
+
+            List<byte[]> batch;
+            long batchEnd;
+            synchronized (this) {
+                batch = pendingRecords;
+                batchEnd = appendedCount;
+                pendingRecords = new ArrayList<byte[]>();
+            }
+
+            FileChannel channel = journal.getChannel();
+            long position = channel.position();
+            try {
+                writeFully(channel, toBuffer(batch));
+                channel.force(false);
+            } catch (IOException ex) {
+                // Put the batch back, every waiting thread then writes it again or fails itself
+                synchronized (this) {
+                    batch.addAll(pendingRecords);
+                    pendingRecords = batch;
+                }
+                discardTail(channel, position);
+                throw ex;
+            }
+            flushedCount = batchEnd;
+            journalRecords += batch.size();
+
+            int liveCount;
+            synchronized (this) {
+                liveCount = liveRecords.size();
+            }
+            if (journalRecords > MIN_COMPACTION_RECORDS + 2L * liveCount) {
+                try {
+                    compact();
+                } catch (IOException ex) {
+                    // The batch is written, the journal is only compacted later
+                    LOGGER.warnCannotCompactStorageJournal(ex, journalFile);
+                }
+            }
+        }
+    }
+
+    // Must be called while holding the flush lock
+    private void discardTail(FileChannel channel, long position) {
+        try {
+            channel.truncate(position);
+            channel.position(position);
+        } catch (IOException ex) {
+            // Records appended after a partial write would be discarded on recovery
+            close();
+        }
+    }
+
+    // Must be called while holding the flush lock
+    private void compact() throws IOException {
+        List<byte[]> records;
+        synchronized (this) {
+            records = new ArrayList<byte[]>(liveRecords.values());
+        }
+        File compactFile = new File(journalFile.getPath() + ".compact");
+        RandomAccessFile compact = new RandomAccessFile(compactFile, "rw");
+        try {
+            FileChannel channel = compact.getChannel();
+            channel.truncate(0);
+            writeHeader(channel);
+            writeFully(channel, toBuffer(records));
+            channel.force(true);
+        } finally {
+            compact.close();
+        }
+
+        journal.close();
+        journal = null;
+        try {
+            if (!compactFile.renameTo(journalFile)) {
+                journalFile.delete();
+                if (!compactFile.renameTo(journalFile))
+                    throw new IOException("Cannot compact storage journal: " + journalFile);
+            }
+            journalRecords = records.size();
+        } finally {
+            journal = new RandomAccessFile(journalFile, "rw");
+            journal.getChannel().position(journal.length());
+        }
+    }
+
+    private void applyRecord(byte[] record, Map<Long, Properties> result) throws IOException {
+        long bundleId = readRecord(record, result);
+        if (result.containsKey(bundleId)) {
+            liveRecords.put(bundleId, record);
+        } else {
+            liveRecords.remove(bundleId);
+        }
+    }
+
+    private static long readRecord(byte[] record, Map<Long, Properties> result) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(record));
+        byte type = input.readByte();
+        long bundleId = input.readLong();
+        if (type == RECORD_PUT) {
+            Properties props = new Properties();
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                props.setProperty(input.readUTF(), input.readUTF());
+            }
+            result.put(bundleId, props);
+        } else {
+            result.remove(bundleId);
+        }
+        return bundleId;
+    }
+
+    private static ByteBuffer toBuffer(List<byte[]> records) {
+        int size = 0;
+        for (byte[] record : records) {
+            size += RECORD_HEADER_SIZE + record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] record : records) {
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            buffer.putInt(record.length);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(record);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.flip();
+        writeFully(channel, header);
+        channel.force(true);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -21,6 +21,7 @@
  */
 package org.jboss.osgi.framework.internal;
 
+import static org.jboss.osgi.framework.Constants.PROPERTY_STORAGE_JOURNAL;
 import static org.jboss.osgi.framework.FrameworkLogger.LOGGER;
 import static org.jboss.osgi.framework.FrameworkMessages.MESSAGES;
 
@@ -30,6 +31,7 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -38,6 +40,7 @@ import org.jboss.osgi.framework.spi.BundleManager;
 import org.jboss.osgi.framework.spi.StartLevelManager;
 import org.jboss.osgi.framework.spi.StorageManager;
 import org.jboss.osgi.framework.spi.StorageState;
+import org.jboss.osgi.vfs.AbstractVFS;
 import org.jboss.osgi.vfs.VFSUtils;
 import org.jboss.osgi.vfs.VirtualFile;
 import org.osgi.framework.Constants;
@@ -45,6 +48,10 @@ import org.osgi.framework.Constants;
 /**
  * A simple implementation of a BundleStorage
  *
+ * By default the persistent properties of every bundle are kept in a properties file in the bundle's storage dir.
+ * If {@link org.jboss.osgi.framework.Constants#PROPERTY_STORAGE_JOURNAL} is set, they are kept in a single
+ * {@link StorageJournal} in the storage area instead.
+ *
  * @author thomas.diesler@jboss.com
  * @since 18-Aug-2009
  *
@@ -52,12 +59,13 @@ import org.osgi.framework.Constants;
  */
 public final class StorageManagerImpl implements StorageManager {
 
-    private final BundleManagerPlugin bundleManager;
+    private final BundleManager bundleManager;
     private final Map<String, StorageState> storageStates = new ConcurrentHashMap<String, StorageState>();
     private final File storageArea;
+    private StorageJournal journal;
 
     public StorageManagerImpl(BundleManager bundleManager) {
-        this.bundleManager = (BundleManagerPlugin) bundleManager;
+        this.bundleManager = bundleManager;
         String dirName = (String) bundleManager.getProperty(Constants.FRAMEWORK_STORAGE);
         if (dirName == null) {
             try {
@@ -80,6 +88,11 @@ public final class StorageManagerImpl implements StorageManager {
             deleteRecursive(storage);
         }
 
+        if (Boolean.parseBoolean(String.valueOf(props.get(PROPERTY_STORAGE_JOURNAL)))) {
+            initializeJournal();
+            return;
+        }
+
         // Initialize storage states
         FilenameFilter filter = new FilenameFilter() {
             @Override
@@ -100,6 +113,58 @@ public final class StorageManagerImpl implements StorageManager {
         }
     }
 
+    /**
+     * Close the storage journal.
+     */
+    public synchronized void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private synchronized void initializeJournal() throws IOException {
+        journal = new StorageJournal(new File(getStorageArea(), StorageJournal.JOURNAL_FILE_NAME));
+        boolean migrate = !journal.exists();
+        Map<Long, Properties> recovered = journal.open();
+
+        // Import the properties files of a storage area that was written without journal
+        if (migrate) {
+            File[] storageDirs = getStorageArea().listFiles(new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String name) {
+                    return name.startsWith(StorageState.BUNDLE_DIRECTORY_PREFIX) && new File(dir, name).isDirectory();
+                }
+            });
+            if (storageDirs != null) {
+                for (File storageDir : storageDirs) {
+                    Properties props = StorageState.loadProperties(storageDir);
+                    String bundleId = props.getProperty(StorageState.PROPERTY_BUNDLE_ID);
+                    if (bundleId != null) {
+                        journal.put(Long.parseLong(bundleId), props);
+                        recovered.put(Long.parseLong(bundleId), props);
+                    }
+                }
+            }
+        }
+
+        for (Entry<Long, Properties> entry : recovered.entrySet()) {
+            long bundleId = entry.getKey();
+            if (bundleId != 0) {
+                Properties props = entry.getValue();
+                File storageDir = getStorageDir(bundleId);
+                VirtualFile rootFile = null;
+                String vfsLocation = props.getProperty(StorageState.PROPERTY_BUNDLE_FILE);
+                if (vfsLocation != null) {
+                    File revFile = new File(storageDir + "/" + vfsLocation);
+                    rootFile = AbstractVFS.toVirtualFile(revFile.toURI());
+                }
+                StorageState storageState = new JournalStorageState(journal, storageDir, rootFile, props);
+                LOGGER.debugf("Restored storage state: %s", storageState);
+                storageStates.put(storageState.getLocation(), storageState);
+            }
+        }
+    }
+
     @Override
     public synchronized StorageState createStorageState(long bundleId, String location, Integer initialStartlevel, VirtualFile rootFile) throws IOException {
         assert location != null : "Null location";
@@ -108,13 +173,15 @@ public final class StorageManagerImpl implements StorageManager {
         if (initialStartlevel != null) {
             startlevel = initialStartlevel.intValue();
         } else {
-            StartLevelManager startLevelManager = bundleManager.getFrameworkState().getStartLevelManager();
+            StartLevelManager startLevelManager = ((BundleManagerPlugin) bundleManager).getFrameworkState().getStartLevelManager();
             startlevel = startLevelManager.getInitialBundleStartLevel();
         }
 
         // Make the bundle's storage dir
         File bundleDir = getStorageDir(bundleId);
-        Properties props = StorageState.loadProperties(bundleDir);
+        Properties props = journal != null ? journal.getProperties(bundleId) : StorageState.loadProperties(bundleDir);
+        if (props == null)
+            props = new Properties();
         String previousRev = props.getProperty(StorageState.PROPERTY_BUNDLE_REV);
         int revision = (bundleId != 0 && previousRev != null ? Integer.parseInt(previousRev) + 1 : 0);
 
@@ -125,7 +192,12 @@ public final class StorageManagerImpl implements StorageManager {
         props.put(StorageState.PROPERTY_START_LEVEL, new Integer(startlevel).toString());
         props.put(StorageState.PROPERTY_LAST_MODIFIED, new Long(System.currentTimeMillis()).toString());
 
-        StorageState storageState = StorageState.createStorageState(bundleDir, rootFile, props);
+        StorageState storageState;
+        if (journal != null) {
+            storageState = JournalStorageState.createStorageState(journal, bundleDir, rootFile, props);
+        } else {
+            storageState = StorageState.createStorageState(bundleDir, rootFile, props);
+        }
         if (storageState.getBundleId() != 0) {
             storageStates.put(storageState.getLocation(), storageState);
         }
@@ -138,6 +210,13 @@ public final class StorageManagerImpl implements StorageManager {
         VFSUtils.safeClose(storageState.getRootFile());
         deleteRecursive(storageState.getStorageDir());
         storageStates.remove(storageState.getLocation());
+        if (journal != null) {
+            try {
+                journal.delete(storageState.getBundleId());
+            } catch (IOException ex) {
+                LOGGER.errorCannotWritePersistentStorage(ex, journal.getJournalFile());
+            }
+        }
     }
 
     @Override
@@ -199,4 +278,34 @@ public final class StorageManagerImpl implements StorageManager {
         }
         file.delete();
     }
-}
\ No newline at end of file
+
+    /**
+     * A storage state that records its properties in the journal.
+     */
+    static final class JournalStorageState extends StorageState {
+
+        private final StorageJournal journal;
+
+        JournalStorageState(StorageJournal journal, File storageDir, VirtualFile rootFile, Properties props) {
+            super(storageDir, rootFile, props);
+            this.journal = journal;
+        }
+
+        static StorageState createStorageState(StorageJournal journal, File storageDir, VirtualFile rootFile, Properties props) throws IOException {
+            JournalStorageState storageState = new JournalStorageState(journal, storageDir, rootFile, props);
+            LOGGER.debugf("Created storage state: %s", storageState);
+            copyRootFile(storageDir, rootFile, props);
+            storageState.writeProperties();
+            return storageState;
+        }
+
+        @Override
+        protected void writeProperties() {
+            try {
+                journal.put(getBundleId(), getProperties());
+            } catch (IOException ex) {
+                LOGGER.errorCannotWritePersistentStorage(ex, journal.getJournalFile());
+            }
+        }
+    }
+}
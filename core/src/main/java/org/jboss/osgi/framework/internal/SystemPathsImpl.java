@@ -36,22 +36,26 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
-import org.jboss.modules.filter.MultiplePathFilterBuilder;
 import org.jboss.modules.filter.PathFilter;
 import org.jboss.modules.filter.PathFilters;
 import org.jboss.osgi.framework.spi.FrameworkBuilder;
+import org.jboss.osgi.framework.spi.StorageManager;
 import org.jboss.osgi.framework.spi.SystemPaths;
 import org.jboss.osgi.metadata.spi.ElementParser;
 
 /**
  * A plugin manages the Framework's system packages.
  *
+ * The system, framework and boot delegation filters are built once as {@link PackagePathFilter}s
+ * and shared by all modules.
+ *
  * @author thomas.diesler@jboss.com
  * @since 18-Aug-2009
  */
 public final class SystemPathsImpl implements SystemPaths {
 
     private final FrameworkBuilder frameworkBuilder;
+    private final StorageManager storageManager;
     private Set<String> systemPackages = new LinkedHashSet<String>();
     private Set<String> bootDelegationPackages = new LinkedHashSet<String>();
     private Set<String> frameworkPackages = new LinkedHashSet<String>();
@@ -64,7 +68,12 @@ public final class SystemPathsImpl implements SystemPaths {
     private PathFilter cachedSystemFilter;
 
     public SystemPathsImpl(FrameworkBuilder frameworkBuilder) {
+        this(frameworkBuilder, null);
+    }
+
+    public SystemPathsImpl(FrameworkBuilder frameworkBuilder, StorageManager storageManager) {
         this.frameworkBuilder = frameworkBuilder;
+        this.storageManager = storageManager;
 
         // Initialize the framework packages
         frameworkPackages.addAll(Arrays.asList(SystemPaths.DEFAULT_FRAMEWORK_PACKAGES));
@@ -106,22 +115,25 @@ public final class SystemPathsImpl implements SystemPaths {
     public PathFilter getBootDelegationFilter() {
         assertInitialized();
         if (cachedBootDelegationFilter == null) {
-            MultiplePathFilterBuilder builder = PathFilters.multiplePathFilterBuilder(false);
+            PathFilter wildcardFilter = null;
+            Set<String> exactPaths = new LinkedHashSet<String>();
+            Set<String> parentPaths = new LinkedHashSet<String>();
             for (String packageName : getBootDelegationPackages()) {
                 if (packageName.equals("*")) {
                     if (doFrameworkPackageDelegation()) {
-                        builder.addFilter(PathFilters.acceptAll(), true);
+                        wildcardFilter = PathFilters.acceptAll();
                     } else {
-                        builder.addFilter(PathFilters.all(PathFilters.acceptAll(), PathFilters.not(getFrameworkFilter())), true);
+                        wildcardFilter = PathFilters.not(getFrameworkFilter());
                     }
                 } else if (packageName.endsWith(".*")) {
                     packageName = packageName.substring(0, packageName.length() - 2);
-                    builder.addFilter(PathFilters.isChildOf(packageName.replace('.', '/')), true);
+                    parentPaths.add(packageName.replace('.', '/'));
                 } else {
-                    builder.addFilter(PathFilters.is(packageName.replace('.', '/')), true);
+                    exactPaths.add(packageName.replace('.', '/'));
                 }
             }
-            cachedBootDelegationFilter = builder.create();
+            PathFilter packageFilter = new PackagePathFilter(exactPaths, parentPaths);
+            cachedBootDelegationFilter = wildcardFilter != null ? PathFilters.any(wildcardFilter, packageFilter) : packageFilter;
             LOGGER.tracef("BootDelegationFilter: %s", cachedBootDelegationFilter);
         }
         return cachedBootDelegationFilter;
@@ -141,7 +153,7 @@ public final class SystemPathsImpl implements SystemPaths {
             }
             if (hasBootDelegationWildcards == true) {
                 PathFilter bootDelegationFilter = getBootDelegationFilter();
-                for (String path : JDKPaths.JDK) {
+                for (String path : JDKPaths.getJDKPaths(storageManager != null ? storageManager.getStorageArea() : null)) {
                     if (bootDelegationFilter.accept(path)) {
                         result.add(path);
                     }
@@ -167,18 +179,7 @@ public final class SystemPathsImpl implements SystemPaths {
     public PathFilter getSystemFilter() {
         assertInitialized();
         if (cachedSystemFilter == null) {
-            MultiplePathFilterBuilder builder = PathFilters.multiplePathFilterBuilder(false);
-            Set<String> paths = new LinkedHashSet<String>();
-            for (String packageSpec : getSystemPackages()) {
-                int index = packageSpec.indexOf(';');
-                if (index > 0) {
-                    packageSpec = packageSpec.substring(0, index);
-                }
-                String path = packageSpec.replace('.', '/');
-                paths.add(path);
-            }
-            builder.addFilter(PathFilters.in(paths), true);
-            cachedSystemFilter = builder.create();
+            cachedSystemFilter = new PackagePathFilter(getSystemPaths(), Collections.<String> emptySet());
             LOGGER.debugf("SystemFilter: %s", cachedSystemFilter);
         }
         return cachedSystemFilter;
@@ -226,7 +227,7 @@ public final class SystemPathsImpl implements SystemPaths {
     private PathFilter getFrameworkFilter() {
         assertInitialized();
         if (cachedFrameworkFilter == null) {
-            cachedFrameworkFilter = PathFilters.in(getFrameworkPaths());
+            cachedFrameworkFilter = new PackagePathFilter(getFrameworkPaths(), Collections.<String> emptySet());
             LOGGER.debugf("FrameworkFilter: %s", cachedFrameworkFilter);
         }
         return cachedFrameworkFilter;
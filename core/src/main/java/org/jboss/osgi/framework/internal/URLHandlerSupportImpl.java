@@ -41,6 +41,7 @@ import java.util.Hashtable;
 import java.util.List;
 
 import org.jboss.osgi.framework.spi.URLHandlerSupport;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
@@ -206,7 +207,7 @@ final class URLHandlerSupportImpl implements URLHandlerSupport {
         if (refList == null || refList.isEmpty())
             return null;
 
-        return new URLStreamHandlerProxy(protocol, refList);
+        return new URLStreamHandlerProxy(protocol, streamHandlerDelegate);
     }
 
     /**
@@ -250,14 +251,15 @@ final class URLHandlerSupportImpl implements URLHandlerSupport {
 
     private static final class URLStreamHandlerProxy extends URLStreamHandler implements URLStreamHandlerSetter {
 
-        // This list is maintained in the ServiceTracker that tracks the URLStreamHandlerService
-        // This proxy should always use to top element (if it contains any elements).
-        private final List<ServiceReference<URLStreamHandlerService>> serviceReferences;
+        // The delegate maintains the references in the ServiceTracker that tracks the URLStreamHandlerService
+        // This proxy always uses the top ranked reference and holds on to its service until the references change
+        private final OSGiStreamHandlerFactoryDelegate delegate;
         private final String protocol;
+        private volatile HandlerService cachedHandler;
 
-        public URLStreamHandlerProxy(String protocol, List<ServiceReference<URLStreamHandlerService>> refList) {
+        public URLStreamHandlerProxy(String protocol, OSGiStreamHandlerFactoryDelegate delegate) {
             this.protocol = protocol;
-            this.serviceReferences = refList;
+            this.delegate = delegate;
         }
 
         @Override
@@ -290,9 +292,14 @@ final class URLHandlerSupportImpl implements URLHandlerSupport {
 
         @Override
         protected URLConnection openConnection(URL u, Proxy p) throws IOException {
-            URLStreamHandlerService handler = getHandlerService();
+            HandlerService handlerService = getCachedHandler();
+            URLStreamHandlerService handler = handlerService.service;
             try {
-                Method method = handler.getClass().getDeclaredMethod("openConnection", URL.class, Proxy.class);
+                Method method = handlerService.openConnectionMethod;
+                if (method == null) {
+                    method = handler.getClass().getDeclaredMethod("openConnection", URL.class, Proxy.class);
+                    handlerService.openConnectionMethod = method;
+                }
                 return (URLConnection) method.invoke(handler, u, p);
             } catch (Throwable th) {
                 if (th instanceof InvocationTargetException)
@@ -332,11 +339,61 @@ final class URLHandlerSupportImpl implements URLHandlerSupport {
         }
 
         private URLStreamHandlerService getHandlerService() {
-            if (serviceReferences.isEmpty())
+            return getCachedHandler().service;
+        }
+
+        private HandlerService getCachedHandler() {
+            HandlerService handler = cachedHandler;
+            if (handler != null && handler.modificationCount == delegate.getModificationCount())
+                return handler;
+
+            synchronized (this) {
+                // Read the count before the reference, a concurrent change is picked up by the next call
+                int modificationCount = delegate.getModificationCount();
+                handler = cachedHandler;
+                if (handler != null && handler.modificationCount == modificationCount)
+                    return handler;
+
+                ServiceReference<URLStreamHandlerService> ref = delegate.getStreamHandler(protocol);
+                if (handler != null && handler.reference.equals(ref)) {
+                    handler = new HandlerService(modificationCount, ref, handler.service, handler.openConnectionMethod);
+                } else {
+                    URLStreamHandlerService service = null;
+                    Bundle bundle = ref != null ? ref.getBundle() : null;
+                    if (bundle != null) {
+                        service = bundle.getBundleContext().getService(ref);
+                    }
+                    if (handler != null) {
+                        Bundle previous = handler.reference.getBundle();
+                        if (previous != null) {
+                            previous.getBundleContext().ungetService(handler.reference);
+                        }
+                    }
+                    handler = service != null ? new HandlerService(modificationCount, ref, service, null) : null;
+                }
+                cachedHandler = handler;
+            }
+            if (handler == null)
                 throw MESSAGES.illegalStateNoStreamHandlersForProtocol(protocol);
-            ServiceReference<URLStreamHandlerService> ref = serviceReferences.get(0);
-            URLStreamHandlerService service = ref.getBundle().getBundleContext().getService(ref);
-            return service;
+
+            return handler;
+        }
+    }
+
+    /**
+     * The resolved service of a stream handler reference.
+     */
+    private static final class HandlerService {
+        private final int modificationCount;
+        private final ServiceReference<URLStreamHandlerService> reference;
+        private final URLStreamHandlerService service;
+        private volatile Method openConnectionMethod;
+
+        HandlerService(int modificationCount, ServiceReference<URLStreamHandlerService> reference, URLStreamHandlerService service, Method openConnectionMethod) {
+            this.modificationCount = modificationCount;
+            this.reference = reference;
+            this.service = service;
+            this.openConnectionMethod = openConnectionMethod;
         }
     }
 }
@@ -29,12 +29,14 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.jboss.osgi.framework.internal.ServiceHookCache.HookEntry;
+import org.jboss.osgi.framework.spi.FrameworkEvents;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
@@ -51,7 +53,7 @@ import org.osgi.framework.wiring.BundleWiring;
 class WeavingContext {
 
     private static final ThreadLocal<WeavingContext> contextAssociation = new ThreadLocal<WeavingContext>();
-    private static final Set<ServiceReference<WeavingHook>> blacklist = new HashSet<ServiceReference<WeavingHook>>();
+    private static final Set<ServiceReference<WeavingHook>> blacklist = Collections.newSetFromMap(new ConcurrentHashMap<ServiceReference<WeavingHook>, Boolean>());
 
     private final UserBundleState hostState;
     private final List<HookRegistration> weavingHooks;
@@ -62,25 +64,58 @@ class WeavingContext {
         return contextAssociation.get();
     }
 
+    /**
+     * Create a weaving context and associate it with the current thread.
+     *
+     * @return null if there are no registered {@link WeavingHook}s
+     */
     static WeavingContext create(UserBundleState hostState) {
-        WeavingContext context = new WeavingContext(hostState);
+        BundleManagerPlugin bundleManager = hostState.getBundleManager();
+        BundleContext syscontext = bundleManager.getSystemContext();
+
+        List<HookRegistration> hooks;
+        FrameworkEvents frameworkEvents = hostState.getFrameworkState().getFrameworkEvents();
+        if (frameworkEvents instanceof FrameworkEventsImpl) {
+            List<HookEntry<WeavingHook>> entries = ((FrameworkEventsImpl) frameworkEvents).getWeavingHooks().getEntries();
+            if (entries.isEmpty())
+                return null;
+            hooks = getWeavingHooks(syscontext, entries);
+        } else {
+            hooks = getWeavingHooks(syscontext);
+        }
+        if (hooks.isEmpty())
+            return null;
+
+        WeavingContext context = new WeavingContext(hostState, hooks);
         contextAssociation.set(context);
         return context;
     }
 
-    private WeavingContext(UserBundleState hostState) {
+    private WeavingContext(UserBundleState hostState, List<HookRegistration> weavingHooks) {
         this.hostState = hostState;
+        this.weavingHooks = weavingHooks;
+    }
 
-        BundleManagerPlugin bundleManager = hostState.getBundleManager();
-        BundleContext syscontext = bundleManager.getSystemContext();
-
-        // Cleanup the blacklist
-        for (Iterator<ServiceReference<WeavingHook>> iterator = blacklist.iterator(); iterator.hasNext();) {
-            ServiceReference<WeavingHook> sref = iterator.next();
-            if (syscontext.getService(sref) == null) {
-                iterator.remove();
+    // Get the hook instances from the cached snapshot, highest ranking first
+    private static List<HookRegistration> getWeavingHooks(BundleContext syscontext, List<HookEntry<WeavingHook>> entries) {
+        cleanupBlacklist();
+        List<HookRegistration> result = new ArrayList<HookRegistration>(entries.size());
+        for (HookEntry<WeavingHook> entry : entries) {
+            @SuppressWarnings("unchecked")
+            ServiceReference<WeavingHook> sref = (ServiceReference<WeavingHook>) entry.getServiceState().getReference();
+            if (blacklist.contains(sref) == false) {
+                WeavingHook hook = entry.getHook(syscontext);
+                if (hook != null) {
+                    result.add(new HookRegistration(sref, hook));
+                }
             }
         }
+        return result;
+    }
+
+    // Get the hook instances from the service registry
+    private static List<HookRegistration> getWeavingHooks(BundleContext syscontext) {
+        cleanupBlacklist();
 
         // Find the registered {@link WeavingHook}
         Collection<ServiceReference<WeavingHook>> srefs = null;
@@ -94,12 +129,24 @@ class WeavingContext {
         List<ServiceReference<WeavingHook>> sorted = new ArrayList<ServiceReference<WeavingHook>>(srefs);
         Collections.reverse(sorted);
 
-        // Get the hook instances and associate them with the current thread
-        weavingHooks = new ArrayList<HookRegistration>();
+        List<HookRegistration> result = new ArrayList<HookRegistration>();
         for (ServiceReference<WeavingHook> sref : sorted) {
             if (blacklist.contains(sref) == false) {
                 WeavingHook hook = syscontext.getService(sref);
-                weavingHooks.add(new HookRegistration(sref, hook));
+                result.add(new HookRegistration(sref, hook));
+            }
+        }
+        return result;
+    }
+
+    // Remove the blacklisted hooks that are no longer registered
+    private static void cleanupBlacklist() {
+        if (blacklist.isEmpty() == false) {
+            for (Iterator<ServiceReference<WeavingHook>> iterator = blacklist.iterator(); iterator.hasNext();) {
+                ServiceReference<WeavingHook> sref = iterator.next();
+                if (sref.getBundle() == null) {
+                    iterator.remove();
+                }
             }
         }
     }
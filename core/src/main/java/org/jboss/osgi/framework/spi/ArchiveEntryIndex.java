@@ -0,0 +1,286 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.spi;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * An index of the entries of a jar file, built once from the zip central directory.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+final class ArchiveEntryIndex {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_HEADER_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private final File file;
+    private final Map<String, Entry> entries;
+    private final Set<String> directories;
+    private FileChannel channel;
+    private boolean closed;
+
+    private ArchiveEntryIndex(File file, Map<String, Entry> entries, Set<String> directories) {
+        this.file = file;
+        this.entries = entries;
+        this.directories = directories;
+    }
+
+    /**
+     * Create the index for the given jar file.
+     *
+     * @return The index or null if the file is not a plain jar file that can be indexed
+     */
+    static ArchiveEntryIndex create(File file) {
+        if (file == null || !file.isFile())
+            return null;
+        try {
+            return readCentralDirectory(file);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    Entry getEntry(String path) {
+        return entries.get(path);
+    }
+
+    Map<String, Entry> getEntries() {
+        return entries;
+    }
+
+    boolean hasDirectory(String path) {
+        return directories.contains(path);
+    }
+
+    /**
+     * Read the uncompressed bytes of the given entry.
+     */
+    byte[] readEntry(Entry entry) throws IOException {
+        try {
+            return readEntry(getChannel(), entry);
+        } catch (ClosedByInterruptException ex) {
+            throw ex;
+        } catch (ClosedChannelException ex) {
+            // Another reader was interrupted, which closes the shared channel
+            return readEntry(getChannel(), entry);
+        }
+    }
+
+    /**
+     * Close the file channel. Entries cannot be read after the index is closed.
+     */
+    synchronized void close() {
+        closed = true;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                // ignore
+            }
+            channel = null;
+        }
+    }
+
+    private synchronized FileChannel getChannel() throws IOException {
+        if (closed)
+            throw new ClosedChannelException();
+        if (channel == null || !channel.isOpen()) {
+            channel = new RandomAccessFile(file, "r").getChannel();
+        }
+        return channel;
+    }
+
+    private static byte[] readEntry(FileChannel channel, Entry entry) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, entry.localHeaderOffset);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE)
+            throw new ZipException("Invalid local header for: " + entry.name);
+
+        long dataOffset = entry.localHeaderOffset + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+        ByteBuffer data = ByteBuffer.allocate(entry.compressedSize);
+        readFully(channel, data, dataOffset);
+        if (entry.method == 0)
+            return data.array();
+
+        byte[] bytes = new byte[entry.size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data.array());
+            int count = 0;
+            while (count < bytes.length && !inflater.finished()) {
+                int read = inflater.inflate(bytes, count, bytes.length - count);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                count += read;
+            }
+            if (count != bytes.length)
+                throw new ZipException("Invalid entry size for: " + entry.name);
+        } catch (DataFormatException ex) {
+            throw new ZipException("Invalid entry data for: " + entry.name);
+        } finally {
+            inflater.end();
+        }
+        return bytes;
+    }
+
+    private static ArchiveEntryIndex readCentralDirectory(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long fileSize = channel.size();
+            if (fileSize < END_HEADER_SIZE)
+                return null;
+
+            // Find the end of central directory record, which may be followed by a comment
+            int tailSize = (int) Math.min(fileSize, END_HEADER_SIZE + MAX_COMMENT_SIZE);
+            ByteBuffer tail = ByteBuffer.allocate(tailSize).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, tail, fileSize - tailSize);
+            int endPos = -1;
+            for (int i = tailSize - END_HEADER_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) == END_HEADER_SIGNATURE) {
+                    endPos = i;
+                    break;
+                }
+            }
+            if (endPos < 0)
+                return null;
+
+            int entryCount = tail.getShort(endPos + 10) & 0xFFFF;
+            long directorySize = tail.getInt(endPos + 12) & 0xFFFFFFFFL;
+            long directoryOffset = tail.getInt(endPos + 16) & 0xFFFFFFFFL;
+            if (entryCount == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL)
+                return null;
+            if (directoryOffset + directorySize > fileSize)
+                return null;
+
+            ByteBuffer directory = ByteBuffer.allocate((int) directorySize).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, directory, directoryOffset);
+
+            Map<String, Entry> entries = new HashMap<String, Entry>(entryCount * 2);
+            Set<String> directories = new HashSet<String>();
+            int pos = 0;
+            for (int i = 0; i < entryCount; i++) {
+                if (pos + CENTRAL_HEADER_SIZE > directorySize || directory.getInt(pos) != CENTRAL_HEADER_SIGNATURE)
+                    return null;
+                int method = directory.getShort(pos + 10) & 0xFFFF;
+                long compressedSize = directory.getInt(pos + 20) & 0xFFFFFFFFL;
+                long size = directory.getInt(pos + 24) & 0xFFFFFFFFL;
+                int nameLength = directory.getShort(pos + 28) & 0xFFFF;
+                int extraLength = directory.getShort(pos + 30) & 0xFFFF;
+                int commentLength = directory.getShort(pos + 32) & 0xFFFF;
+                long localHeaderOffset = directory.getInt(pos + 42) & 0xFFFFFFFFL;
+                if (compressedSize >= Integer.MAX_VALUE || size >= Integer.MAX_VALUE || localHeaderOffset == 0xFFFFFFFFL)
+                    return null;
+                if (method != 0 && method != 8)
+                    return null;
+
+                byte[] nameBytes = new byte[nameLength];
+                directory.position(pos + CENTRAL_HEADER_SIZE);
+                directory.get(nameBytes);
+                String name = new String(nameBytes, "UTF-8");
+                pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+
+                if (isSignatureFile(name))
+                    return null;
+                if (name.endsWith("/")) {
+                    addDirectories(directories, name.substring(0, name.length() - 1));
+                } else {
+                    entries.put(name, new Entry(name, method, (int) compressedSize, (int) size, localHeaderOffset));
+                    int index = name.lastIndexOf('/');
+                    if (index > 0) {
+                        addDirectories(directories, name.substring(0, index));
+                    }
+                }
+            }
+            return new ArchiveEntryIndex(file, Collections.unmodifiableMap(entries), Collections.unmodifiableSet(directories));
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void addDirectories(Set<String> directories, String path) {
+        while (path.length() > 0 && directories.add(path)) {
+            int index = path.lastIndexOf('/');
+            path = index > 0 ? path.substring(0, index) : "";
+        }
+    }
+
+    private static boolean isSignatureFile(String name) {
+        if (!name.startsWith("META-INF/") || name.indexOf('/', 9) > 0)
+            return false;
+        String upper = name.toUpperCase();
+        return upper.endsWith(".SF") || upper.endsWith(".RSA") || upper.endsWith(".DSA") || upper.endsWith(".EC");
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+                throw new ZipException("Unexpected end of file: " + position);
+        }
+    }
+
+    /**
+     * An entry in the central directory.
+     */
+    static final class Entry {
+        final String name;
+        final int method;
+        final int compressedSize;
+        final int size;
+        final long localHeaderOffset;
+
+        Entry(String name, int method, int compressedSize, int size, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+}
@@ -78,7 +78,7 @@ public abstract class ExecutorServicePlugin<T> extends AbstractIntegrationServic
         return executorService;
     }
 
-    private ExecutorService createExecutorService(final String threadName) {
+    protected ExecutorService createExecutorService(final String threadName) {
         ExecutorService service = Executors.newSingleThreadExecutor(new ThreadFactory() {
             @Override
             public Thread newThread(Runnable run) {
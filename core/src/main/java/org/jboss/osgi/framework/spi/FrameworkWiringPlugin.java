@@ -21,6 +21,8 @@
  */
 package org.jboss.osgi.framework.spi;
 
+import java.util.concurrent.ExecutorService;
+
 import org.jboss.msc.service.ServiceBuilder;
 import org.jboss.msc.service.ServiceController.Mode;
 import org.jboss.msc.service.StartContext;
@@ -45,6 +47,7 @@ public class FrameworkWiringPlugin extends ExecutorServicePlugin<FrameworkWiring
     private final InjectedValue<LockManager> injectedLockManager = new InjectedValue<LockManager>();
     private final InjectedValue<XEnvironment> injectedEnvironment = new InjectedValue<XEnvironment>();
     private final InjectedValue<XResolver> injectedResolver = new InjectedValue<XResolver>();
+    private final InjectedValue<ExecutorService> injectedLifecycleExecutor = new InjectedValue<ExecutorService>();
 
     public FrameworkWiringPlugin() {
         super(IntegrationServices.FRAMEWORK_WIRING_PLUGIN, "Framework Refresh Thread");
@@ -58,6 +61,7 @@ public class FrameworkWiringPlugin extends ExecutorServicePlugin<FrameworkWiring
         builder.addDependency(IntegrationServices.FRAMEWORK_EVENTS_PLUGIN, FrameworkEvents.class, injectedFrameworkEvents);
         builder.addDependency(IntegrationServices.LOCK_MANAGER_PLUGIN, LockManager.class, injectedLockManager);
         builder.addDependency(Services.RESOLVER, XResolver.class, injectedResolver);
+        builder.addDependency(IntegrationServices.LIFECYCLE_EXECUTOR_PLUGIN, ExecutorService.class, injectedLifecycleExecutor);
         builder.setInitialMode(Mode.ON_DEMAND);
     }
 
@@ -68,6 +72,7 @@ public class FrameworkWiringPlugin extends ExecutorServicePlugin<FrameworkWiring
         XEnvironment env = injectedEnvironment.getValue();
         XResolver resolver = injectedResolver.getValue();
         LockManager lockManager = injectedLockManager.getValue();
-        return new FrameworkWiringImpl(bundleManager, events, env, resolver, lockManager, getExecutorService());
+        ExecutorService lifecycleExecutor = injectedLifecycleExecutor.getValue();
+        return new FrameworkWiringImpl(bundleManager, events, env, resolver, lockManager, getExecutorService(), lifecycleExecutor);
     }
 }
@@ -96,6 +96,8 @@ public interface IntegrationServices  {
     ServiceName FRAMEWORK_START_LEVEL_PLUGIN = JBOSGI_BASE_NAME.append("FrameworkStartLevel");
     /** The {@link FrameworkWiringPlugin} service name */
     ServiceName FRAMEWORK_WIRING_PLUGIN = JBOSGI_BASE_NAME.append("FrameworkWiring");
+    /** The service name for the executor that runs bundle lifecycle tasks concurrently */
+    ServiceName LIFECYCLE_EXECUTOR_PLUGIN = JBOSGI_BASE_NAME.append("LifecycleExecutor");
 	/** The {@link LifecycleInterceptorPlugin} service name */
     ServiceName LIFECYCLE_INTERCEPTOR_PLUGIN = JBOSGI_BASE_NAME.append("LifecycleInterceptor");
 	/** The {@link LockManager} service name */
@@ -21,11 +21,14 @@
  */
 package org.jboss.osgi.framework.spi;
 
+import java.util.Arrays;
+
 import org.jboss.msc.service.ServiceBuilder;
 import org.jboss.msc.service.ServiceController.Mode;
 import org.jboss.msc.service.StartContext;
 import org.jboss.msc.service.StartException;
 import org.jboss.msc.value.InjectedValue;
+import org.jboss.osgi.framework.Constants;
 import org.jboss.osgi.framework.Services;
 import org.jboss.osgi.framework.internal.ServiceManagerImpl;
 
@@ -56,6 +59,11 @@ public class ServiceManagerPlugin extends AbstractIntegrationService<ServiceMana
     @Override
     protected ServiceManager createServiceValue(StartContext startContext) throws StartException {
         FrameworkEvents events = injectedFrameworkEvents.getValue();
-        return new ServiceManagerImpl(events);
+        BundleManager bundleManager = injectedBundleManager.getValue();
+        String indexed = (String) bundleManager.getProperty(Constants.PROPERTY_SERVICE_INDEXED_PROPERTIES);
+        if (indexed == null)
+            return new ServiceManagerImpl(events);
+
+        return new ServiceManagerImpl(events, Arrays.asList(indexed.split(",")));
     }
 }
\ No newline at end of file
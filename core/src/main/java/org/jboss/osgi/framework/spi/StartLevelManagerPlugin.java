@@ -21,6 +21,7 @@
  */
 package org.jboss.osgi.framework.spi;
 
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.jboss.msc.service.ServiceBuilder;
@@ -39,6 +40,7 @@ import org.jboss.osgi.framework.internal.StartLevelManagerImpl;
 public class StartLevelManagerPlugin extends ExecutorServicePlugin<StartLevelManager> {
 
     private final InjectedValue<FrameworkEvents> injectedFrameworkEvents = new InjectedValue<FrameworkEvents>();
+    private final InjectedValue<ExecutorService> injectedLifecycleExecutor = new InjectedValue<ExecutorService>();
 
     public StartLevelManagerPlugin() {
         super(IntegrationServices.START_LEVEL_PLUGIN, "StartLevel Thread");
@@ -48,12 +50,14 @@ public class StartLevelManagerPlugin extends ExecutorServicePlugin<StartLevelMan
     protected void addServiceDependencies(ServiceBuilder<StartLevelManager> builder) {
         super.addServiceDependencies(builder);
         builder.addDependency(IntegrationServices.FRAMEWORK_EVENTS_PLUGIN, FrameworkEvents.class, injectedFrameworkEvents);
+        builder.addDependency(IntegrationServices.LIFECYCLE_EXECUTOR_PLUGIN, ExecutorService.class, injectedLifecycleExecutor);
         builder.setInitialMode(Mode.ON_DEMAND);
     }
 
     @Override
     protected StartLevelManager createServiceValue(StartContext startContext) throws StartException {
         FrameworkEvents events = injectedFrameworkEvents.getValue();
-        return new StartLevelManagerImpl(getBundleManager(), events, getExecutorService(), new AtomicBoolean(false));
+        ExecutorService lifecycleExecutor = injectedLifecycleExecutor.getValue();
+        return new StartLevelManagerImpl(getBundleManager(), events, getExecutorService(), lifecycleExecutor, new AtomicBoolean(false));
     }
 }
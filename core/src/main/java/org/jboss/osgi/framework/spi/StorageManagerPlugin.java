@@ -27,6 +27,7 @@ import org.jboss.msc.service.ServiceBuilder;
 import org.jboss.msc.service.ServiceController.Mode;
 import org.jboss.msc.service.StartContext;
 import org.jboss.msc.service.StartException;
+import org.jboss.msc.service.StopContext;
 import org.jboss.msc.value.InjectedValue;
 import org.jboss.osgi.framework.Services;
 import org.jboss.osgi.framework.internal.StorageManagerImpl;
@@ -65,6 +66,15 @@ public class StorageManagerPlugin extends AbstractIntegrationService<StorageMana
         }
     }
 
+    @Override
+    public void stop(StopContext context) {
+        // Close the storage journal of the default implementation
+        StorageManager storageManager = getValue();
+        if (storageManager instanceof StorageManagerImpl) {
+            ((StorageManagerImpl) storageManager).close();
+        }
+    }
+
     @Override
     protected StorageManager createServiceValue(StartContext startContext) throws StartException {
         BundleManager bundleManager = injectedBundleManager.getValue();
@@ -89,6 +89,16 @@ public class StorageState {
     public static StorageState createStorageState(File storageDir, VirtualFile rootFile, Properties props) throws IOException {
         StorageState storageState = new StorageState(storageDir, rootFile, props);
         LOGGER.debugf("Created storage state: %s", storageState);
+        copyRootFile(storageDir, rootFile, props);
+        storageState.writeProperties();
+        return storageState;
+    }
+
+    /**
+     * Copy the content of the given root file to the revision file in the storage dir
+     * and record the revision file in the given properties.
+     */
+    protected static void copyRootFile(File storageDir, VirtualFile rootFile, Properties props) throws IOException {
         if (rootFile != null) {
             String bundleId = props.getProperty(StorageState.PROPERTY_BUNDLE_ID);
             String revision = props.getProperty(StorageState.PROPERTY_BUNDLE_REV);
@@ -104,8 +114,6 @@ public class StorageState {
             }
             props.put(StorageState.PROPERTY_BUNDLE_FILE, revFile.getName());
         }
-        storageState.writeProperties();
-        return storageState;
     }
 
     public static Properties loadProperties(File storageDir) throws FileNotFoundException, IOException {
@@ -157,6 +165,16 @@ public class StorageState {
         return rootFile;
     }
 
+    /**
+     * Get the copy of the root file in the storage area.
+     *
+     * @return The revision file or null if there is no root file
+     */
+    public File getBundleFile() {
+        String vfsLocation = props.getProperty(PROPERTY_BUNDLE_FILE);
+        return vfsLocation != null ? new File(storageDir + "/" + vfsLocation) : null;
+    }
+
     public long getBundleId() {
         return bundleId;
     }
@@ -205,7 +223,10 @@ public class StorageState {
         writeProperties();
     }
 
-    private void writeProperties() {
+    /**
+     * Persist the current properties of this storage state.
+     */
+    protected void writeProperties() {
         try {
             File propsFile = new File(getStorageDir() + "/" + BUNDLE_PERSISTENT_PROPERTIES);
             FileOutputStream output = new FileOutputStream(propsFile);
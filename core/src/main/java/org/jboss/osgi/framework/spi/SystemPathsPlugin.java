@@ -25,6 +25,7 @@ import org.jboss.msc.service.ServiceBuilder;
 import org.jboss.msc.service.ServiceController.Mode;
 import org.jboss.msc.service.StartContext;
 import org.jboss.msc.service.StartException;
+import org.jboss.msc.value.InjectedValue;
 import org.jboss.osgi.framework.internal.SystemPathsImpl;
 
 /**
@@ -35,6 +36,7 @@ import org.jboss.osgi.framework.internal.SystemPathsImpl;
  */
 public class SystemPathsPlugin extends AbstractIntegrationService<SystemPaths> {
 
+    private final InjectedValue<StorageManager> injectedStorageManager = new InjectedValue<StorageManager>();
     private final FrameworkBuilder frameworkBuilder;
 
     public SystemPathsPlugin(FrameworkBuilder frameworkBuilder) {
@@ -44,11 +46,12 @@ public class SystemPathsPlugin extends AbstractIntegrationService<SystemPaths> {
 
     @Override
     protected void addServiceDependencies(ServiceBuilder<SystemPaths> builder) {
+        builder.addDependency(IntegrationServices.STORAGE_MANAGER_PLUGIN, StorageManager.class, injectedStorageManager);
         builder.setInitialMode(Mode.ON_DEMAND);
     }
 
     @Override
     protected SystemPaths createServiceValue(StartContext startContext) throws StartException {
-        return new SystemPathsImpl(frameworkBuilder);
+        return new SystemPathsImpl(frameworkBuilder, injectedStorageManager.getValue());
     }
 }
\ No newline at end of file
@@ -26,6 +26,7 @@ import static org.jboss.osgi.framework.FrameworkMessages.MESSAGES;
 
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -52,6 +53,9 @@ import org.jboss.osgi.vfs.VirtualFile;
 /**
  * An {@link ResourceLoader} that is backed by a {@link VirtualFile} pointing to an archive.
  *
+ * If a plain jar file with the same content is given, the entries are indexed once from its zip central
+ * directory and class bytes are read directly from that jar.
+ *
  * @author thomas.diesler@jboss.com
  * @author <a href="david@redhat.com">David Bosschaert</a>
  * @since 29-Jun-2010
@@ -59,12 +63,25 @@ import org.jboss.osgi.vfs.VirtualFile;
 public final class VirtualFileResourceLoader implements IterableResourceLoader {
 
     private final VirtualFile virtualFile;
+    private final ArchiveEntryIndex entryIndex;
     private final Set<String> localPaths;
+    private volatile Manifest manifest;
+    private volatile boolean manifestLoaded;
 
     public VirtualFileResourceLoader(VirtualFile virtualFile) {
+        this(virtualFile, null);
+    }
+
+    /**
+     * Create a loader for the given virtual file, which has the same content as the given jar file.
+     *
+     * @param archiveFile The plain jar file with the content of the virtual file, or null
+     */
+    public VirtualFileResourceLoader(VirtualFile virtualFile, File archiveFile) {
         if (virtualFile == null)
             throw MESSAGES.illegalArgumentNull("virtualFile");
         this.virtualFile = virtualFile;
+        this.entryIndex = ArchiveEntryIndex.create(archiveFile);
         this.localPaths = getLocalPaths();
     }
 
@@ -75,6 +92,18 @@ public final class VirtualFileResourceLoader implements IterableResourceLoader {
 
     @Override
     public ClassSpec getClassSpec(String fileName) throws IOException {
+        if (entryIndex != null) {
+            ArchiveEntryIndex.Entry entry = entryIndex.getEntry(getEntryName(fileName));
+            if (entry == null)
+                return null;
+
+            ClassSpec classSpec = new ClassSpec();
+            classSpec.setBytes(entryIndex.readEntry(entry));
+            String simpleName = entry.name.substring(entry.name.lastIndexOf('/') + 1);
+            classSpec.setCodeSource(new CodeSource(new URL("jar", null, -1, simpleName), (CodeSigner[]) null));
+            return classSpec;
+        }
+
         VirtualFile child = virtualFile.getChild(fileName);
         if (child == null)
             return null;
@@ -98,7 +127,7 @@ public final class VirtualFileResourceLoader implements IterableResourceLoader {
     @Override
     public PackageSpec getPackageSpec(String name) throws IOException {
         PackageSpec spec = new PackageSpec();
-        Manifest manifest = VFSUtils.getManifest(virtualFile);
+        Manifest manifest = getManifest();
         if (manifest == null) {
             return spec;
         }
@@ -116,6 +145,19 @@ public final class VirtualFileResourceLoader implements IterableResourceLoader {
         return spec;
     }
 
+    // The manifest is read once and shared by all packages
+    private Manifest getManifest() throws IOException {
+        if (!manifestLoaded) {
+            synchronized (this) {
+                if (!manifestLoaded) {
+                    manifest = VFSUtils.getManifest(virtualFile);
+                    manifestLoaded = true;
+                }
+            }
+        }
+        return manifest;
+    }
+
     private static String getDefinedAttribute(Attributes.Name name, Attributes entryAttribute, Attributes mainAttribute) {
         final String value = entryAttribute == null ? null : entryAttribute.getValue(name);
         return value == null ? mainAttribute == null ? null : mainAttribute.getValue(name) : value;
@@ -123,6 +165,11 @@ public final class VirtualFileResourceLoader implements IterableResourceLoader {
 
     @Override
     public Resource getResource(String name) {
+        if (entryIndex != null) {
+            String entryName = getEntryName(name);
+            if (entryName.length() > 0 && entryIndex.getEntry(entryName) == null && !entryIndex.hasDirectory(entryName))
+                return null;
+        }
         try {
             VirtualFile child = virtualFile.getChild(name);
             if (child == null)
@@ -176,6 +223,16 @@ public final class VirtualFileResourceLoader implements IterableResourceLoader {
 
     private Set<String> getLocalPaths() {
         Set<String> result = new HashSet<String>();
+        if (entryIndex != null) {
+            for (String entryPath : entryIndex.getEntries().keySet()) {
+                int inx = entryPath.lastIndexOf("/");
+                result.add(inx > 0 ? entryPath.substring(0, inx) : "");
+            }
+            if (result.size() == 0)
+                throw MESSAGES.illegalArgumentCannotObtainPaths(null, virtualFile);
+
+            return Collections.unmodifiableSet(result);
+        }
         try {
             List<VirtualFile> descendants = virtualFile.getChildrenRecursively();
             String rootPath = virtualFile.getPathName();
@@ -198,6 +255,20 @@ public final class VirtualFileResourceLoader implements IterableResourceLoader {
         return Collections.unmodifiableSet(result);
     }
 
+    /**
+     * Release the file that backs the entry index. The virtual file is not closed.
+     */
+    public void close() {
+        if (entryIndex != null) {
+            entryIndex.close();
+        }
+    }
+
+    private static String getEntryName(String path) {
+        String result = path.startsWith("/") ? path.substring(1) : path;
+        return result.endsWith("/") ? result.substring(0, result.length() - 1) : result;
+    }
+
     private void safeClose(final Closeable closeable) {
         if (closeable != null) {
             try {
@@ -240,6 +311,11 @@ public final class VirtualFileResourceLoader implements IterableResourceLoader {
 
         @Override
         public long getSize() {
+            if (entryIndex != null) {
+                ArchiveEntryIndex.Entry entry = entryIndex.getEntry(getName());
+                if (entry != null)
+                    return entry.size;
+            }
             return 0;
         }
     }
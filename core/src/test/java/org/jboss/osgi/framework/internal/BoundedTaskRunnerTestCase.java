@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link BoundedTaskRunner}.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+public class BoundedTaskRunnerTestCase {
+
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testRunningTasksAreBounded() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        BoundedTaskRunner<Integer> taskRunner = new BoundedTaskRunner<Integer>(executorService, 3);
+        for (int i = 0; i < 20; i++) {
+            final int index = i;
+            taskRunner.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    int count = running.incrementAndGet();
+                    synchronized (maxRunning) {
+                        maxRunning.set(Math.max(maxRunning.get(), count));
+                    }
+                    Thread.sleep(5);
+                    running.decrementAndGet();
+                    return index;
+                }
+            });
+        }
+        int completed = 0;
+        while (taskRunner.hasPending()) {
+            taskRunner.take();
+            completed++;
+        }
+        assertEquals(20, completed);
+        assertTrue("Max running: " + maxRunning.get(), maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void testCancelAwaitsRunningTasks() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger executed = new AtomicInteger();
+        BoundedTaskRunner<Integer> taskRunner = new BoundedTaskRunner<Integer>(executorService, 1);
+        for (int i = 0; i < 5; i++) {
+            taskRunner.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    started.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                    return executed.incrementAndGet();
+                }
+            });
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // Release the running task after the cancel has started waiting, with the current thread interrupted
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ex) {
+                    // ignore
+                }
+                release.countDown();
+            }
+        });
+        Thread.currentThread().interrupt();
+        taskRunner.cancelAndAwait();
+
+        assertTrue("Interrupt status preserved", Thread.interrupted());
+        assertEquals("Only the running task was executed", 1, executed.get());
+        assertFalse(taskRunner.hasPending());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.osgi.metadata.OSGiManifestBuilder;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.test.osgi.framework.subA.SimpleActivator;
+import org.jboss.test.osgi.framework.subA.SimpleService;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.wiring.FrameworkWiring;
+
+/**
+ * Test the {@link BundleIndex} generation
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+public class BundleIndexTestCase extends AbstractFrameworkTest {
+
+    @Test
+    public void testStateTransitions() throws Exception {
+        BundleIndex bundleIndex = new BundleIndex();
+        long generation = bundleIndex.getGeneration();
+
+        // Start and stop keep the generation
+        bundleIndex.bundleStateChanged(Bundle.RESOLVED, Bundle.STARTING);
+        bundleIndex.bundleStateChanged(Bundle.STARTING, Bundle.ACTIVE);
+        bundleIndex.bundleStateChanged(Bundle.ACTIVE, Bundle.STOPPING);
+        bundleIndex.bundleStateChanged(Bundle.STOPPING, Bundle.RESOLVED);
+        assertEquals(generation, bundleIndex.getGeneration());
+
+        // Resolve, unresolve and uninstall change the generation
+        bundleIndex.bundleStateChanged(Bundle.INSTALLED, Bundle.RESOLVED);
+        assertEquals(++generation, bundleIndex.getGeneration());
+        bundleIndex.bundleStateChanged(Bundle.RESOLVED, Bundle.INSTALLED);
+        assertEquals(++generation, bundleIndex.getGeneration());
+        bundleIndex.bundleStateChanged(Bundle.INSTALLED, Bundle.UNINSTALLED);
+        assertEquals(++generation, bundleIndex.getGeneration());
+    }
+
+    @Test
+    public void testStartStopKeepsGeneration() throws Exception {
+        BundleIndex bundleIndex = getBundleIndex();
+        Bundle bundle = installBundle(getArchive("start-stop-bundle"));
+        try {
+            assertTrue(getFramework().adapt(FrameworkWiring.class).resolveBundles(Collections.singleton(bundle)));
+            long generation = bundleIndex.getGeneration();
+
+            bundle.start();
+            assertEquals(Bundle.ACTIVE, bundle.getState());
+            bundle.stop();
+            assertEquals(Bundle.RESOLVED, bundle.getState());
+            assertEquals(generation, bundleIndex.getGeneration());
+        } finally {
+            bundle.uninstall();
+        }
+    }
+
+    @Test
+    public void testResolveUnresolveChangesGeneration() throws Exception {
+        BundleIndex bundleIndex = getBundleIndex();
+        FrameworkWiring frameworkWiring = getFramework().adapt(FrameworkWiring.class);
+        Bundle bundle = installBundle(getArchive("resolve-unresolve-bundle"));
+        try {
+            long generation = bundleIndex.getGeneration();
+            assertTrue(frameworkWiring.resolveBundles(Collections.singleton(bundle)));
+            assertTrue("Resolve changes the generation", bundleIndex.getGeneration() > generation);
+
+            generation = bundleIndex.getGeneration();
+            final CountDownLatch latch = new CountDownLatch(1);
+            frameworkWiring.refreshBundles(Collections.singleton(bundle), new FrameworkListener() {
+                @Override
+                public void frameworkEvent(FrameworkEvent event) {
+                    if (event.getType() == FrameworkEvent.PACKAGES_REFRESHED)
+                        latch.countDown();
+                }
+            });
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertTrue("Refresh changes the generation", bundleIndex.getGeneration() > generation);
+        } finally {
+            long generation = bundleIndex.getGeneration();
+            bundle.uninstall();
+            assertTrue("Uninstall changes the generation", bundleIndex.getGeneration() > generation);
+        }
+    }
+
+    private BundleIndex getBundleIndex() throws Exception {
+        return ((IndexedEnvironment) getFrameworkState().getEnvironment()).getBundleIndex();
+    }
+
+    private JavaArchive getArchive(final String name) {
+        final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, name);
+        archive.addClasses(SimpleService.class, SimpleActivator.class);
+        archive.setManifest(new Asset() {
+
+            public InputStream openStream() {
+                OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+                builder.addBundleManifestVersion(2);
+                builder.addBundleSymbolicName(archive.getName());
+                builder.addBundleVersion("1.0.0");
+                builder.addBundleActivator(SimpleActivator.class);
+                builder.addImportPackages(BundleActivator.class);
+                return builder.openStream();
+            }
+        });
+        return archive;
+    }
+}
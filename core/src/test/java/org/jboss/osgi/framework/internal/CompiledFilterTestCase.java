@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.junit.Test;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.Version;
+
+/**
+ * Test the {@link CompiledFilter} against the reference implementation in {@link FrameworkUtil}.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+public class CompiledFilterTestCase {
+
+    @Test
+    public void testMatchAgainstReference() throws Exception {
+        Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put("objectClass", new String[] { "org.acme.Foo", "org.acme.Bar" });
+        props.put("service.pid", "org.acme.pid");
+        props.put("Service.Ranking", Integer.valueOf(10));
+        props.put("size", Long.valueOf(300));
+        props.put("ratio", Double.valueOf(0.5));
+        props.put("flag", Boolean.TRUE);
+        props.put("initial", Character.valueOf('x'));
+        props.put("version", Version.parseVersion("1.2.3"));
+        props.put("names", Arrays.asList("alpha", "beta"));
+        props.put("text", "Hello  World");
+
+        String[] filters = new String[] {
+                "(objectClass=org.acme.Foo)", "(objectClass=org.acme.Baz)", "(service.pid=org.acme.*)", "(service.pid=*pid)",
+                "(service.pid=org*acme*pid)", "(service.pid=*)", "(missing=*)", "(service.ranking>=5)", "(service.ranking<=5)",
+                "(SERVICE.RANKING=10)", "(size>=299)", "(size<= 300)", "(size=abc)", "(ratio>=0.25)", "(flag=true)",
+                "(flag=false)", "(initial~=X)", "(version>=1.2)", "(version=1.2.3)", "(names=beta)", "(names=gamma)",
+                "(text~=helloworld)", "(text=Hello  World)", "(&(objectClass=org.acme.Bar)(service.pid=org.acme.pid))",
+                "(|(objectClass=org.acme.Baz)(size=300))", "(!(flag=true))", "( & (size=300) (flag=true) )" };
+
+        for (String filterString : filters) {
+            Filter expected = FrameworkUtil.createFilter(filterString);
+            Filter filter = CompiledFilter.compile(filterString);
+            assertEquals(filterString, expected.match(props), filter.match(props));
+            assertEquals(filterString, expected.toString(), filter.toString());
+        }
+    }
+
+    @Test
+    public void testMatchCase() throws Exception {
+        Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put("Key", "value");
+        Filter filter = CompiledFilter.compile("(key=value)");
+        assertTrue(filter.match(props));
+        assertFalse(filter.matchCase(props));
+    }
+
+    @Test
+    public void testEscapedValues() throws Exception {
+        Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put("key", "a*(b)");
+        Filter filter = CompiledFilter.compile("(key=a\\*\\(b\\))");
+        assertTrue(filter.match(props));
+        assertEquals("(key=a\\*\\(b\\))", filter.toString());
+    }
+
+    @Test
+    public void testInvalidSyntax() throws Exception {
+        String[] filters = new String[] { "", "key=value", "(key=value", "(=value)", "(key=value))", "(&)", "(key>value)" };
+        for (String filterString : filters) {
+            try {
+                CompiledFilter.compile(filterString);
+                fail("InvalidSyntaxException expected for: " + filterString);
+            } catch (InvalidSyntaxException ex) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testFilterCache() throws Exception {
+        FilterCache cache = new FilterCache(8);
+        Filter filter = cache.getFilter("(a=b)");
+        assertSame(filter, cache.getFilter("(a=b)"));
+        assertSame(NoFilter.INSTANCE, cache.getFilter(null));
+        for (int i = 0; i < 20; i++) {
+            cache.getFilter("(a=" + i + ")");
+        }
+        assertTrue("Cache is bounded", cache.size() <= 8);
+    }
+
+    @Test
+    public void testFilterCacheEvictsLeastRecentlyUsed() throws Exception {
+        FilterCache cache = new FilterCache(4);
+        Filter filterA = cache.getFilter("(a=a)");
+        Filter filterB = cache.getFilter("(a=b)");
+        cache.getFilter("(a=c)");
+        cache.getFilter("(a=d)");
+
+        // Hits are recent, (a=c) and (a=d) are the least recently used
+        assertSame(filterB, cache.getFilter("(a=b)"));
+        assertSame(filterA, cache.getFilter("(a=a)"));
+        cache.getFilter("(a=e)");
+        assertEquals(3, cache.size());
+        assertSame(filterA, cache.getFilter("(a=a)"));
+        assertSame(filterB, cache.getFilter("(a=b)"));
+    }
+}
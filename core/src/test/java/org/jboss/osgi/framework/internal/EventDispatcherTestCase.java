@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link EventDispatcher}
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+public class EventDispatcherTestCase {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOrderPerListener() throws Exception {
+        EventDispatcher dispatcher = new EventDispatcher(executor);
+        final List<Integer> first = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Integer> second = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(200);
+        for (int i = 0; i < 100; i++) {
+            final Integer value = Integer.valueOf(i);
+            dispatcher.dispatch("first", "EVENT", new Runnable() {
+                @Override
+                public void run() {
+                    first.add(value);
+                    latch.countDown();
+                }
+            });
+            dispatcher.dispatch("second", "EVENT", new Runnable() {
+                @Override
+                public void run() {
+                    second.add(value);
+                    latch.countDown();
+                }
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(i), first.get(i));
+            assertEquals(Integer.valueOf(i), second.get(i));
+        }
+    }
+
+    @Test
+    public void testSlowListenerDoesNotBlockOthers() throws Exception {
+        EventDispatcher dispatcher = new EventDispatcher(executor);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch delivered = new CountDownLatch(1);
+        dispatcher.dispatch("slow", "EVENT", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        dispatcher.dispatch("fast", "EVENT", new Runnable() {
+            @Override
+            public void run() {
+                delivered.countDown();
+            }
+        });
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void testBoundedQueue() throws Exception {
+        EventDispatcher dispatcher = new EventDispatcher(executor, 2, 0);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch delivered = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            dispatcher.dispatch("listener", "EVENT", new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    delivered.countDown();
+                }
+            });
+        }
+        // The producer does not wait and queues beyond capacity
+        assertTrue(dispatcher.getQueueSize("listener") > 2);
+        release.countDown();
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link JDKPaths} index.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+public class JDKPathsTestCase {
+
+    private File storageArea;
+    private File indexFile;
+    private File jarFile;
+
+    @Before
+    public void setUp() throws Exception {
+        storageArea = File.createTempFile("storage", "");
+        storageArea.delete();
+        storageArea.mkdirs();
+        indexFile = new File(storageArea, JDKPaths.INDEX_FILE_NAME);
+        jarFile = new File(storageArea, "acme.jar");
+    }
+
+    @After
+    public void tearDown() {
+        jarFile.delete();
+        indexFile.delete();
+        storageArea.delete();
+    }
+
+    @Test
+    public void testIndexReadBack() throws Exception {
+        writeJar("org/acme/Foo.class");
+        Set<String> paths = JDKPaths.loadPaths(indexFile, jarFile.getPath());
+        assertTrue(paths.contains("org/acme"));
+        assertTrue("Index written", indexFile.isFile());
+
+        Map<String, JDKPaths.JarPaths> stored = JDKPaths.readIndex(indexFile);
+        JDKPaths.JarPaths jar = stored.get(jarFile.getAbsolutePath());
+        assertNotNull("Jar indexed", jar);
+        assertEquals(jarFile.length(), jar.size);
+        assertEquals(jarFile.lastModified(), jar.lastModified);
+        assertEquals(Collections.singletonList("org/acme"), jar.paths);
+
+        // An unchanged jar is served from the index
+        JDKPaths.JarPaths indexed = new JDKPaths.JarPaths(jar.size, jar.lastModified, Arrays.asList("org/acme", "org/indexed"));
+        JDKPaths.writeIndex(indexFile, Collections.singletonMap(jarFile.getAbsolutePath(), indexed));
+        paths = JDKPaths.loadPaths(indexFile, jarFile.getPath());
+        assertTrue(paths.contains("org/indexed"));
+    }
+
+    @Test
+    public void testIndexInvalidation() throws Exception {
+        writeJar("org/acme/Foo.class");
+        JDKPaths.loadPaths(indexFile, jarFile.getPath());
+        long lastModified = jarFile.lastModified();
+
+        // A modified jar is scanned again and the index is updated
+        writeJar("org/acme/Foo.class", "org/acme/impl/Bar.class");
+        jarFile.setLastModified(lastModified + 2000);
+        Set<String> paths = JDKPaths.loadPaths(indexFile, jarFile.getPath());
+        assertTrue(paths.contains("org/acme/impl"));
+        JDKPaths.JarPaths jar = JDKPaths.readIndex(indexFile).get(jarFile.getAbsolutePath());
+        assertEquals(Arrays.asList("org/acme", "org/acme/impl"), jar.paths);
+        assertEquals(jarFile.lastModified(), jar.lastModified);
+
+        // A corrupt index is ignored and replaced
+        FileOutputStream output = new FileOutputStream(indexFile);
+        try {
+            output.write(new byte[] { 0x4A, 0x42, 0x4A, 0x50, 0, 0, 0, 1, 0x7F });
+        } finally {
+            output.close();
+        }
+        assertTrue(JDKPaths.readIndex(indexFile).isEmpty());
+        paths = JDKPaths.loadPaths(indexFile, jarFile.getPath());
+        assertTrue(paths.contains("org/acme/impl"));
+        assertFalse(JDKPaths.readIndex(indexFile).isEmpty());
+    }
+
+    private void writeJar(String... entries) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jarFile));
+        try {
+            for (String entry : entries) {
+                zip.putNextEntry(new ZipEntry(entry));
+                zip.write(1);
+                zip.closeEntry();
+            }
+        } finally {
+            zip.close();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jboss.modules.filter.MultiplePathFilterBuilder;
+import org.jboss.modules.filter.PathFilter;
+import org.jboss.modules.filter.PathFilters;
+import org.junit.Test;
+
+/**
+ * Test the {@link PackagePathFilter} against the equivalent {@link PathFilters} chain.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+public class PackagePathFilterTestCase {
+
+    @Test
+    public void testMatchAgainstReference() throws Exception {
+        List<String> exactPaths = Arrays.asList("javax/net", "org/osgi/framework", "");
+        List<String> parentPaths = Arrays.asList("sun", "com/sun", "org/osgi/framework");
+
+        MultiplePathFilterBuilder builder = PathFilters.multiplePathFilterBuilder(false);
+        for (String path : exactPaths) {
+            builder.addFilter(PathFilters.is(path), true);
+        }
+        for (String path : parentPaths) {
+            builder.addFilter(PathFilters.isChildOf(path), true);
+        }
+        PathFilter reference = builder.create();
+        PathFilter filter = new PackagePathFilter(exactPaths, parentPaths);
+
+        String[] paths = new String[] { "", "javax", "javax/net", "javax/net/ssl", "sun", "sun/misc", "sun/misc/resources", "com", "com/sun",
+                "com/sun/net", "com/sunny", "org/osgi", "org/osgi/framework", "org/osgi/framework/hooks", "org/osgi/frameworks" };
+        for (String path : paths) {
+            assertEquals(path, reference.accept(path), filter.accept(path));
+        }
+    }
+
+    @Test
+    public void testExactPathsOnly() throws Exception {
+        List<String> exactPaths = Arrays.asList("javax/net", "org/osgi/framework");
+        PathFilter filter = new PackagePathFilter(exactPaths, Collections.<String> emptySet());
+        assertEquals(true, filter.accept("javax/net"));
+        assertEquals(true, filter.accept("org/osgi/framework"));
+        assertEquals(false, filter.accept("javax"));
+        assertEquals(false, filter.accept("javax/net/ssl"));
+        assertEquals(false, filter.accept("org/osgi/frameworks"));
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.osgi.resolver.XBundle;
+import org.jboss.osgi.resolver.XBundleRevision;
+import org.jboss.osgi.resolver.XEnvironment;
+import org.jboss.osgi.resolver.XResource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.Version;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.resource.Capability;
+import org.osgi.resource.Namespace;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+import org.osgi.resource.Wire;
+
+/**
+ * Test the {@link ResolutionCache}.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+public class ResolutionCacheTestCase {
+
+    private File cacheFile;
+    private Map<String, Object> properties;
+    private XBundleRevision provider;
+    private XBundleRevision requirer;
+    private Capability capability;
+    private Requirement requirement;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheFile = File.createTempFile("resolution", ".cache");
+        cacheFile.delete();
+        properties = new HashMap<String, Object>();
+        properties.put("org.osgi.framework.system.packages.extra", "org.acme");
+
+        provider = mockRevision("provider", 1);
+        capability = mock(Capability.class);
+        when(capability.getNamespace()).thenReturn(PackageNamespace.PACKAGE_NAMESPACE);
+        when(capability.getAttributes()).thenReturn(Collections.<String, Object> singletonMap(PackageNamespace.PACKAGE_NAMESPACE, "org.acme"));
+        when(capability.getResource()).thenReturn(provider);
+        when(provider.getCapabilities(null)).thenReturn(Collections.singletonList(capability));
+        when(provider.getRequirements(null)).thenReturn(Collections.<Requirement> emptyList());
+
+        requirer = mockRevision("requirer", 2);
+        requirement = mock(Requirement.class);
+        when(requirement.getNamespace()).thenReturn(PackageNamespace.PACKAGE_NAMESPACE);
+        when(requirement.getDirectives()).thenReturn(Collections.singletonMap(Namespace.REQUIREMENT_FILTER_DIRECTIVE, "(osgi.wiring.package=org.acme)"));
+        when(requirement.getResource()).thenReturn(requirer);
+        when(requirer.getCapabilities(null)).thenReturn(Collections.<Capability> emptyList());
+        when(requirer.getRequirements(null)).thenReturn(Collections.singletonList(requirement));
+    }
+
+    @After
+    public void tearDown() {
+        cacheFile.delete();
+    }
+
+    @Test
+    public void testCacheHit() throws Exception {
+        XEnvironment env = mockEnvironment(provider, requirer);
+        ResolutionCache cache = new ResolutionCache(cacheFile, properties);
+        ResolutionCache.Context context = cache.createContext(env, Collections.singleton(requirer), null);
+        assertNull("Cache miss", context.getWiring());
+        context.putWiring(getWiremap());
+        assertFalse("Not written before store", cacheFile.exists());
+        cache.store();
+        assertTrue("Written on store", cacheFile.exists());
+
+        cache = new ResolutionCache(cacheFile, properties);
+        Map<Resource, List<Wire>> wiremap = cache.createContext(env, Collections.singleton(requirer), null).getWiring();
+        assertNotNull("Cache hit", wiremap);
+        assertEquals(2, wiremap.size());
+        List<Wire> wires = wiremap.get(requirer);
+        assertEquals(1, wires.size());
+        Wire wire = wires.get(0);
+        assertSame(provider, wire.getProvider());
+        assertSame(requirer, wire.getRequirer());
+        assertSame(capability, wire.getCapability());
+        assertSame(requirement, wire.getRequirement());
+    }
+
+    @Test
+    public void testCacheMiss() throws Exception {
+        XEnvironment env = mockEnvironment(provider, requirer);
+        ResolutionCache cache = new ResolutionCache(cacheFile, properties);
+        cache.createContext(env, Collections.singleton(requirer), null).putWiring(getWiremap());
+        cache.store();
+
+        // Another resource in the environment
+        XBundleRevision other = mockRevision("other", 3);
+        when(other.getCapabilities(null)).thenReturn(Collections.<Capability> emptyList());
+        when(other.getRequirements(null)).thenReturn(Collections.<Requirement> emptyList());
+        cache = new ResolutionCache(cacheFile, properties);
+        assertNull(cache.createContext(mockEnvironment(provider, requirer, other), Collections.singleton(requirer), null).getWiring());
+
+        // Other mandatory resources
+        assertNull(cache.createContext(env, Arrays.asList(requirer, provider), null).getWiring());
+
+        // Another framework configuration
+        Map<String, Object> changed = new HashMap<String, Object>(properties);
+        changed.put("org.osgi.framework.system.packages.extra", "org.acme.other");
+        cache = new ResolutionCache(cacheFile, changed);
+        assertNull(cache.createContext(env, Collections.singleton(requirer), null).getWiring());
+
+        // The capability no longer matches
+        when(capability.getAttributes()).thenReturn(Collections.<String, Object> singletonMap(PackageNamespace.PACKAGE_NAMESPACE, "org.acme.other"));
+        cache = new ResolutionCache(cacheFile, properties);
+        assertNull(cache.createContext(env, Collections.singleton(requirer), null).getWiring());
+    }
+
+    @Test
+    public void testFingerprintDirectives() throws Exception {
+        String fingerprint = ResolutionCache.getFingerprint(provider);
+        assertEquals(fingerprint, ResolutionCache.getFingerprint(provider));
+
+        // A capability directive changes the fingerprint
+        when(capability.getDirectives()).thenReturn(Collections.singletonMap(PackageNamespace.CAPABILITY_USES_DIRECTIVE, "org.acme.api"));
+        assertFalse(fingerprint.equals(ResolutionCache.getFingerprint(provider)));
+
+        // A requirement attribute changes the fingerprint
+        fingerprint = ResolutionCache.getFingerprint(requirer);
+        when(requirement.getAttributes()).thenReturn(Collections.<String, Object> singletonMap("foo", "bar"));
+        assertFalse(fingerprint.equals(ResolutionCache.getFingerprint(requirer)));
+    }
+
+    @Test
+    public void testCorruptCacheFile() throws Exception {
+        FileOutputStream output = new FileOutputStream(cacheFile);
+        try {
+            output.write(new byte[] { 0x4A, 0x42, 0x52, 0x43, 0, 0, 0, 1, (byte) 0xFF, (byte) 0xFF });
+        } finally {
+            output.close();
+        }
+
+        XEnvironment env = mockEnvironment(provider, requirer);
+        ResolutionCache cache = new ResolutionCache(cacheFile, properties);
+        ResolutionCache.Context context = cache.createContext(env, Collections.singleton(requirer), null);
+        assertNull("Corrupt file ignored", context.getWiring());
+
+        // The corrupt file is replaced on the next store
+        context.putWiring(getWiremap());
+        cache.store();
+        cache = new ResolutionCache(cacheFile, properties);
+        assertNotNull(cache.createContext(env, Collections.singleton(requirer), null).getWiring());
+    }
+
+    private Map<Resource, List<Wire>> getWiremap() {
+        Wire wire = mock(Wire.class);
+        when(wire.getCapability()).thenReturn(capability);
+        when(wire.getRequirement()).thenReturn(requirement);
+        when(wire.getProvider()).thenReturn(provider);
+        when(wire.getRequirer()).thenReturn(requirer);
+        Map<Resource, List<Wire>> wiremap = new LinkedHashMap<Resource, List<Wire>>();
+        wiremap.put(provider, new ArrayList<Wire>());
+        wiremap.put(requirer, Collections.singletonList(wire));
+        return wiremap;
+    }
+
+    private XBundleRevision mockRevision(String symbolicName, long bundleId) {
+        XBundle bundle = mock(XBundle.class);
+        when(bundle.getBundleId()).thenReturn(bundleId);
+        when(bundle.getLocation()).thenReturn(symbolicName + ".jar");
+        XBundleRevision brev = mock(XBundleRevision.class);
+        when(brev.getBundle()).thenReturn(bundle);
+        when(brev.getSymbolicName()).thenReturn(symbolicName);
+        when(brev.getVersion()).thenReturn(Version.emptyVersion);
+        return brev;
+    }
+
+    private XEnvironment mockEnvironment(XResource... resources) {
+        final List<XResource> list = Arrays.asList(resources);
+        XEnvironment env = mock(XEnvironment.class);
+        when(env.getResources(null)).thenAnswer(new Answer<Iterator<XResource>>() {
+            @Override
+            public Iterator<XResource> answer(InvocationOnMock invocation) {
+                return list.iterator();
+            }
+        });
+        return env;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jboss.osgi.framework.internal.RevisionContent.EntryTable;
+import org.jboss.osgi.metadata.OSGiManifestBuilder;
+import org.jboss.osgi.testing.OSGiTestHelper;
+import org.jboss.osgi.vfs.AbstractVFS;
+import org.jboss.osgi.vfs.VirtualFile;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.test.osgi.framework.subA.SimpleActivator;
+import org.jboss.test.osgi.framework.subA.SimpleService;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the {@link EntryTable} against the entries of the virtual file.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+public class RevisionContentTestCase {
+
+    private static final String SUBA_PATH = "org/jboss/test/osgi/framework/subA";
+
+    private static VirtualFile rootFile;
+    private static EntryTable entryTable;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "entry-table");
+        archive.addClasses(SimpleService.class, SimpleActivator.class);
+        archive.add(new StringAsset("a"), "res/dot.txt");
+        archive.add(new StringAsset("b"), "res/dotxtxt");
+        archive.add(new StringAsset("c"), "res/a+b.txt");
+        archive.add(new StringAsset("d"), "res/x(1).txt");
+        archive.add(new StringAsset("e"), "res/sub/a+b.txt");
+        archive.add(new StringAsset("f"), "res/sub/deep/leaf.txt");
+        archive.setManifest(new Asset() {
+            public InputStream openStream() {
+                OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+                builder.addBundleManifestVersion(2);
+                builder.addBundleSymbolicName(archive.getName());
+                return builder.openStream();
+            }
+        });
+        rootFile = OSGiTestHelper.toVirtualFile(archive);
+        entryTable = new EntryTable(rootFile);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        rootFile.close();
+    }
+
+    @Test
+    public void testGetEntry() throws Exception {
+        for (String path : Arrays.asList("res/dot.txt", "/res/dot.txt", "res", "res/", "/res/sub/", "META-INF/MANIFEST.MF",
+                SUBA_PATH + "/SimpleService.class", "missing.txt", "res/missing", "res/sub/deep/leaf.txt/")) {
+            boolean expected = rootFile.getChild(path) != null;
+            assertEquals(path, expected, entryTable.entries.containsKey(EntryTable.normalize(path)));
+        }
+    }
+
+    @Test
+    public void testGetEntryPaths() throws Exception {
+        for (String path : Arrays.asList("", "/", "org", "/org/", SUBA_PATH, "res", "res/sub/", "/res/sub/deep", "missing", "res/dot.txt")) {
+            Set<String> expected = new TreeSet<String>();
+            Enumeration<String> paths = rootFile.getEntryPaths(path);
+            while (paths != null && paths.hasMoreElements()) {
+                expected.add(paths.nextElement());
+            }
+            assertEquals(path, expected, new TreeSet<String>(entryTable.getEntryPaths(path)));
+        }
+    }
+
+    @Test
+    public void testFindEntries() throws Exception {
+        // The root and nested paths, with leading and trailing slashes
+        assertFindEntries("", "*", true);
+        assertFindEntries("", "*", false);
+        assertFindEntries("/", "*", false);
+        assertFindEntries("org", "*.class", true);
+        assertFindEntries("/org/jboss/", "Simple*", true);
+        assertFindEntries(SUBA_PATH, "*.class", false);
+        assertFindEntries(SUBA_PATH + "/", "*Service*", false);
+        assertFindEntries("res", null, false);
+        assertFindEntries("res", "*.txt", true);
+        assertFindEntries("/res/sub", "*", true);
+        assertFindEntries("res/sub/", "*", false);
+        assertFindEntries("META-INF", "*.MF", false);
+
+        // Missing paths and files
+        assertFindEntries("missing", "*", true);
+        assertFindEntries("res/missing/", "*", false);
+        assertFindEntries("res/dot.txt", "*", true);
+        assertFindEntries("res", "missing*", true);
+    }
+
+    @Test
+    public void testFindEntriesPatternMetacharacters() throws Exception {
+        // Only '*' is a wildcard, other characters match literally
+        assertEquals(Arrays.asList("res/dot.txt"), entryTable.findEntries("res", "dot.txt", false));
+        assertEquals(Arrays.asList("res/a+b.txt", "res/sub/a+b.txt"), entryTable.findEntries("res", "a+b.txt", true));
+        assertEquals(Arrays.asList("res/a+b.txt"), entryTable.findEntries("/res/", "a+b.txt", false));
+        assertEquals(Arrays.asList("res/x(1).txt"), entryTable.findEntries("res", "x(1).txt", true));
+        assertEquals(Arrays.asList("res/x(1).txt"), entryTable.findEntries("res", "*(*", true));
+        assertTrue(entryTable.findEntries("res", "[a-z]*", true).isEmpty());
+        assertEquals(Arrays.asList("res/dot.txt"), entryTable.findEntries("res", "dot.*txt", false));
+    }
+
+    private void assertFindEntries(String path, String pattern, boolean recurse) throws Exception {
+        Set<String> expected = new TreeSet<String>();
+        Enumeration<URL> urls = rootFile.findEntries(path, pattern, recurse);
+        String rootPath = rootFile.getPathName();
+        while (urls != null && urls.hasMoreElements()) {
+            VirtualFile child = AbstractVFS.toVirtualFile(urls.nextElement());
+            expected.add(EntryTable.normalize(child.getPathName().substring(rootPath.length())));
+        }
+        String message = "findEntries(" + path + "," + pattern + "," + recurse + ")";
+        assertEquals(message, expected, new TreeSet<String>(entryTable.findEntries(path, pattern, recurse)));
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.jboss.osgi.framework.Constants;
+import org.jboss.osgi.framework.spi.BundleManager;
+import org.jboss.osgi.framework.spi.StorageState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link StorageJournal}.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+public class StorageJournalTestCase {
+
+    private File storageArea;
+    private File journalFile;
+
+    @Before
+    public void setUp() throws Exception {
+        storageArea = File.createTempFile("storage", "");
+        storageArea.delete();
+        storageArea.mkdirs();
+        journalFile = new File(storageArea, StorageJournal.JOURNAL_FILE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursive(storageArea);
+    }
+
+    @Test
+    public void testRecovery() throws Exception {
+        StorageJournal journal = new StorageJournal(journalFile);
+        assertEquals(0, journal.open().size());
+        journal.put(1, getProperties(1, "a"));
+        journal.put(2, getProperties(2, "b"));
+        journal.put(1, getProperties(1, "c"));
+        journal.delete(2);
+        journal.close();
+
+        Map<Long, Properties> recovered = new StorageJournal(journalFile).open();
+        assertEquals(1, recovered.size());
+        assertEquals("c", recovered.get(1L).getProperty(StorageState.PROPERTY_BUNDLE_LOCATION));
+    }
+
+    @Test
+    public void testTornTail() throws Exception {
+        StorageJournal journal = new StorageJournal(journalFile);
+        journal.open();
+        journal.put(1, getProperties(1, "a"));
+        long validLength = journalFile.length();
+        journal.put(2, getProperties(2, "b"));
+        journal.close();
+
+        truncate(journalFile.length() - 3);
+        journal = new StorageJournal(journalFile);
+        Map<Long, Properties> recovered = journal.open();
+        assertEquals(1, recovered.size());
+        assertNotNull(recovered.get(1L));
+        assertEquals(validLength, journalFile.length());
+
+        // Records appended after recovery are not lost
+        journal.put(3, getProperties(3, "c"));
+        journal.close();
+        recovered = new StorageJournal(journalFile).open();
+        assertEquals(2, recovered.size());
+        assertNotNull(recovered.get(3L));
+    }
+
+    @Test
+    public void testCorruptTail() throws Exception {
+        StorageJournal journal = new StorageJournal(journalFile);
+        journal.open();
+        journal.put(1, getProperties(1, "a"));
+        long validLength = journalFile.length();
+        journal.put(2, getProperties(2, "b"));
+        journal.close();
+
+        RandomAccessFile raf = new RandomAccessFile(journalFile, "rw");
+        try {
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 0xFF);
+        } finally {
+            raf.close();
+        }
+
+        Map<Long, Properties> recovered = new StorageJournal(journalFile).open();
+        assertEquals(1, recovered.size());
+        assertNotNull(recovered.get(1L));
+        assertEquals(validLength, journalFile.length());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        StorageJournal journal = new StorageJournal(journalFile);
+        journal.open();
+        journal.put(1, getProperties(1, "a"));
+        long recordLength = journalFile.length() - 8;
+        for (int i = 0; i < 200; i++) {
+            journal.put(1, getProperties(1, "a"));
+        }
+        journal.put(1, getProperties(1, "z"));
+        assertTrue("Journal compacted", journalFile.length() < 100 * recordLength);
+        journal.close();
+
+        Map<Long, Properties> recovered = new StorageJournal(journalFile).open();
+        assertEquals(1, recovered.size());
+        assertEquals("z", recovered.get(1L).getProperty(StorageState.PROPERTY_BUNDLE_LOCATION));
+    }
+
+    @Test
+    public void testImportProperties() throws Exception {
+        File storageDir = new File(storageArea, StorageState.BUNDLE_DIRECTORY_PREFIX + 1);
+        storageDir.mkdirs();
+        FileOutputStream output = new FileOutputStream(new File(storageDir, StorageState.BUNDLE_PERSISTENT_PROPERTIES));
+        try {
+            getProperties(1, "a").store(output, null);
+        } finally {
+            output.close();
+        }
+
+        BundleManager bundleManager = mock(BundleManager.class);
+        when(bundleManager.getProperty(Constants.FRAMEWORK_STORAGE)).thenReturn(storageArea.getPath());
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put(Constants.PROPERTY_STORAGE_JOURNAL, "true");
+
+        StorageManagerImpl storageManager = new StorageManagerImpl(bundleManager);
+        storageManager.initialize(props, false);
+        assertNotNull(storageManager.getStorageState("a"));
+        storageManager.close();
+
+        Map<Long, Properties> recovered = new StorageJournal(journalFile).open();
+        assertEquals(1, recovered.size());
+        assertEquals("a", recovered.get(1L).getProperty(StorageState.PROPERTY_BUNDLE_LOCATION));
+    }
+
+    private Properties getProperties(long bundleId, String location) {
+        Properties props = new Properties();
+        props.setProperty(StorageState.PROPERTY_BUNDLE_ID, String.valueOf(bundleId));
+        props.setProperty(StorageState.PROPERTY_BUNDLE_REV, "0");
+        props.setProperty(StorageState.PROPERTY_BUNDLE_LOCATION, location);
+        props.setProperty(StorageState.PROPERTY_START_LEVEL, "1");
+        props.setProperty(StorageState.PROPERTY_LAST_MODIFIED, "0");
+        return props;
+    }
+
+    private void truncate(long length) throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(journalFile, "rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void deleteRecursive(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                deleteRecursive(child);
+            }
+        }
+        file.delete();
+    }
+}
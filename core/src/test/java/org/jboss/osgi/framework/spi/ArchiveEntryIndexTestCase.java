@@ -0,0 +1,198 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.osgi.framework.spi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link ArchiveEntryIndex}.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+public class ArchiveEntryIndexTestCase {
+
+    private File archiveFile;
+
+    @Before
+    public void setUp() throws IOException {
+        archiveFile = File.createTempFile("entry-index", ".jar");
+    }
+
+    @After
+    public void tearDown() {
+        archiveFile.delete();
+    }
+
+    @Test
+    public void testStoredAndDeflatedEntries() throws Exception {
+        byte[] stored = "stored content".getBytes("UTF-8");
+        byte[] deflated = new byte[4096];
+        for (int i = 0; i < deflated.length; i++) {
+            deflated[i] = (byte) (i % 7);
+        }
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archiveFile));
+        try {
+            addStoredEntry(zip, "org/acme/Stored.class", stored);
+            zip.putNextEntry(new ZipEntry("org/acme/impl/Deflated.class"));
+            zip.write(deflated);
+            zip.closeEntry();
+        } finally {
+            zip.close();
+        }
+
+        ArchiveEntryIndex index = ArchiveEntryIndex.create(archiveFile);
+        assertNotNull("Index not null", index);
+        assertEquals(2, index.getEntries().size());
+
+        ArchiveEntryIndex.Entry entry = index.getEntry("org/acme/Stored.class");
+        assertEquals(ZipEntry.STORED, entry.method);
+        assertArrayEquals(stored, index.readEntry(entry));
+
+        entry = index.getEntry("org/acme/impl/Deflated.class");
+        assertEquals(ZipEntry.DEFLATED, entry.method);
+        assertTrue("Compressed", entry.compressedSize < entry.size);
+        assertArrayEquals(deflated, index.readEntry(entry));
+
+        assertNull(index.getEntry("org/acme/Missing.class"));
+    }
+
+    @Test
+    public void testDirectories() throws Exception {
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archiveFile));
+        try {
+            zip.putNextEntry(new ZipEntry("META-INF/"));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("org/acme/impl/Foo.class"));
+            zip.write(1);
+            zip.closeEntry();
+        } finally {
+            zip.close();
+        }
+
+        ArchiveEntryIndex index = ArchiveEntryIndex.create(archiveFile);
+        assertNotNull("Index not null", index);
+        assertTrue(index.hasDirectory("META-INF"));
+        assertTrue(index.hasDirectory("org"));
+        assertTrue(index.hasDirectory("org/acme"));
+        assertTrue(index.hasDirectory("org/acme/impl"));
+        assertFalse(index.hasDirectory("org/acme/impl/Foo.class"));
+        assertFalse(index.hasDirectory("com"));
+        assertNull(index.getEntry("META-INF/"));
+    }
+
+    @Test
+    public void testSharedChannel() throws Exception {
+        byte[] stored = "stored content".getBytes("UTF-8");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archiveFile));
+        try {
+            addStoredEntry(zip, "org/acme/Stored.class", stored);
+        } finally {
+            zip.close();
+        }
+
+        ArchiveEntryIndex index = ArchiveEntryIndex.create(archiveFile);
+        assertNotNull("Index not null", index);
+        ArchiveEntryIndex.Entry entry = index.getEntry("org/acme/Stored.class");
+        assertArrayEquals(stored, index.readEntry(entry));
+
+        // An interrupted reader closes the channel, other readers reopen it
+        Thread.currentThread().interrupt();
+        try {
+            index.readEntry(entry);
+            fail("ClosedByInterruptException expected");
+        } catch (ClosedByInterruptException ex) {
+            // expected
+        } finally {
+            Thread.interrupted();
+        }
+        assertArrayEquals(stored, index.readEntry(entry));
+
+        // A closed index cannot be read
+        index.close();
+        try {
+            index.readEntry(entry);
+            fail("ClosedChannelException expected");
+        } catch (ClosedChannelException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNotIndexed() throws Exception {
+        assertNull(ArchiveEntryIndex.create(null));
+        assertNull(ArchiveEntryIndex.create(archiveFile.getParentFile()));
+        assertNull(ArchiveEntryIndex.create(new File(archiveFile.getPath() + ".missing")));
+
+        // Not a zip file
+        FileOutputStream output = new FileOutputStream(archiveFile);
+        try {
+            output.write("no zip content".getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+        assertNull(ArchiveEntryIndex.create(archiveFile));
+
+        // Signed jars keep the full jar support
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archiveFile));
+        try {
+            zip.putNextEntry(new ZipEntry("META-INF/SIGNER.SF"));
+            zip.write(1);
+            zip.closeEntry();
+        } finally {
+            zip.close();
+        }
+        assertNull(ArchiveEntryIndex.create(archiveFile));
+    }
+
+    private void addStoredEntry(ZipOutputStream zip, String name, byte[] bytes) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(bytes.length);
+        entry.setCompressedSize(bytes.length);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(bytes);
+        zip.closeEntry();
+    }
+}
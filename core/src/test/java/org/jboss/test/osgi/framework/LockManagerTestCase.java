@@ -24,9 +24,11 @@ package org.jboss.test.osgi.framework;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
@@ -236,8 +238,153 @@ public class LockManagerTestCase {
         Assert.assertEquals("taskB unlocked last", "Unlocked: (START) [[item0]]", messages.get(8));
     }
 
+    @Test
+    public void testOppositeOrderNoDeadlock() throws Exception {
+
+        // Two threads lock overlapping item sets in opposite order
+        final int iterations = 200;
+        final CountDownLatch done = new CountDownLatch(2);
+        final LockableItem[][] itemSets = new LockableItem[][] { { items[0], items[1], items[2] }, { items[2], items[1], items[0] } };
+        for (final LockableItem[] lockable : itemSets) {
+            Runnable runner = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < iterations; i++) {
+                            LockContext context = lockManager.lockItems(Method.START, 5, TimeUnit.SECONDS, lockable);
+                            lockManager.unlockItems(context);
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            };
+            executor.execute(runner);
+        }
+        Assert.assertTrue("No deadlock", done.await(20, TimeUnit.SECONDS));
+        for (TestItem item : items) {
+            Assert.assertFalse("Unlocked: " + item, item.getReentrantLock().isLocked());
+        }
+    }
+
+    @Test
+    public void testTimeoutOnContendedItem() throws Exception {
+
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable holder = new Runnable() {
+            @Override
+            public void run() {
+                LockContext context = lockManager.lockItems(Method.START, items[1]);
+                try {
+                    locked.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    // ignore
+                } finally {
+                    lockManager.unlockItems(context);
+                }
+            }
+        };
+        executor.execute(holder);
+        Assert.assertTrue("Holder locked", locked.await(5, TimeUnit.SECONDS));
+
+        LockManagerImpl impl = (LockManagerImpl) ((DelegatingLockManager) lockManager).delegate;
+        try {
+            lockManager.lockItems(Method.STOP, 200, TimeUnit.MILLISECONDS, items[1]);
+            Assert.fail("LockException expected");
+        } catch (LockException ex) {
+            Assert.assertSame(TimeoutException.class, ex.getCause().getClass());
+        } finally {
+            release.countDown();
+        }
+        Assert.assertNull(lockManager.getCurrentLockContext());
+        Assert.assertFalse(items[1].getReentrantLock().isHeldByCurrentThread());
+        Assert.assertEquals(1, impl.getItemStatistics(items[1]).getContentionCount());
+        Assert.assertNull(impl.getItemStatistics(items[0]));
+    }
+
+    @Test
+    public void testReentrantLocking() throws Exception {
+
+        LockContext outer = lockManager.lockItems(Method.START, items[0], items[1]);
+        Assert.assertSame(outer, lockManager.getCurrentLockContext());
+
+        // Lock an overlapping set from the same thread
+        LockContext inner = lockManager.lockItems(Method.STOP, 1, TimeUnit.SECONDS, items[1], items[2]);
+        Assert.assertSame(inner, lockManager.getCurrentLockContext());
+        Assert.assertEquals(2, items[1].getReentrantLock().getHoldCount());
+        Assert.assertEquals(1, items[2].getReentrantLock().getHoldCount());
+
+        lockManager.unlockItems(inner);
+        Assert.assertSame(outer, lockManager.getCurrentLockContext());
+        Assert.assertEquals(1, items[0].getReentrantLock().getHoldCount());
+        Assert.assertEquals(1, items[1].getReentrantLock().getHoldCount());
+        Assert.assertFalse(items[2].getReentrantLock().isLocked());
+
+        lockManager.unlockItems(outer);
+        Assert.assertNull(lockManager.getCurrentLockContext());
+        for (TestItem item : items) {
+            Assert.assertFalse("Unlocked: " + item, item.getReentrantLock().isLocked());
+        }
+    }
+
+    @Test
+    public void testPartialSetUnlockedAfterFailedAcquire() throws Exception {
+
+        // Another thread holds the last item of the set
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable holder = new Runnable() {
+            @Override
+            public void run() {
+                LockContext context = lockManager.lockItems(Method.START, items[2]);
+                try {
+                    locked.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    // ignore
+                } finally {
+                    lockManager.unlockItems(context);
+                }
+            }
+        };
+        executor.execute(holder);
+        Assert.assertTrue("Holder locked", locked.await(5, TimeUnit.SECONDS));
+
+        // The current thread already holds one of the items
+        LockContext outer = lockManager.lockItems(Method.START, items[1]);
+        try {
+            lockManager.lockItems(Method.START, 200, TimeUnit.MILLISECONDS, items[0], items[1], items[2]);
+            Assert.fail("LockException expected");
+        } catch (LockException ex) {
+            Assert.assertSame(TimeoutException.class, ex.getCause().getClass());
+        } finally {
+            release.countDown();
+        }
+
+        // The items obtained by the failed attempt are released, the outer context is intact
+        Assert.assertSame(outer, lockManager.getCurrentLockContext());
+        Assert.assertFalse(items[0].getReentrantLock().isLocked());
+        Assert.assertEquals(1, items[1].getReentrantLock().getHoldCount());
+        Assert.assertFalse(items[2].getReentrantLock().isHeldByCurrentThread());
+        lockManager.unlockItems(outer);
+        Assert.assertFalse(items[1].getReentrantLock().isLocked());
+
+        // Another thread can obtain the released items
+        Future<Boolean> future = executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                LockContext context = lockManager.lockItems(Method.START, 5, TimeUnit.SECONDS, items[0], items[1], items[2]);
+                lockManager.unlockItems(context);
+                return Boolean.TRUE;
+            }
+        });
+        Assert.assertTrue(future.get(10, TimeUnit.SECONDS));
+    }
+
     class DelegatingLockManager implements LockManager {
-        private LockManager delegate = new LockManagerImpl();
+        private final LockManager delegate = new LockManagerImpl();
 
         @Override
         public <T extends LockableItem> T getItemForType(Class<T> type) {
@@ -263,8 +410,9 @@ public class LockManagerTestCase {
 
         @Override
         public void unlockItems(LockContext context) {
-            delegate.unlockItems(context);
+            // Record the message while the items are still held, waiting threads wake up on unlock
             addMessage("Unlocked: " + context);
+            delegate.unlockItems(context);
         }
     }
 
@@ -333,6 +333,63 @@ public class DynamicImportPackageTestCase extends OSGiFrameworkTest {
         }
     }
 
+    @Test
+    public void testPackageWildcardFallbackScan() throws Exception {
+
+        // Bundle-SymbolicName: dynamic-wildcard-a
+        // Export-Package: org.jboss.test.osgi.framework.classloader.support.a
+        // DynamicImport-Package: org.jboss.test.osgi.framework.classloader.*
+        final JavaArchive archiveA = ShrinkWrap.create(JavaArchive.class, "dynamic-wildcard-a");
+        archiveA.addClass(A.class);
+        archiveA.setManifest(new Asset() {
+
+            public InputStream openStream() {
+                OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+                builder.addBundleManifestVersion(2);
+                builder.addBundleSymbolicName(archiveA.getName());
+                builder.addExportPackages(A.class.getPackage().getName());
+                builder.addDynamicImportPackages("org.jboss.test.osgi.framework.classloader.*");
+                return builder.openStream();
+            }
+        });
+
+        // Bundle-SymbolicName: dynamic-wildcard-bc
+        // Export-Package: org.jboss.test.osgi.framework.classloader.support.c
+        final JavaArchive archiveB = ShrinkWrap.create(JavaArchive.class, "dynamic-wildcard-bc");
+        archiveB.addClasses(B.class, C.class);
+        archiveB.setManifest(new Asset() {
+
+            public InputStream openStream() {
+                OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+                builder.addBundleManifestVersion(2);
+                builder.addBundleSymbolicName(archiveB.getName());
+                builder.addExportPackages(C.class.getPackage().getName());
+                return builder.openStream();
+            }
+        });
+
+        Bundle bundleA = installBundle(archiveA);
+        assertBundleState(Bundle.INSTALLED, bundleA.getState());
+        try {
+            Bundle bundleB = installBundle(archiveB);
+            assertBundleState(Bundle.INSTALLED, bundleB.getState());
+            try {
+                // Found through the exporters of the requested package
+                assertLoadClass(bundleA, C.class.getName(), bundleB);
+
+                // Nobody exports the requested package, found by scanning the resolved bundles
+                assertLoadClass(bundleA, B.class.getName(), bundleB);
+
+                assertBundleState(Bundle.RESOLVED, bundleA.getState());
+                assertBundleState(Bundle.RESOLVED, bundleB.getState());
+            } finally {
+                bundleB.uninstall();
+            }
+        } finally {
+            bundleA.uninstall();
+        }
+    }
+
     @Test
     public void testBundleSymbolicNameDirective() throws Exception {
 
@@ -31,12 +31,16 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.jboss.osgi.metadata.OSGiManifestBuilder;
 import org.jboss.osgi.testing.OSGiFrameworkTest;
@@ -50,8 +54,11 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.wiring.FrameworkWiring;
 
 /**
  * ServiceReferenceTest.
@@ -463,6 +470,51 @@ public class ServiceReferenceTestCase extends OSGiFrameworkTest {
         }
     }
 
+    @Test
+    public void testIsAssignableToAfterRewire() throws Exception {
+        Bundle provider1 = installBundle(getProviderArchive("assignable-provider1", "1.0.0"));
+        Bundle requester = installBundle(getRequesterArchive());
+        FrameworkWiring frameworkWiring = getFramework().adapt(FrameworkWiring.class);
+        assertTrue(frameworkWiring.resolveBundles(Arrays.asList(provider1, requester)));
+        try {
+            Bundle provider2 = installBundle(getProviderArchive("assignable-provider2", "2.0.0"));
+            try {
+                provider2.start();
+                BundleContext context2 = provider2.getBundleContext();
+                Object service = provider2.loadClass(A.class.getName()).newInstance();
+                ServiceRegistration sreg = context2.registerService(A.class.getName(), service, null);
+                ServiceReference sref = sreg.getReference();
+
+                // The requester is wired to the first provider
+                assertSame(provider1.loadClass(A.class.getName()), requester.loadClass(A.class.getName()));
+                assertFalse(sref.isAssignableTo(requester, A.class.getName()));
+                assertFalse(sref.isAssignableTo(requester, A.class.getName()));
+
+                // Rewire the requester to the second provider
+                provider1.uninstall();
+                final CountDownLatch latch = new CountDownLatch(1);
+                frameworkWiring.refreshBundles(Collections.singleton(provider1), new FrameworkListener() {
+                    @Override
+                    public void frameworkEvent(FrameworkEvent event) {
+                        if (event.getType() == FrameworkEvent.PACKAGES_REFRESHED)
+                            latch.countDown();
+                    }
+                });
+                assertTrue(latch.await(10, TimeUnit.SECONDS));
+                assertTrue(frameworkWiring.resolveBundles(Collections.singleton(requester)));
+                assertSame(provider2.loadClass(A.class.getName()), requester.loadClass(A.class.getName()));
+                assertTrue(sref.isAssignableTo(requester, A.class.getName()));
+                sreg.unregister();
+            } finally {
+                provider2.uninstall();
+            }
+        } finally {
+            requester.uninstall();
+            if (provider1.getState() != Bundle.UNINSTALLED)
+                provider1.uninstall();
+        }
+    }
+
     @Test
     public void testCompareTo() throws Exception {
         BundleContext context = getFramework().getBundleContext();
@@ -626,6 +678,35 @@ public class ServiceReferenceTestCase extends OSGiFrameworkTest {
         return archive;
     }
 
+    private JavaArchive getProviderArchive(String name, final String version) {
+        final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, name);
+        archive.addClasses(A.class);
+        archive.setManifest(new Asset() {
+            public InputStream openStream() {
+                OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+                builder.addBundleManifestVersion(2);
+                builder.addBundleSymbolicName(archive.getName());
+                builder.addExportPackages(A.class.getPackage().getName() + ";version=" + version);
+                return builder.openStream();
+            }
+        });
+        return archive;
+    }
+
+    private JavaArchive getRequesterArchive() {
+        final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "assignable-requester");
+        archive.setManifest(new Asset() {
+            public InputStream openStream() {
+                OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+                builder.addBundleManifestVersion(2);
+                builder.addBundleSymbolicName(archive.getName());
+                builder.addImportPackages(A.class.getPackage().getName());
+                return builder.openStream();
+            }
+        });
+        return archive;
+    }
+
     private JavaArchive getBundleArchiveB() {
         final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "simple2");
         archive.addClasses(A.class);
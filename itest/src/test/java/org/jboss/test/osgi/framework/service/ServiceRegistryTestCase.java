@@ -0,0 +1,246 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.test.osgi.framework.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.osgi.testing.OSGiFrameworkTest;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.hooks.service.EventListenerHook;
+import org.osgi.framework.hooks.service.FindHook;
+import org.osgi.framework.hooks.service.ListenerHook.ListenerInfo;
+
+/**
+ * Test the service registry indexes against the unindexed lookup.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+public class ServiceRegistryTestCase extends OSGiFrameworkTest {
+
+    @Test
+    public void testRankingAfterModified() throws Exception {
+        BundleContext context = getFramework().getBundleContext();
+        ServiceRegistration<?> reg1 = context.registerService(Runnable.class.getName(), new SimpleRunnable(), getProperties("service.pid", "ranked"));
+        ServiceRegistration<?> reg2 = context.registerService(Runnable.class.getName(), new SimpleRunnable(), getProperties("service.pid", "ranked"));
+        try {
+            ServiceReference<?> sref1 = reg1.getReference();
+            ServiceReference<?> sref2 = reg2.getReference();
+            assertEquals(sref1, context.getServiceReference(Runnable.class.getName()));
+            assertOrder(context, "(service.pid=ranked)", sref2, sref1);
+
+            Hashtable<String, Object> props = getProperties("service.pid", "ranked");
+            props.put(Constants.SERVICE_RANKING, 10);
+            reg2.setProperties(props);
+            assertEquals(sref2, context.getServiceReference(Runnable.class.getName()));
+            assertOrder(context, null, sref1, sref2);
+            assertOrder(context, "(service.pid=ranked)", sref1, sref2);
+
+            props.put(Constants.SERVICE_RANKING, -10);
+            reg2.setProperties(props);
+            assertEquals(sref1, context.getServiceReference(Runnable.class.getName()));
+            assertOrder(context, null, sref2, sref1);
+            assertOrder(context, "(service.pid=ranked)", sref2, sref1);
+        } finally {
+            reg2.unregister();
+            reg1.unregister();
+        }
+    }
+
+    @Test
+    public void testIndexedLookup() throws Exception {
+        BundleContext context = getFramework().getBundleContext();
+        List<ServiceRegistration<?>> regs = new ArrayList<ServiceRegistration<?>>();
+        regs.add(context.registerService(Runnable.class.getName(), new SimpleRunnable(), getProperties("service.pid", "a")));
+        regs.add(context.registerService(Runnable.class.getName(), new SimpleRunnable(), getProperties("service.pid", "b")));
+        regs.add(context.registerService(Runnable.class.getName(), new SimpleRunnable(), getProperties("service.pid", new String[] { "a", "c" })));
+        regs.add(context.registerService(Runnable.class.getName(), new SimpleRunnable(), getProperties("service.pid", 5)));
+        regs.add(context.registerService(Runnable.class.getName(), new SimpleRunnable(), null));
+        regs.add(context.registerService(Object.class.getName(), new Object(), getProperties("service.pid", "a")));
+        try {
+            String[] values = new String[] { "a", "b", "c", "5", "missing" };
+            for (String value : values) {
+                assertIndexedLookup(context, Runnable.class.getName(), "service.pid", value);
+                assertIndexedLookup(context, null, "service.pid", value);
+                assertIndexedLookup(context, null, "SERVICE.PID", value);
+                assertIndexedLookup(context, Runnable.class.getName(), Constants.OBJECTCLASS, Runnable.class.getName());
+            }
+            assertEquals(3, getReferences(context, Runnable.class.getName(), "(service.pid=a)").size());
+            assertNull(context.getServiceReferences(Runnable.class.getName(), "(service.pid=missing)"));
+
+            // The index follows property changes
+            regs.get(0).setProperties(getProperties("service.pid", "b"));
+            for (String value : values) {
+                assertIndexedLookup(context, Runnable.class.getName(), "service.pid", value);
+            }
+            assertEquals(2, getReferences(context, Runnable.class.getName(), "(service.pid=b)").size());
+
+            // Unregistered services are removed from the index
+            regs.remove(0).unregister();
+            for (String value : values) {
+                assertIndexedLookup(context, Runnable.class.getName(), "service.pid", value);
+            }
+        } finally {
+            for (ServiceRegistration<?> reg : regs) {
+                reg.unregister();
+            }
+        }
+    }
+
+    @Test
+    public void testListenerDispatchByObjectClass() throws Exception {
+        BundleContext context = getFramework().getBundleContext();
+        RecordingListener classListener = new RecordingListener();
+        RecordingListener allListener = new RecordingListener();
+        RecordingListener propertyListener = new RecordingListener();
+        context.addServiceListener(classListener, "(objectClass=" + Runnable.class.getName() + ")");
+        context.addServiceListener(allListener);
+        context.addServiceListener(propertyListener, "(&(objectClass=" + Runnable.class.getName() + ")(foo=bar))");
+        try {
+            ServiceRegistration<?> regR = context.registerService(Runnable.class.getName(), new SimpleRunnable(), null);
+            assertEquals(Arrays.asList(ServiceEvent.REGISTERED), classListener.getTypes());
+            assertEquals(Arrays.asList(ServiceEvent.REGISTERED), allListener.getTypes());
+            assertEquals(Collections.emptyList(), propertyListener.getTypes());
+
+            ServiceRegistration<?> regO = context.registerService(Object.class.getName(), new Object(), null);
+            assertEquals(Arrays.asList(ServiceEvent.REGISTERED), classListener.getTypes());
+            assertEquals(Arrays.asList(ServiceEvent.REGISTERED, ServiceEvent.REGISTERED), allListener.getTypes());
+
+            regR.setProperties(getProperties("foo", "bar"));
+            assertEquals(Arrays.asList(ServiceEvent.REGISTERED, ServiceEvent.MODIFIED), classListener.getTypes());
+            assertEquals(Arrays.asList(ServiceEvent.MODIFIED), propertyListener.getTypes());
+
+            regR.setProperties(getProperties("foo", "baz"));
+            assertEquals(Arrays.asList(ServiceEvent.MODIFIED, ServiceEvent.MODIFIED_ENDMATCH), propertyListener.getTypes());
+
+            regO.unregister();
+            regR.unregister();
+            assertEquals(Arrays.asList(ServiceEvent.REGISTERED, ServiceEvent.MODIFIED, ServiceEvent.MODIFIED, ServiceEvent.UNREGISTERING), classListener.getTypes());
+            assertEquals(6, allListener.getTypes().size());
+            assertEquals(Arrays.asList(ServiceEvent.MODIFIED, ServiceEvent.MODIFIED_ENDMATCH), propertyListener.getTypes());
+        } finally {
+            context.removeServiceListener(propertyListener);
+            context.removeServiceListener(allListener);
+            context.removeServiceListener(classListener);
+        }
+    }
+
+    @Test
+    public void testHookCacheRefresh() throws Exception {
+        BundleContext context = getFramework().getBundleContext();
+        ServiceRegistration<?> reg = context.registerService(Runnable.class.getName(), new SimpleRunnable(), null);
+        RecordingListener listener = new RecordingListener();
+        context.addServiceListener(listener, "(objectClass=" + Runnable.class.getName() + ")");
+        try {
+            assertEquals(1, getReferences(context, Runnable.class.getName(), null).size());
+
+            // A registered find hook is called on the next lookup
+            ServiceRegistration<?> findReg = context.registerService(FindHook.class.getName(), new FindHook() {
+                @Override
+                public void find(BundleContext context, String name, String filter, boolean allServices, Collection<ServiceReference<?>> references) {
+                    if (Runnable.class.getName().equals(name)) {
+                        references.clear();
+                    }
+                }
+            }, null);
+            assertEquals(0, getReferences(context, Runnable.class.getName(), null).size());
+            findReg.unregister();
+            assertEquals(1, getReferences(context, Runnable.class.getName(), null).size());
+
+            // A registered event listener hook is called on the next event
+            ServiceRegistration<?> eventReg = context.registerService(EventListenerHook.class.getName(), new EventListenerHook() {
+                @Override
+                public void event(ServiceEvent event, Map<BundleContext, Collection<ListenerInfo>> listeners) {
+                    if (event.getServiceReference().getProperty("hidden") != null) {
+                        listeners.clear();
+                    }
+                }
+            }, null);
+            reg.setProperties(getProperties("hidden", "true"));
+            assertEquals(Collections.emptyList(), listener.getTypes());
+            eventReg.unregister();
+            reg.setProperties(getProperties("hidden", "true"));
+            assertEquals(Arrays.asList(ServiceEvent.MODIFIED), listener.getTypes());
+        } finally {
+            context.removeServiceListener(listener);
+            reg.unregister();
+        }
+    }
+
+    // The filter with the term inside a disjunction is not narrowed by the index
+    private void assertIndexedLookup(BundleContext context, String className, String key, String value) throws Exception {
+        List<ServiceReference<?>> indexed = getReferences(context, className, "(" + key + "=" + value + ")");
+        List<ServiceReference<?>> unindexed = getReferences(context, className, "(|(" + key + "=" + value + ")(" + key + "=" + value + "))");
+        assertEquals(key + "=" + value, unindexed, indexed);
+    }
+
+    // The references are sorted in ascending order, the highest ranked service is the last one
+    private void assertOrder(BundleContext context, String filter, ServiceReference<?>... expected) throws Exception {
+        assertEquals(Arrays.asList(expected), getReferences(context, Runnable.class.getName(), filter));
+    }
+
+    private List<ServiceReference<?>> getReferences(BundleContext context, String className, String filter) throws Exception {
+        ServiceReference<?>[] srefs = context.getServiceReferences(className, filter);
+        return srefs != null ? Arrays.<ServiceReference<?>> asList(srefs) : Collections.<ServiceReference<?>> emptyList();
+    }
+
+    private Hashtable<String, Object> getProperties(String key, Object value) {
+        Hashtable<String, Object> props = new Hashtable<String, Object>();
+        props.put(key, value);
+        return props;
+    }
+
+    static class SimpleRunnable implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+
+    static class RecordingListener implements ServiceListener {
+        private final List<Integer> types = new ArrayList<Integer>();
+
+        @Override
+        public synchronized void serviceChanged(ServiceEvent event) {
+            types.add(event.getType());
+        }
+
+        synchronized List<Integer> getTypes() {
+            return new ArrayList<Integer>(types);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * #%L
+ * JBossOSGi Framework
+ * %%
+ * Copyright (C) 2010 - 2012 JBoss by Red Hat
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.jboss.test.osgi.framework.wiring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.jboss.osgi.framework.Constants;
+import org.jboss.osgi.metadata.OSGiManifestBuilder;
+import org.jboss.osgi.testing.OSGiFrameworkTest;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.startlevel.BundleStartLevel;
+import org.osgi.framework.wiring.FrameworkWiring;
+
+/**
+ * Test the order in which bundles are stopped and restarted on a concurrent refresh.
+ *
+ * @author agent@local
+ * @since 17-Oct-2026
+ */
+public class ConcurrentRefreshTestCase extends OSGiFrameworkTest {
+
+    @BeforeClass
+    public static void beforeClass() {
+        // prevent framework creation
+    }
+
+    @Test
+    public void testRefreshOrdering() throws Exception {
+        Properties oldProps = new Properties();
+        oldProps.putAll(System.getProperties());
+
+        System.setProperty(Constants.PROPERTY_REFRESH_PARALLELISM, "4");
+        System.setProperty(Constants.FRAMEWORK_BEGINNING_STARTLEVEL, "2");
+        Framework framework = createFramework();
+        try {
+            framework.start();
+
+            // Bundle B is wired to A, C is independent, D has a higher start level
+            Bundle bundleA = installBundle(getBundle("refresh-a", "refresh.a", null));
+            Bundle bundleB = installBundle(getBundle("refresh-b", "refresh.b", "refresh.a"));
+            Bundle bundleC = installBundle(getBundle("refresh-c", "refresh.c", null));
+            Bundle bundleD = installBundle(getBundle("refresh-d", "refresh.d", null));
+            bundleD.adapt(BundleStartLevel.class).setStartLevel(2);
+            List<Bundle> bundles = Arrays.asList(bundleA, bundleB, bundleC, bundleD);
+            for (Bundle bundle : bundles) {
+                bundle.start();
+                assertBundleState(Bundle.ACTIVE, bundle.getState());
+            }
+
+            final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+            SynchronousBundleListener listener = new SynchronousBundleListener() {
+                @Override
+                public void bundleChanged(BundleEvent event) {
+                    if (event.getType() == BundleEvent.STOPPED) {
+                        events.add("stopped:" + event.getBundle().getSymbolicName());
+                    } else if (event.getType() == BundleEvent.STARTED) {
+                        events.add("started:" + event.getBundle().getSymbolicName());
+                    }
+                }
+            };
+            getSystemContext().addBundleListener(listener);
+            try {
+                FrameworkWiring frameworkWiring = framework.adapt(FrameworkWiring.class);
+                frameworkWiring.refreshBundles(bundles, this);
+                assertFrameworkEvent(FrameworkEvent.PACKAGES_REFRESHED, getSystemContext().getBundle(0), null);
+            } finally {
+                getSystemContext().removeBundleListener(listener);
+            }
+
+            for (Bundle bundle : bundles) {
+                assertBundleState(Bundle.ACTIVE, bundle.getState());
+            }
+            assertEquals(events.toString(), 8, events.size());
+
+            // The higher start level is stopped first and started last
+            for (String name : new String[] { "refresh-a", "refresh-b", "refresh-c" }) {
+                assertBefore(events, "stopped:refresh-d", "stopped:" + name);
+                assertBefore(events, "started:" + name, "started:refresh-d");
+            }
+
+            // Wired bundles keep the sequential order
+            assertBefore(events, "stopped:refresh-b", "stopped:refresh-a");
+            assertBefore(events, "started:refresh-a", "started:refresh-b");
+
+            // All bundles are stopped before any bundle is restarted
+            for (Bundle bundle : bundles) {
+                assertBefore(events, "stopped:" + bundle.getSymbolicName(), "started:refresh-a");
+            }
+        } finally {
+            framework.stop();
+            framework.waitForStop(2000);
+            System.setProperties(oldProps);
+        }
+    }
+
+    @Test
+    public void testRefreshSharedLibrary() throws Exception {
+        Properties oldProps = new Properties();
+        oldProps.putAll(System.getProperties());
+
+        System.setProperty(Constants.PROPERTY_REFRESH_PARALLELISM, "4");
+        Framework framework = createFramework();
+        try {
+            framework.start();
+
+            // Bundles E and F are only connected through the resolved library L
+            Bundle bundleL = installBundle(getBundle("refresh-l", "refresh.l", null));
+            Bundle bundleE = installBundle(getBundle("refresh-e", "refresh.e", "refresh.l"));
+            Bundle bundleF = installBundle(getBundle("refresh-f", "refresh.f", "refresh.l"));
+            bundleE.start();
+            bundleF.start();
+            assertBundleState(Bundle.RESOLVED, bundleL.getState());
+            assertBundleState(Bundle.ACTIVE, bundleE.getState());
+            assertBundleState(Bundle.ACTIVE, bundleF.getState());
+
+            final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+            SynchronousBundleListener listener = new SynchronousBundleListener() {
+                @Override
+                public void bundleChanged(BundleEvent event) {
+                    if (event.getType() == BundleEvent.STOPPED) {
+                        events.add("stopped:" + event.getBundle().getSymbolicName());
+                    } else if (event.getType() == BundleEvent.STARTED) {
+                        events.add("started:" + event.getBundle().getSymbolicName());
+                    }
+                }
+            };
+            getSystemContext().addBundleListener(listener);
+            try {
+                FrameworkWiring frameworkWiring = framework.adapt(FrameworkWiring.class);
+                frameworkWiring.refreshBundles(Collections.singleton(bundleL), this);
+                assertFrameworkEvent(FrameworkEvent.PACKAGES_REFRESHED, getSystemContext().getBundle(0), null);
+            } finally {
+                getSystemContext().removeBundleListener(listener);
+            }
+
+            assertBundleState(Bundle.RESOLVED, bundleL.getState());
+            assertBundleState(Bundle.ACTIVE, bundleE.getState());
+            assertBundleState(Bundle.ACTIVE, bundleF.getState());
+            assertEquals(events.toString(), 4, events.size());
+
+            // Both bundles share a component and keep the sequential order
+            if (events.indexOf("stopped:refresh-e") < events.indexOf("stopped:refresh-f")) {
+                assertEquals(Arrays.asList("stopped:refresh-e", "stopped:refresh-f", "started:refresh-f", "started:refresh-e"), events);
+            } else {
+                assertEquals(Arrays.asList("stopped:refresh-f", "stopped:refresh-e", "started:refresh-e", "started:refresh-f"), events);
+            }
+        } finally {
+            framework.stop();
+            framework.waitForStop(2000);
+            System.setProperties(oldProps);
+        }
+    }
+
+    private void assertBefore(List<String> events, String first, String second) {
+        int firstIndex = events.indexOf(first);
+        int secondIndex = events.indexOf(second);
+        assertTrue(events.toString(), firstIndex >= 0 && secondIndex >= 0 && firstIndex < secondIndex);
+    }
+
+    private JavaArchive getBundle(final String name, final String exportPackage, final String importPackage) {
+        final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, name);
+        archive.setManifest(new Asset() {
+            @Override
+            public InputStream openStream() {
+                OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+                builder.addBundleManifestVersion(2);
+                builder.addBundleSymbolicName(archive.getName());
+                builder.addExportPackages(exportPackage);
+                if (importPackage != null) {
+                    builder.addImportPackages(importPackage);
+                }
+                return builder.openStream();
+            }
+        });
+        return archive;
+    }
+}
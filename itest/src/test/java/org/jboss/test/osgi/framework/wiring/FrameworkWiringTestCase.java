@@ -29,6 +29,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -38,8 +39,12 @@ import java.util.List;
 
 import org.junit.Assert;
 
+import org.jboss.osgi.metadata.OSGiManifestBuilder;
 import org.jboss.osgi.testing.OSGiFrameworkTest;
 import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
 import org.jboss.test.osgi.framework.bundle.support.a.ObjectA;
 import org.jboss.test.osgi.framework.bundle.support.a.ObjectA2;
 import org.jboss.test.osgi.framework.bundle.support.x.ObjectX;
@@ -306,6 +311,52 @@ public class FrameworkWiringTestCase extends OSGiFrameworkTest {
         }
     }
 
+    @Test
+    public void testDependencyClosureDeepChain() throws Exception {
+        FrameworkWiring frameworkWiring = getFramework().adapt(FrameworkWiring.class);
+        List<Bundle> chain = new ArrayList<Bundle>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                chain.add(installBundle(getChainBundle(i)));
+            }
+            assertTrue(frameworkWiring.resolveBundles(chain));
+
+            Collection<Bundle> closure = frameworkWiring.getDependencyClosure(Collections.singleton(chain.get(0)));
+            assertEquals(chain.size(), closure.size());
+            assertTrue("Dependency closure contains all bundles", closure.containsAll(chain));
+
+            closure = frameworkWiring.getDependencyClosure(Collections.singleton(chain.get(150)));
+            assertEquals(50, closure.size());
+            assertTrue("Dependency closure contains the tail", closure.containsAll(chain.subList(150, 200)));
+
+            closure = frameworkWiring.getDependencyClosure(Collections.singleton(chain.get(199)));
+            assertEquals(1, closure.size());
+        } finally {
+            for (Bundle bundle : chain) {
+                bundle.uninstall();
+            }
+        }
+    }
+
+    // Bundle N exports chain.pN and imports chain.pN-1
+    private JavaArchive getChainBundle(final int index) {
+        final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "chain" + index);
+        archive.setManifest(new Asset() {
+            @Override
+            public InputStream openStream() {
+                OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+                builder.addBundleManifestVersion(2);
+                builder.addBundleSymbolicName(archive.getName());
+                builder.addExportPackages("chain.p" + index);
+                if (index > 0) {
+                    builder.addImportPackages("chain.p" + (index - 1));
+                }
+                return builder.openStream();
+            }
+        });
+        return archive;
+    }
+
     private Object getImportedFieldValue(Bundle bundleI) throws Exception {
         Class<?> iCls = bundleI.loadClass(OptionalImport.class.getName());
         Object importing = iCls.newInstance();